@@ -0,0 +1,64 @@
+package controllers;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Servlet que actualiza el carrito de compras desde el formulario de carro.jsp.
+ * En una sola petición POST recibe:
+ * - "cantidad_ID": la nueva cantidad de cada producto del carrito (0 elimina el producto).
+ * - "eliminar": los IDs de los productos marcados para eliminar (puede repetirse).
+ * Luego redirige a /ver-carro (patrón Post-Redirect-Get).
+ * No utiliza la base de datos: el carrito vive en la sesión del usuario.
+ * */
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import models.DetalleCarro;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+@WebServlet("/actualizar-carro")
+public class ActualizarCarroServlet extends HttpServlet {
+
+    // Prefijo de los parámetros con la cantidad de cada producto
+    private static final String PREFIJO_CANTIDAD = "cantidad_";
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        DetalleCarro detalleCarro = (DetalleCarro) req.getSession().getAttribute("carro");
+
+        if (detalleCarro != null) {
+            // 1. Cantidades: se reúnen todas y se aplican en una sola operación
+            Map<Long, Integer> cantidades = new HashMap<>();
+            for (Map.Entry<String, String[]> parametro : req.getParameterMap().entrySet()) {
+                if (parametro.getKey().startsWith(PREFIJO_CANTIDAD)) {
+                    try {
+                        Long id = Long.parseLong(parametro.getKey().substring(PREFIJO_CANTIDAD.length()));
+                        cantidades.put(id, Integer.parseInt(parametro.getValue()[0].trim()));
+                    } catch (NumberFormatException e) {
+                        // Un valor inválido no modifica la cantidad de ese producto
+                    }
+                }
+            }
+            detalleCarro.actualizarCantidades(cantidades);
+
+            // 2. Productos marcados para eliminar
+            String[] eliminar = req.getParameterValues("eliminar");
+            if (eliminar != null) {
+                for (String id : eliminar) {
+                    try {
+                        detalleCarro.eliminar(Long.parseLong(id));
+                    } catch (NumberFormatException e) {
+                        // Se ignoran los IDs inválidos
+                    }
+                }
+            }
+        }
+
+        resp.sendRedirect(req.getContextPath() + "/ver-carro");
+    }
+}
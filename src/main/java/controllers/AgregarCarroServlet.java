@@ -2,11 +2,14 @@ package controllers;
 /*
  * Autor: Byron Melo
  * Fecha: 19/11/2025
- * Versión: 1.0
+ * Versión: 1.1
  * Descripción: Servlet encargado de agregar un producto al carrito de compras.
  * Obtiene el producto por su ID, lo encapsula en un ItemCarro y lo añade
  * al objeto DetalleCarro almacenado en la sesión del usuario.
  * Finalmente redirige a la vista donde se muestra el contenido del carrito.
+ * Versión 1.1: las cajas con lector de código de barras envían el código en lugar del ID
+ * (/agregar-carro?codigo=7861234567890). El producto se busca con el índice de códigos en
+ * memoria y la caché, sin consultar la base de datos en un acierto.
  * */
 
 // Se importan las clases necesarias del API de Servlets de Jakarta EE para manejar peticiones web
@@ -24,13 +27,10 @@ import models.Producto;
 
 // Se importan las clases de servicio que contienen la lógica de negocio
 import services.ProductoService;
-import services.ProductoServiceImpl;
-import services.ProductoServiceJdbcImpl;
 
 // Se importa la clase para manejar excepciones de entrada/salida
 import java.io.IOException;
 // Se importa Optional para manejar valores que pueden o no existir
-import java.sql.Connection;
 import java.util.Optional;
 
 //Anotación para acceder al servlet
@@ -44,6 +44,18 @@ import java.util.Optional;
  */
 public class AgregarCarroServlet extends HttpServlet {
 
+    /*
+     * Servicio de productos único para toda la aplicación. Se crea en AplicacionListener
+     * y se obtiene una sola vez del ServletContext al iniciar el servlet, así no se crean
+     * servicios ni repositorios nuevos en cada petición.
+     */
+    private ProductoService service;
+
+    @Override
+    public void init() throws ServletException {
+        service = (ProductoService) getServletContext().getAttribute("productoService");
+    }
+
     /**
      * Se sobrescribe el metodo doGet() que maneja las peticiones HTTP GET.
      * Este metodo se ejecuta automáticamente cuando un usuario accede a la URL
@@ -52,33 +64,33 @@ public class AgregarCarroServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         /**
-         * Se extrae el parámetro "id" de la URL de la petición.
-         * Este ID corresponde al identificador único del producto que el usuario
-         * desea agregar al carrito y es fundamental para buscar el producto específico
-         * en el catálogo.
-         */
-        Long id = Long.parseLong(req.getParameter("id"));
-
-        // Obtenemos la conexión desde el filtro ConnectionFilter
-        Connection conn = (Connection) req.getAttribute("conn");
-
-        /**
-         * Se crea un objeto de tipo ProductoServiceImpl que implementa la interfaz
-         * ProductoService, de esta manera accedemos a los métodos del servicio
-         * como listar() y porId() para interactuar con el catálogo de productos.
+         * Se extrae el parámetro "codigo" o, si no viene, el parámetro "id" de la URL de la
+         * petición. Ambos identifican de forma única el producto que el usuario desea agregar
+         * al carrito: el ID desde el enlace del catálogo y el código desde el lector de la caja.
          */
-        ProductoService service = new ProductoServiceJdbcImpl(conn);
+        String codigo = req.getParameter("codigo");
 
         /**
-         * Se busca el producto específico por su ID utilizando el servicio.
-         * El metodo porId() retorna un Optional<Producto> que puede contener el
+         * Se busca el producto específico por su código o su ID utilizando el servicio.
+         * Los metodos porCodigo() y porId() retornan un Optional<Producto> que puede contener el
          * producto si existe en el catálogo (Optional con valor) o un Optional
          * vacío si no se encuentra el producto
          *
          * El uso de Optional es una práctica segura que obliga a verificar la
          * existencia del producto antes de usarlo, evitando NullPointerException.
          */
-        Optional<Producto> producto = service.porId(id);
+        Optional<Producto> producto;
+        if (codigo != null && !codigo.isBlank()) {
+            // El lector de código de barras puede agregar espacios o saltos de línea
+            producto = service.porCodigo(codigo.trim());
+        } else {
+            try {
+                producto = service.porId(Long.parseLong(req.getParameter("id")));
+            } catch (NumberFormatException e) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Se requiere el parámetro id o codigo");
+                return;
+            }
+        }
 
         /**
          * Se verifica si el producto existe en el catálogo usando isPresent().
@@ -0,0 +1,96 @@
+package controllers;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Servlet de búsqueda de productos por texto (/productos/buscar?q=...&limite=...).
+ * Busca en nombre, descripción, código y categoría de los productos activos con el índice en
+ * memoria (IndiceProductos), sin consultar la base de datos, y responde un JSON con los
+ * productos más relevantes primero. La última palabra se busca también como prefijo, por eso
+ * sirve para sugerir productos mientras el usuario escribe (type-ahead):
+ * {"consulta":"lech","productos":[{"id":7,"nombre":"Leche entera","codigo":"L-100","categoria":"Lácteos"}]}
+ * Como en el listado, el precio solo se incluye si el usuario inició sesión.
+ * */
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import models.Producto;
+import services.LoginService;
+import services.LoginServiceSessionImpl;
+import services.ProductoService;
+import util.Json;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+@WebServlet("/productos/buscar")
+public class BuscarProductosServlet extends HttpServlet {
+
+    // Número de resultados por defecto y máximo permitido para el parámetro limite
+    private static final int LIMITE_POR_DEFECTO = 10;
+    private static final int LIMITE_MAXIMO = 50;
+    // Largo máximo de la consulta que se procesa
+    private static final int LARGO_MAXIMO_CONSULTA = 200;
+
+    // Servicio de productos único para toda la aplicación (ver AplicacionListener)
+    private ProductoService service;
+
+    @Override
+    public void init() throws ServletException {
+        service = (ProductoService) getServletContext().getAttribute("productoService");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        LoginService auth = new LoginServiceSessionImpl();
+        boolean conSesion = auth.getUsername(req).isPresent();
+
+        String consulta = req.getParameter("q");
+        if (consulta == null) {
+            consulta = "";
+        }
+        if (consulta.length() > LARGO_MAXIMO_CONSULTA) {
+            consulta = consulta.substring(0, LARGO_MAXIMO_CONSULTA);
+        }
+        int limite = LIMITE_POR_DEFECTO;
+        try {
+            if (req.getParameter("limite") != null) {
+                limite = Math.min(Math.max(Integer.parseInt(req.getParameter("limite")), 1), LIMITE_MAXIMO);
+            }
+        } catch (NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "El parámetro limite debe ser un número");
+            return;
+        }
+
+        List<Producto> productos = service.buscar(consulta, limite);
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        // Los resultados cambian con cada modificación del catálogo y dependen de la sesión (precio)
+        resp.setHeader("Cache-Control", conSesion ? "private, no-cache" : "no-cache");
+        escribirResultados(resp.getWriter(), consulta, productos, conSesion);
+    }
+
+    private static void escribirResultados(PrintWriter out, String consulta, List<Producto> productos,
+                                           boolean conPrecio) {
+        out.print("{\"consulta\":" + Json.texto(consulta) + ",\"productos\":[");
+        for (int i = 0; i < productos.size(); i++) {
+            Producto p = productos.get(i);
+            if (i > 0) {
+                out.print(',');
+            }
+            out.print("{\"id\":" + p.getId()
+                    + ",\"nombre\":" + Json.texto(p.getNombre())
+                    + ",\"codigo\":" + Json.texto(p.getCodigo())
+                    + ",\"categoria\":" + Json.texto(p.getCategoria() != null ? p.getCategoria().getNombre() : null));
+            if (conPrecio) {
+                out.print(",\"precio\":" + p.getPrecio());
+            }
+            out.print('}');
+        }
+        out.print("]}");
+    }
+}
@@ -0,0 +1,81 @@
+package controllers;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción:
+ * Servlet que confirma la compra (checkout). Toma el carrito (DetalleCarro) de la sesión
+ * y lo guarda como una orden en la base de datos con OrdenService: la cabecera, todas
+ * las líneas y el descuento del stock se hacen en una sola transacción.
+ *
+ * - Si la compra se confirma, el carrito se mueve al atributo de sesión "ordenConfirmada"
+ *   (para poder descargar la factura) y se redirige a /ver-carro?orden=ID.
+ * - Si algún producto no tiene stock suficiente, no se guarda nada y se redirige a
+ *   /ver-carro?sinStock=ID para que el usuario ajuste su carrito.
+ */
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import models.DetalleCarro;
+import services.LoginService;
+import services.LoginServiceSessionImpl;
+import services.OrdenService;
+import services.StockInsuficienteException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+// Anotación que mapea este servlet a la URL '/checkout'.
+@WebServlet("/checkout")
+public class CheckoutServlet extends HttpServlet {
+
+    /*
+     * Servicio de órdenes único para toda la aplicación, creado en AplicacionListener.
+     */
+    private OrdenService service;
+
+    @Override
+    public void init() throws ServletException {
+        service = (OrdenService) getServletContext().getAttribute("ordenService");
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        // Solo un usuario autenticado puede confirmar una compra
+        LoginService auth = new LoginServiceSessionImpl();
+        Optional<String> username = auth.getUsername(req);
+        if (username.isEmpty()) {
+            resp.sendRedirect(req.getContextPath() + "/login.jsp");
+            return;
+        }
+
+        HttpSession session = req.getSession();
+        DetalleCarro carro = (DetalleCarro) session.getAttribute("carro");
+        if (carro == null || carro.getItem().isEmpty()) {
+            resp.sendRedirect(req.getContextPath() + "/ver-carro");
+            return;
+        }
+
+        Long ordenId;
+        try {
+            /*
+             * El servicio confirma la transacción antes de retornar (UnidadTrabajo), así el
+             * carrito solo se vacía cuando la orden ya está guardada; si falla, el usuario
+             * conserva su carrito y puede volver a intentarlo.
+             */
+            ordenId = service.confirmar(username.get(), carro);
+        } catch (StockInsuficienteException e) {
+            resp.sendRedirect(req.getContextPath() + "/ver-carro?sinStock=" + e.getProductoId());
+            return;
+        }
+
+        session.setAttribute("ordenConfirmada", carro);
+        session.removeAttribute("carro");
+        // Post-Redirect-Get: recargar la página no vuelve a enviar la compra
+        resp.sendRedirect(req.getContextPath() + "/ver-carro?orden=" + ordenId);
+    }
+}
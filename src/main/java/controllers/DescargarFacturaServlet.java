@@ -3,18 +3,47 @@ package controllers;
 /*
  * Autor: Byron Melo
  * Fecha: 13/11/2025
- * Version: 1.0
+ * Version: 1.6
  * Descripcion: Servlet encargado de generar la factura de compra en formato PDF.
  * Utiliza la librería iText 5 para crear el documento dinámicamente
  * basándose en los productos que el usuario tiene en su sesión (Carro).
+ * Version 1.1: el PDF se genera con util.FacturaRenderer.
+ * Version 1.2: la generación es asíncrona. El hilo del contenedor solo valida la petición
+ * y la deja en modo asíncrono (AsyncContext); el PDF se genera en el ejecutor acotado
+ * "ejecutorFacturas" (ver AplicacionListener) y se envía con un WriteListener, que escribe
+ * solo cuando el cliente puede recibir sin bloquear ningún hilo. Si el ejecutor está
+ * saturado se responde 503 con la cabecera Retry-After.
+ * Version 1.3: las facturas generadas se guardan en ArchivoFacturas con su clave (hash del
+ * contenido del carrito), que también se envía como ETag. Si el navegador ya tiene la factura
+ * (If-None-Match) se responde 304; si está en el archivo se envía desde el disco sin copiarla
+ * a la memoria de Java (sendfile de Tomcat o FileChannel.transferTo) y sin usar el ejecutor.
+ * Version 1.4: cada generación de PDF emite un evento de JFR (util.EventosJfr.Factura) con la
+ * clave, las líneas y el tamaño del PDF, cuando hay una grabación activa.
+ * Version 1.5: un AsyncListener marca la petición como terminada si vence tiempoMaximoMs o
+ * hay un error de red; una factura que todavía espera en la cola no se genera para una petición
+ * que ya terminó (al vencer el tiempo se responde 503 con Retry-After). Si vence mientras se
+ * genera, el PDF se guarda en el archivo (el reintento del cliente lo recibe desde el disco)
+ * pero no se envía.
+ * Version 1.6: una factura del archivo se abre (FileChannel) antes de enviar las cabeceras. Si
+ * otra petición la eliminó del disco al desalojar el archivo (NoSuchFileException), se genera
+ * otra vez en lugar de responder 500; una vez abierta, eliminarla no afecta la lectura.
+ *
+ * Memoria: FacturaRenderer escribe la tabla por bloques y no mantiene el documento completo,
+ * pero el PDF resultante se guarda en un arreglo de bytes para enviarlo con el WriteListener
+ * (sin bloquear un hilo) y para el archivo de facturas. Ese arreglo crece con el tamaño del PDF
+ * (unos cientos de bytes por línea), no con los objetos de iText; es el costo aceptado de la
+ * escritura no bloqueante, acotado por el número de hilos del ejecutor de facturas.
  */
 
-import com.itextpdf.text.*;
-import com.itextpdf.text.pdf.PdfPCell;
-import com.itextpdf.text.pdf.PdfPTable;
-import com.itextpdf.text.pdf.PdfWriter;
+import com.itextpdf.text.DocumentException;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebInitParam;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,13 +51,64 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 import models.DetalleCarro;
-import models.ItemCarro;
+import util.ArchivoFacturas;
+import util.EventosJfr;
+import util.FacturaRenderer;
+import util.Metricas;
+import util.RespuestaCondicional;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-@WebServlet("/descargar-factura")
+/*
+ * asyncSupported = true permite usar req.startAsync(). Todos los filtros por los que pasa la
+ * petición (ConexionFilter) también deben declararlo.
+ * Parámetros de inicio:
+ * - reintentarSeg: segundos que se indican en Retry-After cuando el servidor está saturado.
+ * - tiempoMaximoMs: tiempo máximo de la petición asíncrona (espera en cola + generación + envío).
+ */
+@WebServlet(urlPatterns = "/descargar-factura", asyncSupported = true, initParams = {
+        @WebInitParam(name = "reintentarSeg", value = "5"),
+        @WebInitParam(name = "tiempoMaximoMs", value = "60000")})
 public class DescargarFacturaServlet extends HttpServlet {
 
+    // Tamaño de cada bloque que se escribe en la respuesta
+    private static final int TAMANIO_BLOQUE = 8192;
+
+    // Atributos con los que se pide a Tomcat enviar un archivo con sendfile
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    // Facturas que no se generaron porque la petición terminó mientras esperaban en la cola
+    private static final Metricas.Contador CANCELADAS = Metricas.contador("sistemaventas_facturas_canceladas_total",
+            "Facturas no generadas porque la petición terminó (tiempo máximo o error) antes de empezar");
+
+    // Ejecutor acotado compartido, creado en AplicacionListener
+    private ExecutorService ejecutor;
+    // Archivo de facturas ya generadas (null si no se pudo abrir)
+    private ArchivoFacturas archivo;
+    private String reintentarSeg;
+    private long tiempoMaximoMs;
+
+    @Override
+    public void init() throws ServletException {
+        ejecutor = (ExecutorService) getServletContext().getAttribute("ejecutorFacturas");
+        archivo = (ArchivoFacturas) getServletContext().getAttribute("archivoFacturas");
+        reintentarSeg = getInitParameter("reintentarSeg");
+        tiempoMaximoMs = Long.parseLong(getInitParameter("tiempoMaximoMs"));
+    }
+
     /*
      * Este metodo maneja la petición GET cuando el usuario accede a /descargar-factura.
      * Obtiene el carro desde la sesión y genera un archivo PDF con los datos de la compra.
@@ -42,6 +122,10 @@ public class DescargarFacturaServlet extends HttpServlet {
 
         // Recuperar el atributo "carro", que contiene los productos seleccionados
         DetalleCarro detalleCarro = (DetalleCarro) session.getAttribute("carro");
+        // Si el carrito ya se confirmó en /checkout, la factura se genera con la orden confirmada
+        if (detalleCarro == null || detalleCarro.getItem().isEmpty()) {
+            detalleCarro = (DetalleCarro) session.getAttribute("ordenConfirmada");
+        }
 
         // 2. Validación: si el carro es nulo o no tiene ítems, evitamos generar un PDF vacío
         if (detalleCarro == null || detalleCarro.getItem().isEmpty()) {
@@ -50,109 +134,258 @@ public class DescargarFacturaServlet extends HttpServlet {
             return;
         }
 
-        // 3. Configurar el tipo de contenido como PDF para la respuesta HTTP
-        resp.setContentType("application/pdf");
+        /*
+         * 3. Copia del carrito: el PDF se genera en otro hilo y mientras tanto el usuario
+         * puede seguir modificando el carrito de su sesión.
+         */
+        DetalleCarro carro = detalleCarro.copiar();
+
+        /*
+         * 4. La clave del contenido identifica a la factura: si el navegador ya la tiene
+         * (If-None-Match) no se envía nada, y si ya está en el archivo se envía desde el disco.
+         * Cache-Control private: la factura es del usuario, no la deben guardar proxies compartidos.
+         */
+        String clave = ArchivoFacturas.clave(carro);
+        String etag = "\"" + clave + "\"";
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", "private, no-cache");
+        if (RespuestaCondicional.coincideEtag(req.getHeader("If-None-Match"), etag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        Path guardada = archivo != null ? archivo.buscar(clave) : null;
+        if (guardada != null && enviarArchivo(req, resp, guardada)) {
+            return;
+        }
 
-        // Cabecera para forzar al navegador a descargar el archivo
-        resp.setHeader("Content-Disposition", "attachment; filename=factura_compra.pdf");
+        // 5. Pasamos la petición a modo asíncrono: el hilo del contenedor queda libre al retornar
+        AsyncContext async = req.startAsync();
+        async.setTimeout(tiempoMaximoMs);
+        AtomicBoolean terminada = new AtomicBoolean();
+        async.addListener(new Vigilancia(terminada, reintentarSeg));
 
         try {
-            // 4. Crear el documento PDF usando la clase Document de iText
-            Document documento = new Document();
-
-            // Vincular el documento con el OutputStream de la respuesta (envío directo al navegador)
-            PdfWriter.getInstance(documento, resp.getOutputStream());
-
-            // Abrimos el documento para comenzar a escribir contenido
-            documento.open();
-
-            // 5. Crear el título del PDF
-            Font fontTitulo = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, BaseColor.BLUE);
-            Paragraph titulo = new Paragraph("Factura de Compra", fontTitulo);
-
-            // Centrar el título
-            titulo.setAlignment(Element.ALIGN_CENTER);
-
-            // Agregar título al documento
-            documento.add(titulo);
-
-            // Línea en blanco para separación visual
-            documento.add(new Paragraph(" "));
-
-            // 6. Crear la tabla de productos con 5 columnas (ID, nombre, precio, cantidad, subtotal)
-            PdfPTable tabla = new PdfPTable(5);
-
-            // Hacer que la tabla ocupe todo el ancho del documento
-            tabla.setWidthPercentage(100);
-
-            // 6a. Generar encabezados con estilo
-            String[] headers = {"ID", "Producto", "Precio", "Cant.", "Subtotal"};
-
-            for (String header : headers) {
-
-                // Crear celda para cada encabezado usando una fuente en negrita
-                PdfPCell cell = new PdfPCell(new Phrase(header, FontFactory.getFont(FontFactory.HELVETICA_BOLD)));
-
-                // Color de fondo gris para distinguir los encabezados
-                cell.setBackgroundColor(BaseColor.LIGHT_GRAY);
-
-                // Alinear texto al centro
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+            ejecutor.execute(() -> generar(async, terminada, carro, clave));
+        } catch (RejectedExecutionException e) {
+            // Hilos ocupados y cola llena: se pide al cliente que lo intente más tarde
+            resp.setHeader("Retry-After", reintentarSeg);
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Hay demasiadas facturas en proceso, intente nuevamente en unos segundos");
+            async.complete();
+        }
+    }
 
-                // Agregar celda a la tabla
-                tabla.addCell(cell);
+    /*
+     * Se ejecuta en un hilo del ejecutor de facturas: genera el PDF en memoria y lo envía
+     * con un WriteListener (escritura no bloqueante). Si la petición ya terminó (tiempo
+     * máximo o error) no se genera nada.
+     */
+    private void generar(AsyncContext async, AtomicBoolean terminada, DetalleCarro carro, String clave) {
+        if (terminada.get()) {
+            CANCELADAS.incrementar();
+            return;
+        }
+        EventosJfr.Factura evento = new EventosJfr.Factura();
+        evento.begin();
+        boolean generada = false;
+        HttpServletResponse resp = null;
+        try {
+            // Falla con IllegalStateException si el AsyncContext terminó mientras tanto
+            resp = (HttpServletResponse) async.getResponse();
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream(16384);
+            FacturaRenderer.escribir(carro, pdf);
+            byte[] contenido = pdf.toByteArray();
+            generada = true;
+            registrarEvento(evento, carro, clave, contenido.length, null);
+            guardarEnArchivo(clave, contenido);
+            if (terminada.get()) {
+                // Venció el tiempo mientras se generaba: queda en el archivo para el reintento
+                return;
             }
 
-            // 7. Recorrer la lista de productos y agregar cada uno como una fila en la tabla
-            for (ItemCarro item : detalleCarro.getItem()) {
+            // Configurar el tipo de contenido como PDF y forzar la descarga del archivo
+            resp.setContentType("application/pdf");
+            resp.setHeader("Content-Disposition", "attachment; filename=factura_compra.pdf");
+            resp.setContentLength(contenido.length);
 
-                // Columna ID del producto
-                tabla.addCell(item.getProducto().getId().toString());
+            ServletOutputStream salida = resp.getOutputStream();
+            salida.setWriteListener(new EnvioNoBloqueante(async, salida, contenido));
+        } catch (DocumentException | IOException | RuntimeException e) {
+            if (!generada) {
+                registrarEvento(evento, carro, clave, 0, e);
+            }
+            if (terminada.get()) {
+                // El contenedor ya respondió y cerró la petición
+                return;
+            }
+            log("No se pudo generar la factura", e);
+            responderError(async, resp);
+        }
+    }
 
-                // Columna Nombre del producto
-                tabla.addCell(item.getProducto().getNombre());
+    /*
+     * Responde 500 (si todavía no se envió nada) y termina la petición asíncrona. La petición
+     * puede terminar en paralelo por el tiempo máximo, por eso se ignora IllegalStateException.
+     */
+    private static void responderError(AsyncContext async, HttpServletResponse resp) {
+        try {
+            if (resp != null && !resp.isCommitted()) {
+                resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } catch (IOException | IllegalStateException ignorada) {
+            // El cliente ya se desconectó o la petición ya terminó
+        }
+        try {
+            async.complete();
+        } catch (IllegalStateException ignorada) {
+            // Ya se completó
+        }
+    }
 
-                // Columna Precio formateado con 2 decimales
-                tabla.addCell("$" + String.format("%.2f", item.getProducto().getPrecio()));
+    /*
+     * Termina el evento de JFR de la generación; los campos solo se llenan si se va a grabar.
+     */
+    private static void registrarEvento(EventosJfr.Factura evento, DetalleCarro carro, String clave,
+                                        long bytes, Exception error) {
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.clave = clave;
+            evento.lineas = carro.getItem().size();
+            evento.bytes = bytes;
+            evento.error = error != null ? error.getClass().getSimpleName() : null;
+            evento.commit();
+        }
+    }
 
-                // Columna Cantidad del producto
-                tabla.addCell(String.valueOf(item.getCantidad()));
+    /*
+     * Guarda la factura en el archivo; si falla, solo se registra (la descarga continúa).
+     */
+    private void guardarEnArchivo(String clave, byte[] contenido) {
+        if (archivo == null) {
+            return;
+        }
+        try {
+            archivo.guardar(clave, contenido);
+        } catch (IOException e) {
+            log("No se pudo guardar la factura " + clave + " en el archivo", e);
+        }
+    }
 
-                // Columna Subtotal del producto (precio * cantidad)
-                tabla.addCell("$" + String.format("%.2f", item.getSubtotal()));
+    /*
+     * Envía una factura guardada. El archivo se abre antes de enviar nada: si ya no existe
+     * (otra petición lo desalojó después de buscar) retorna false y la factura se genera.
+     * Si Tomcat soporta sendfile, solo se indica el archivo y Tomcat lo copia del disco al
+     * socket dentro del sistema operativo al terminar el servlet; buscar() acaba de marcar la
+     * factura como la más usada, así que sería la última en desalojarse antes de que Tomcat la
+     * abra. Si no, se usa FileChannel.transferTo desde el archivo ya abierto (en Linux, un
+     * archivo abierto se puede seguir leyendo aunque se elimine).
+     * @return true si se envió la factura.
+     */
+    private static boolean enviarArchivo(HttpServletRequest req, HttpServletResponse resp, Path pdf)
+            throws IOException {
+        FileChannel canal;
+        try {
+            canal = FileChannel.open(pdf, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try (canal) {
+            long largo = canal.size();
+            resp.setContentType("application/pdf");
+            resp.setHeader("Content-Disposition", "attachment; filename=factura_compra.pdf");
+            resp.setContentLengthLong(largo);
+
+            if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SOPORTADO))) {
+                req.setAttribute(SENDFILE_ARCHIVO, pdf.toAbsolutePath().toString());
+                req.setAttribute(SENDFILE_INICIO, 0L);
+                req.setAttribute(SENDFILE_FIN, largo);
+                return true;
             }
 
-            // Agregar la tabla completa al documento PDF
-            documento.add(tabla);
+            WritableByteChannel destino = Channels.newChannel(resp.getOutputStream());
+            long posicion = 0;
+            while (posicion < largo) {
+                posicion += canal.transferTo(posicion, largo - posicion, destino);
+            }
+        }
+        return true;
+    }
 
-            // 8. Crear sección de totales al final del documento (Subtotal, IVA, Total)
-            Paragraph totales = new Paragraph();
+    /*
+     * Marca la petición como terminada cuando vence el tiempo máximo, hay un error de red o se
+     * completa; generar() revisa la marca antes de empezar y antes de enviar. Al vencer el tiempo
+     * se responde 503 con Retry-After (si no se envió nada todavía) en lugar del error del
+     * contenedor.
+     */
+    private static class Vigilancia implements AsyncListener {
+        private final AtomicBoolean terminada;
+        private final String reintentarSeg;
 
-            // Alinear totales a la derecha del documento
-            totales.setAlignment(Element.ALIGN_RIGHT);
+        Vigilancia(AtomicBoolean terminada, String reintentarSeg) {
+            this.terminada = terminada;
+            this.reintentarSeg = reintentarSeg;
+        }
 
-            // Añadir un espacio antes de los totales
-            totales.setSpacingBefore(20);
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            terminada.set(true);
+            HttpServletResponse resp = (HttpServletResponse) event.getSuppliedResponse();
+            if (!resp.isCommitted()) {
+                resp.setHeader("Retry-After", reintentarSeg);
+                resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "La factura tardó demasiado, intente nuevamente en unos segundos");
+            }
+            event.getAsyncContext().complete();
+        }
 
-            // Subtotal general de la compra
-            totales.add(new Chunk("Subtotal: $" + String.format("%.2f", detalleCarro.getSubtotal()) + "\n"));
+        @Override
+        public void onError(AsyncEvent event) {
+            terminada.set(true);
+        }
 
-            // IVA calculado (15% en tu modelo)
-            totales.add(new Chunk("IVA (15%): $" + String.format("%.2f", detalleCarro.getSubtotalIva()) + "\n"));
+        @Override
+        public void onComplete(AsyncEvent event) {
+            terminada.set(true);
+        }
 
-            // Total final con formato en negrita
-            Font fontTotal = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14);
-            totales.add(new Chunk("Total a Pagar: $" + String.format("%.2f", detalleCarro.getTotal()), fontTotal));
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
 
-            // Agregar totales al documento
-            documento.add(totales);
+    /*
+     * Escribe el contenido en bloques solo mientras la salida acepta datos sin bloquear
+     * (isReady). Cuando el cliente vuelve a estar listo, el contenedor invoca otra vez
+     * onWritePossible y se continúa desde la última posición.
+     */
+    private static class EnvioNoBloqueante implements WriteListener {
+        private final AsyncContext async;
+        private final ServletOutputStream salida;
+        private final byte[] contenido;
+        private int posicion;
+
+        EnvioNoBloqueante(AsyncContext async, ServletOutputStream salida, byte[] contenido) {
+            this.async = async;
+            this.salida = salida;
+            this.contenido = contenido;
+        }
 
-            // 9. Cerrar documento para completar la generación del PDF
-            documento.close();
+        @Override
+        public void onWritePossible() throws IOException {
+            while (salida.isReady()) {
+                if (posicion >= contenido.length) {
+                    async.complete();
+                    return;
+                }
+                int largo = Math.min(TAMANIO_BLOQUE, contenido.length - posicion);
+                salida.write(contenido, posicion, largo);
+                posicion += largo;
+            }
+        }
 
-        } catch (DocumentException e) {
-            // Si ocurre un error relacionado con iText, lo envolvemos en IOException
-            throw new IOException(e);
+        @Override
+        public void onError(Throwable t) {
+            async.complete();
         }
     }
 }
@@ -0,0 +1,206 @@
+package controllers;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.1
+ * Descripción:
+ * Servlet que permite importar de forma masiva los catálogos de los proveedores
+ * (decenas de miles de productos) en una sola petición POST, en lugar de crear
+ * los productos uno por uno con el formulario.
+ *
+ * El cuerpo de la petición puede ser:
+ * - CSV (Content-Type text/csv o ?formato=csv) con una cabecera de nombres de campos.
+ * - JSON-lines (Content-Type application/x-ndjson o ?formato=jsonl), un objeto por línea.
+ *
+ * El contenido se lee como un flujo, fila por fila (LectorImportacion), sin cargarlo
+ * completo en memoria. Cada fila se valida con las mismas reglas del formulario
+ * (ProductoValidador) y además se verifica que la categoría exista. Las filas válidas
+ * se acumulan en lotes de "tamanioLote" productos que se insertan con un lote JDBC
+ * (ProductoService.guardarLote); cada lote es una unidad de trabajo que se confirma
+ * (commit) y devuelve la conexión al pool antes de seguir leyendo el contenido.
+ *
+ * Una fila inválida no detiene la importación: la respuesta es un reporte JSON con el
+ * número de filas leídas, los productos insertados y los errores de cada fila rechazada:
+ * {"filas":3,"insertados":2,"errores":[{"fila":3,"errores":{"precio":"..."}}]}
+ *
+ * Versión 1.1: las cadenas JSON se escriben con util.Json, compartida con la búsqueda.
+ */
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebInitParam;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import models.Producto;
+import services.LoginService;
+import services.LoginServiceSessionImpl;
+import services.ProductoService;
+import services.ProductoValidador;
+import util.Json;
+import util.LectorImportacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Anotación que mapea este servlet a la URL '/importar-productos'.
+// El tamaño de cada lote JDBC se configura con el parámetro de inicio "tamanioLote".
+@WebServlet(urlPatterns = "/importar-productos",
+        initParams = @WebInitParam(name = "tamanioLote", value = "500"))
+public class ImportarProductosServlet extends HttpServlet {
+
+    /*
+     * Servicio de productos único para toda la aplicación. Se crea en AplicacionListener
+     * y se obtiene una sola vez del ServletContext al iniciar el servlet.
+     */
+    private ProductoService service;
+    // Número de productos que se envían a MySQL en cada lote
+    private int tamanioLote;
+
+    /*
+     * Reporte de una fila rechazada: número de línea y errores (campo, mensaje).
+     */
+    private record ErrorFila(int fila, Map<String, String> errores) {
+    }
+
+    @Override
+    public void init() throws ServletException {
+        service = (ProductoService) getServletContext().getAttribute("productoService");
+        try {
+            tamanioLote = Math.max(1, Integer.parseInt(getInitParameter("tamanioLote")));
+        } catch (NumberFormatException | NullPointerException e) {
+            tamanioLote = 500;
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        // Solo un usuario autenticado puede importar productos
+        LoginService auth = new LoginServiceSessionImpl();
+        if (auth.getUsername(req).isEmpty()) {
+            resp.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Debe iniciar sesión para importar productos");
+            return;
+        }
+
+        LectorImportacion.Formato formato = formato(req);
+        if (formato == null) {
+            resp.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                    "Formato no soportado, se acepta CSV (text/csv) o JSON-lines (application/x-ndjson)");
+            return;
+        }
+        if (req.getCharacterEncoding() == null) {
+            req.setCharacterEncoding("UTF-8");
+        }
+
+        List<ErrorFila> errores = new ArrayList<>();
+        List<Producto> lote = new ArrayList<>(tamanioLote);
+        List<Integer> filasLote = new ArrayList<>(tamanioLote);
+        int filas = 0;
+        int insertados = 0;
+
+        try (BufferedReader reader = req.getReader()) {
+            LectorImportacion lector = new LectorImportacion(reader, formato);
+            while (true) {
+                Map<String, String> campos;
+                try {
+                    campos = lector.siguiente();
+                } catch (IllegalArgumentException e) {
+                    filas++;
+                    errores.add(new ErrorFila(lector.getNumeroLinea(), Map.of("fila", String.valueOf(e.getMessage()))));
+                    continue;
+                }
+                if (campos == null) {
+                    break;
+                }
+                filas++;
+
+                // Mismas reglas de validación que el formulario de productos
+                Producto producto = new Producto();
+                Map<String, String> erroresFila = ProductoValidador.validar(campos::get, producto);
+                // La importación solo crea productos nuevos
+                producto.setId(0L);
+                if (!erroresFila.containsKey("categoria")
+                        && service.porIdCategoria(producto.getCategoria().getId()).isEmpty()) {
+                    erroresFila.put("categoria", "La categoría no existe");
+                }
+
+                if (!erroresFila.isEmpty()) {
+                    errores.add(new ErrorFila(lector.getNumeroLinea(), erroresFila));
+                    continue;
+                }
+
+                lote.add(producto);
+                filasLote.add(lector.getNumeroLinea());
+                if (lote.size() == tamanioLote) {
+                    insertados += enviarLote(lote, filasLote, errores);
+                }
+            }
+            insertados += enviarLote(lote, filasLote, errores);
+        }
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        escribirReporte(resp.getWriter(), filas, insertados, errores);
+    }
+
+    /*
+     * Inserta el lote acumulado y agrega al reporte las filas que MySQL rechazó.
+     * Retorna el número de productos insertados y deja el lote vacío.
+     */
+    private int enviarLote(List<Producto> lote, List<Integer> filasLote, List<ErrorFila> errores) {
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, String> rechazados = service.guardarLote(lote);
+        rechazados.forEach((posicion, mensaje) ->
+                errores.add(new ErrorFila(filasLote.get(posicion), Map.of("fila", String.valueOf(mensaje)))));
+        int insertados = lote.size() - rechazados.size();
+        lote.clear();
+        filasLote.clear();
+        return insertados;
+    }
+
+    /*
+     * Determina el formato a partir del parámetro "formato" o del Content-Type.
+     */
+    private static LectorImportacion.Formato formato(HttpServletRequest req) {
+        String formato = req.getParameter("formato");
+        if (formato == null) {
+            String tipo = req.getContentType();
+            formato = tipo == null ? "" : tipo;
+        }
+        formato = formato.toLowerCase();
+        if (formato.contains("csv")) {
+            return LectorImportacion.Formato.CSV;
+        }
+        if (formato.contains("json")) {
+            return LectorImportacion.Formato.JSONL;
+        }
+        return null;
+    }
+
+    private static void escribirReporte(PrintWriter out, int filas, int insertados, List<ErrorFila> errores) {
+        out.print("{\"filas\":" + filas + ",\"insertados\":" + insertados + ",\"errores\":[");
+        for (int i = 0; i < errores.size(); i++) {
+            ErrorFila error = errores.get(i);
+            if (i > 0) {
+                out.print(',');
+            }
+            out.print("{\"fila\":" + error.fila() + ",\"errores\":{");
+            boolean primero = true;
+            for (Map.Entry<String, String> e : error.errores().entrySet()) {
+                if (!primero) {
+                    out.print(',');
+                }
+                primero = false;
+                out.print(Json.texto(e.getKey()) + ":" + Json.texto(e.getValue()));
+            }
+            out.print("}}");
+        }
+        out.print("]}");
+    }
+}
@@ -2,7 +2,7 @@ package controllers;
 /*
  * Autor: Byron Melo
  * Fecha: 11/11/2025
- * Versión: 1.0
+ * Versión: 1.1
  * Descripción: Esta clase hereda de HttpServlet para manejar peticiones get y post mediante
  * las llaves login y login.html.
  * El metodo doGet se encarga de verificar si existe una sesion activa, si existe te muestra un mensaje
@@ -11,12 +11,16 @@ package controllers;
  * El metodo doPost se encarga de capturas los parámetros que se envían a través del formulario usando
  * la llave login y el metodo POST, a sí mismo, si el usuario ingresa las credenciales correctas
  * se crea un objeto de tipo HttpSession, es decir, una sesión.
+ * Versión 1.1: el contador de inicios de sesión era un int estático que varias peticiones
+ * incrementaban a la vez (contador += 1 no es atómico y se perdían incrementos); ahora es un
+ * contador de Metricas (LongAdder), publicado también en /metrics.
  * */
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import services.LoginService;
 import services.LoginServiceSessionImpl;
+import util.Metricas;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -34,14 +38,15 @@ public class LoginServlet extends HttpServlet {
     final static String PASSWORD = "123";
 
     /*
-    Definimos una variable estática de tipo int que actúa guarda el número de veces
-    que el usuario ha iniciado sesión correctamente, es decir, está variabla aumenta 1 unidad
-    cada vez que el usuario envía el formulario de login.jsp y los datos enviados son válidos
-    El modificador de tipo static hace que la variable pertenezca a la clase o al contexto global,
-    y no a una instancia o ejecución concreta, es decir, nos permite utilizar y modificar esta variable
-    en cualquier parte de la clase.
+    Definimos un contador estático que guarda el número de veces que el usuario ha iniciado
+    sesión correctamente, es decir, aumenta 1 unidad cada vez que el usuario envía el formulario
+    de login.jsp y los datos enviados son válidos.
+    El modificador de tipo static hace que el contador pertenezca a la clase o al contexto global,
+    y no a una instancia o ejecución concreta. Como varias peticiones lo incrementan al mismo
+    tiempo, se usa un contador de Metricas (LongAdder) en lugar de un int.
      */
-    static int contador = 0;
+    static final Metricas.Contador contador = Metricas.contador("sistemaventas_inicios_sesion_total",
+            "Inicios de sesión con credenciales válidas");
     //Metodo doGet heredado de HttpServlet y sobreescrito
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -73,7 +78,7 @@ public class LoginServlet extends HttpServlet {
                 out.println("</head>");
                 out.println("<body>");
                 out.println("<h2> Hola " + "<strong>" +usernameOptional.get() + "</strong>" + " has iniciado sesión correctamente </h2>");
-                out.println("<h2>Número de veces que has iniciado sesión: " + contador + "</h2>");
+                out.println("<h2>Número de veces que has iniciado sesión: " + contador.valor() + "</h2>");
                 out.println("<p> <a href='"+req.getContextPath()+"/index.html'>Volver a la página principal</a></p>");
                 out.println("<p> <a href='"+req.getContextPath()+"/logout'>Cerrar Sesión</a></p>");
                 out.println("</body>");
@@ -108,7 +113,7 @@ public class LoginServlet extends HttpServlet {
             //Establecemos el atributo username al objeto de tipo session que creamos
             session.setAttribute("username", username);
             //Cada vez que el usuario envíe un formulario con credenciales válidas, la variable contador incrementa una unidad
-            contador += 1;
+            contador.incrementar();
 
             //El metodo sendRedirect redirecciona automáticamente y crea una nueva petición Get al index.html
             resp.sendRedirect(req.getContextPath()+"/index.html");
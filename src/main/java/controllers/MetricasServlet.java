@@ -0,0 +1,78 @@
+package controllers;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.2
+ * Descripción: Servlet que publica las métricas de la aplicación (util.Metricas) en formato de
+ * texto de Prometheus (/metrics): contadores, valores del pool y de las cachés, y percentiles
+ * p50/p90/p99/p999 de la duración de cada petición por servlet, cada operación de repositorio,
+ * la obtención de conexiones, los commit/rollback y la generación de facturas PDF.
+ *
+ * Si se define -Dsistemaventas.metricas.token=..., solo responde a las peticiones con la
+ * cabecera "Authorization: Bearer <token>" (la que configura Prometheus en bearer_token).
+ *
+ * Versión 1.1: /metrics/sql muestra, como tabla de texto, las sentencias SQL con más tiempo
+ * total (ejecuciones, tiempo total, promedio, máximo, filas y errores) cuando la
+ * instrumentación de consultas está activa (-Dsistemaventas.sql.instrumentar=true).
+ * Versión 1.2: /metrics/sql muestra el texto de las consultas, por eso nunca es público: sin
+ * -Dsistemaventas.metricas.token responde 403 (/metrics sigue siendo público sin token).
+ * */
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.ConexionBDD;
+import util.Metricas;
+import util.SqlInstrumentado;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+@WebServlet({"/metrics", "/metrics/sql"})
+public class MetricasServlet extends HttpServlet {
+
+    // Sentencias que se muestran en /metrics/sql
+    private static final int MAXIMO_SENTENCIAS = 100;
+    // Token requerido (null si /metrics es público)
+    private static final String TOKEN = System.getProperty("sistemaventas.metricas.token");
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (TOKEN != null && !autorizado(req.getHeader("Authorization"))) {
+            resp.setHeader("WWW-Authenticate", "Bearer");
+            resp.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        StringBuilder out = new StringBuilder(16384);
+        if (req.getServletPath().equals("/metrics/sql")) {
+            if (TOKEN == null) {
+                resp.sendError(HttpServletResponse.SC_FORBIDDEN,
+                        "/metrics/sql requiere un token (-Dsistemaventas.metricas.token)");
+                return;
+            }
+            if (!ConexionBDD.isSqlInstrumentado()) {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND,
+                        "Instrumentación de SQL desactivada (-Dsistemaventas.sql.instrumentar=true)");
+                return;
+            }
+            SqlInstrumentado.escribirResumen(out, MAXIMO_SENTENCIAS);
+            resp.setContentType("text/plain");
+        } else {
+            Metricas.escribir(out);
+            resp.setContentType("text/plain; version=0.0.4");
+        }
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-store");
+        resp.getWriter().write(out.toString());
+    }
+
+    // Compara el token en tiempo constante
+    private static boolean autorizado(String cabecera) {
+        String esperada = "Bearer " + TOKEN;
+        return cabecera != null && MessageDigest.isEqual(cabecera.getBytes(StandardCharsets.UTF_8),
+                esperada.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -3,7 +3,7 @@ package controllers;
 /**
  * Autor: Byron Melo
  * Fecha: 19/11/2025
- * Versión: 1.0
+ * Versión: 1.3
  * Descripción:
  * Este Servlet maneja la lógica para mostrar el formulario de creación o edición de un producto.
  * Sirve para dos propósitos principales:
@@ -12,6 +12,13 @@ package controllers;
  *
  * Obtiene el producto a editar (si aplica) y la lista de categorías,
  * y luego redirige la solicitud a la página JSP del formulario.
+ * Versión 1.1: el producto y las categorías se obtienen en paralelo (TareasParalelas), cada
+ * consulta en su propio hilo virtual, así la petición espera solo la más lenta de las dos.
+ * Versión 1.2: el código de barras es único (índice único de producto.codigo); si ya pertenece a
+ * otro producto se muestra el error en el formulario en lugar de fallar al guardar.
+ * Versión 1.3: se vuelve a la consulta secuencial. Las categorías salen de la copia en memoria
+ * (CatalogoCategorias) y el producto casi siempre de CacheProductos: no había SQL que
+ * paralelizar, y cada tarea paralela creaba hilos y podía pedir su propia conexión al pool.
  */
 
 import jakarta.servlet.ServletException;
@@ -22,32 +29,34 @@ import jakarta.servlet.http.HttpServletResponse;
 import models.Categoria;
 import models.Producto;
 import services.ProductoService;
-import services.ProductoServiceJdbcImpl;
+import services.ProductoValidador;
 
 import java.io.IOException;
-import java.sql.Connection;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 // Anotación que mapea este servlet a la URL '/crear'.
 @WebServlet("/crear")
 public class ProductoFormServlet extends HttpServlet {
 
+    /*
+     * Servicio de productos único para toda la aplicación. Se crea en AplicacionListener
+     * y se obtiene una sola vez del ServletContext al iniciar el servlet, así no se crean
+     * servicios ni repositorios nuevos en cada petición.
+     */
+    private ProductoService service;
+
+    @Override
+    public void init() throws ServletException {
+        service = (ProductoService) getServletContext().getAttribute("productoService");
+    }
+
     // Maneja las peticiones GET (solicitud inicial del formulario).
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException,
             IOException {
-        // Obtenemos la conexión a la base de datos del contexto de la aplicación.
-        // Se asume que la conexión fue guardada previamente por un Listener o filtro.
-        Connection conn = (Connection) req.getAttribute("conn");
-
-
-        // Inicializamos el servicio de productos, pasándole la conexión activa.
-        ProductoService service = new ProductoServiceJdbcImpl(conn);
         // Definimoa una variable de tipo long para almacenar el id de un producto
         Long id;
 
@@ -81,9 +90,11 @@ public class ProductoFormServlet extends HttpServlet {
                 producto = o.get();
             }
         }
+        // Las categorías se leen de la copia en memoria, sin consultar la base de datos
+        List<Categoria> categorias = service.ListaCategoria();
 
         // Guardamos la lista completa de categorías en el request para que el JSP pueda llenar el <select>
-        req.setAttribute("categorias", service.ListaCategoria());
+        req.setAttribute("categorias", categorias);
         // Guardamos el objeto producto (vacío o cargado con datos para edición) en el request.
         req.setAttribute("producto", producto);
 
@@ -96,135 +107,21 @@ public class ProductoFormServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
-        // 1. Obtención de la Conexión y Servicio
-        // Obtenemos la conexión a la base de datos.
-        Connection conn = (Connection) req.getAttribute("conn");
-        // Inicializamos el servicio para interactuar con la DB.
-        ProductoService service = new ProductoServiceJdbcImpl(conn);
+        // 1. El servicio para interactuar con la DB se obtuvo en init() y la conexión
+        // la asocia el filtro ConexionFilter a la petición actual.
 
-        // 2. Captura de Parámetros del Formulario
-        String nombre = req.getParameter("nombre");
-
-        // Captura y parseo del ID de la categoría, manejando errores de formato.
-        Long categoriaId;
-        try {
-            categoriaId = Long.parseLong(req.getParameter("categoria"));
-        } catch (NumberFormatException | NullPointerException e) {
-            // Si es nulo o no es número, se asigna 0L para la validación.
-            categoriaId = 0L;
-        }
-
-        // Captura y parseo del stock, manejando errores de formato.
-        Integer stock;
-        try {
-            stock = Integer.valueOf(req.getParameter("stock"));
-        } catch (NumberFormatException | NullPointerException e) {
-            // Si es nulo o no es número, se asigna 0 para la validación.
-            stock = 0;
-        }
-
-        // El precio se captura como String inicialmente para manejo de decimales y validación.
-        String precioParam = req.getParameter("precio");
-        Double precio = null; // Inicializado a null para validación.
-
-        String descripcion = req.getParameter("descripcion");
-        String codigo = req.getParameter("codigo");
-        // Las fechas también se capturan como String.
-        String fecha_elaboracion = req.getParameter("fecha_elaboracion");
-        String fecha_caducidad = req.getParameter("fecha_caducidad");
-
-        // 3. Validación de Datos (Almacenamiento de Errores)
-        // Se crea un mapa para almacenar los errores de validación.
-        Map<String, String> errores = new HashMap<>();
-
-        // Validación: Nombre no puede ser nulo o vacío.
-        if (nombre == null || nombre.isBlank()) {
-            errores.put("nombre", "El nombre no puede estar vacío");
-        }
-
-        // Validación: Categoría debe ser seleccionada (ID > 0).
-        if (categoriaId == 0L) {
-            errores.put("categoria", "La categoría no puede estar vacía");
-        }
-
-        // Validación: Stock debe ser mayor a 0 (asumiendo que 0 significa que no se ingresó un valor válido).
-        if (stock == 0) {
-            errores.put("stock", "El stock no puede estar vacío");
-        }
-
-        // Validación compleja para Precio.
-        if (precioParam == null || precioParam.trim().isEmpty()) {
-            errores.put("precio", "El precio no puede estar vacío");
-        } else {
-            try {
-                // Manejo de decimales: reemplaza comas por puntos antes de parsear.
-                precioParam = precioParam.trim().replace(",", ".");
-                precio = Double.valueOf(precioParam);
-                // Validación: Precio debe ser positivo.
-                if (precio <= 0) {
-                    errores.put("precio", "El precio debe ser mayor que 0");
-                }
-            } catch (Exception e) {
-                // Si falla la conversión a Double.
-                errores.put("precio", "El precio es un número inválido");
-            }
-        }
-
-        // Validación: Código no puede ser nulo o vacío.
-        if (codigo == null || codigo.isBlank()) {
-            errores.put("codigo", "El código no puede estar vacío");
-        }
-
-        // Validación: Fecha de Elaboración no puede ser nula o vacía.
-        if (fecha_elaboracion == null || fecha_elaboracion.isBlank()) {
-            errores.put("fecha_elaboracion", "La fecha de elaboración no puede estar vacía");
-        }
-
-        // Validación: Fecha de Caducidad no puede ser nula o vacía.
-        if (fecha_caducidad == null || fecha_caducidad.isBlank()) {
-            errores.put("fecha_caducidad", "La fecha de caducidad no puede estar vacía");
-        }
-
-        // 4. Conversión de Fechas y ID
-        LocalDate fechaElaboracion, fechaCaducidad;
-        try {
-            // Intenta convertir las fechas de String a LocalDate con el formato esperado.
-            fechaElaboracion = LocalDate.parse(fecha_elaboracion, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            fechaCaducidad = LocalDate.parse(fecha_caducidad, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        } catch (DateTimeParseException e) {
-            // Si el formato es incorrecto, se asignan nulos (la validación de campos vacíos ya se hizo).
-            fechaElaboracion = null;
-            fechaCaducidad = null;
-
-        }
-
-        // Captura del ID oculto (si es una edición), o 0L si es nuevo.
-        Long id;
-        try {
-            id = Long.parseLong(req.getParameter("id"));
-        } catch (NumberFormatException | NullPointerException e) {
-            id = 0L;
+        // 2. Captura y validación de los parámetros del formulario
+        // Las reglas de validación están en ProductoValidador, que también usa la importación masiva.
+        // El validador copia los datos capturados en el producto y retorna el mapa de errores.
+        Producto producto = new Producto();
+        Map<String, String> errores = ProductoValidador.validar(req::getParameter, producto);
+        if (!errores.containsKey("codigo")) {
+            service.porCodigo(producto.getCodigo())
+                    .filter(otro -> !Objects.equals(otro.getId(), producto.getId()))
+                    .ifPresent(otro -> errores.put("codigo", "El código ya pertenece al producto " + otro.getNombre()));
         }
 
-        // 5. Creación del Objeto Producto
-        // Instanciamos el objeto con los datos capturados y validados.
-        Producto producto = new Producto();
-        producto.setId(id);
-        producto.setNombre(nombre);
-
-        // Se crea el objeto Categoria solo con el ID capturado.
-        Categoria categoria = new Categoria();
-        categoria.setId(categoriaId);
-
-        producto.setCategoria(categoria);
-        producto.setStock(stock);
-        producto.setDescripcion(descripcion);
-        producto.setCodigo(codigo);
-        producto.setFechaElaboracion(fechaElaboracion);
-        producto.setFechaCaducidad(fechaCaducidad);
-        producto.setPrecio(precio);
-
-        // 6. Decisión de Flujo (Éxito vs. Errores)
+        // 3. Decisión de Flujo (Éxito vs. Errores)
         // Verificamos si la lista de errores está vacía.
         if (errores.isEmpty()) {
             // Si no hay errores, guardamos/actualizamos el producto en la base de datos.
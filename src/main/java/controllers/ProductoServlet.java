@@ -2,12 +2,22 @@ package controllers;
 /*
  * Autor: Byron Melo
  * Fecha: 20/11/2025
- * Versión: 1.0
+ * Versión: 1.2
  * Descripción: Servlet encargado de gestionar la visualización del listado de productos.
  * Recupera la conexión a la base de datos, consulta los productos mediante
  * el servicio correspondiente y genera dinámicamente una página HTML con
  * el listado. Además, valida si el usuario ha iniciado sesión para mostrar
  * información adicional (precio y opciones).
+ * El listado se muestra por páginas con los parámetros ?after=&size=, donde "after" es el
+ * ID del último producto de la página anterior y "size" el número de productos por página.
+ * Versión 1.1: respuestas condicionales. La página se identifica con la versión del catálogo
+ * (VersionCatalogo) y se envían las cabeceras ETag y Last-Modified; si el cliente ya tiene
+ * la versión actual (If-None-Match / If-Modified-Since) se responde 304 antes de consultar
+ * la base de datos y sin generar el JSP.
+ * Versión 1.2: si la página se lee de la réplica y el catálogo cambió hace menos de
+ * -Dsistemaventas.cache.productos.replicaMs, no se envían ETag ni Last-Modified: la réplica
+ * puede no tener el cambio todavía y el navegador guardaría datos viejos con el ETag de la
+ * versión nueva (y recibiría 304 sobre ellos hasta el siguiente cambio).
  * */
 import jakarta.servlet.ServletException;
 import java.io.IOException;
@@ -24,33 +34,42 @@ import services.*;
 import models.Producto;
 
 //Importamos la clase para crear listas
-import java.sql.Connection;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import repositorio.VersionCatalogo;
+import util.ConexionPerezosa;
+import util.RespuestaCondicional;
+
 /*Definimos 2 llaves para acceder a este servlet
 {"/productos.html", "/productos"}
  */
 @WebServlet("/productos")
 public class ProductoServlet extends HttpServlet {
+
+    // Tamaño de página por defecto y tamaño máximo permitido para el parámetro size
+    private static final int TAMANIO_PAGINA = 50;
+    private static final int TAMANIO_MAXIMO = 500;
+    // Retraso máximo esperado de la réplica, el mismo que usa CacheProductos
+    private static final long RETRASO_REPLICA_MS = Long.getLong("sistemaventas.cache.productos.replicaMs", 5000L);
+
+    /*
+     * Servicio de productos único para toda la aplicación. Se crea en AplicacionListener
+     * y se obtiene una sola vez del ServletContext al iniciar el servlet, así no se crean
+     * servicios ni repositorios nuevos en cada petición.
+     */
+    private ProductoService service;
+
+    @Override
+    public void init() throws ServletException {
+        service = (ProductoService) getServletContext().getAttribute("productoService");
+    }
+
     //Sobreescribimos el metodo doGet
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
-        // Recuperamos la conexión desde el atributo que fue establecido en el filtro ConnectionFilter
-        Connection conn = (Connection) req.getAttribute("conn");
-
-        /*Creamos un objeto de tipo ProductosServices que hace referencia a la clase ProductosServicesImplement
-         * el cual implementa el metodo, esto es polimorfismo ya que el objeto de tipo ProductoServices en
-         * realidad es una instancia de ProductosServicesImplement.
-         * Esto se hace así porque en Java es buena práctica programar contra interfaces, no contra clase, por lo
-         * tanto, esto se hace siempre que queremos usar una clase que implementa un metodo de una interfaz.
-         */
-        ProductoService service = new ProductoServiceJdbcImpl(conn);
-
-        //Definimos una lista que usará el metodo listar de nuestro objeto services que ya implementó el metodo
-        List<Producto> productos = service.listar();
             /*
             Crear una instancia de la clase LoginServiceSessionImpl que implementa el metodo de la interfaz
             LoginService
@@ -62,6 +81,50 @@ public class ProductoServlet extends HttpServlet {
          */
         Optional<String> usernameOptional = auth.getUsername(req);
 
+        /*
+         * Respuesta condicional: la página depende solo de la versión del catálogo, de la URL
+         * (after/size, que el navegador ya usa como clave) y del usuario (saludo y precios).
+         * Por eso el ETag lleva una variante por usuario y, con sesión, la respuesta es privada.
+         * no-cache obliga a revalidar siempre, pero la revalidación es casi gratuita (304).
+         * Justo después de un cambio, una lectura de la réplica puede traer los datos anteriores:
+         * entonces la página se envía completa y sin ETag ni Last-Modified.
+         */
+        VersionCatalogo.Version version = VersionCatalogo.actual();
+        resp.setHeader("Cache-Control", usernameOptional.isPresent() ? "private, no-cache" : "no-cache");
+        resp.setHeader("Vary", "Cookie");
+        if (!ConexionPerezosa.leeDeReplica()
+                || System.currentTimeMillis() - version.modificado() >= RETRASO_REPLICA_MS) {
+            String etag = version.etag(usernameOptional
+                    .map(u -> "u" + Integer.toHexString(u.hashCode())).orElse("a"));
+            resp.setHeader("ETag", etag);
+            resp.setDateHeader("Last-Modified", version.modificado());
+            if (RespuestaCondicional.noModificado(req, etag, version.modificado())) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        /*El objeto service es de tipo ProductoService pero hace referencia a la clase ProductoServiceJdbcImpl
+         * el cual implementa el metodo, esto es polimorfismo ya que el objeto de tipo ProductoService en
+         * realidad es una instancia de ProductoServiceJdbcImpl.
+         * Esto se hace así porque en Java es buena práctica programar contra interfaces, no contra clase, por lo
+         * tanto, esto se hace siempre que queremos usar una clase que implementa un metodo de una interfaz.
+         */
+
+        // Leemos los parámetros de paginación: after (ID del último producto visto) y size
+        Long despuesDe = parametroLong(req, "after", 0L);
+        int tamanio = (int) Math.min(Math.max(parametroLong(req, "size", (long) TAMANIO_PAGINA), 1L), TAMANIO_MAXIMO);
+
+        /*Definimos una lista que usará el metodo listar paginado de nuestro objeto services.
+         * Pedimos un producto más del tamaño de la página solo para saber si existe una página siguiente.
+         */
+        List<Producto> productos = service.listar(despuesDe, tamanio + 1);
+        Long siguiente = null;
+        if (productos.size() > tamanio) {
+            productos = productos.subList(0, tamanio);
+            siguiente = productos.get(tamanio - 1).getId();
+        }
+
 
 
 
@@ -171,6 +234,10 @@ public class ProductoServlet extends HttpServlet {
         //Seteamos los atributos de productos y username para parsarlo al JSP
         req.setAttribute("productos", productos);
         req.setAttribute("username", usernameOptional);
+        // Datos de paginación para los enlaces de producto.jsp
+        req.setAttribute("despuesDe", despuesDe);
+        req.setAttribute("siguiente", siguiente);
+        req.setAttribute("tamanio", tamanio);
 
         /*
          * el servlet redirige al usuario al jsp para ver los productos,
@@ -181,4 +248,16 @@ public class ProductoServlet extends HttpServlet {
          * */
         getServletContext().getRequestDispatcher("/producto.jsp").forward(req, resp);
     }
-}
\ No newline at end of file
+
+    /*
+     * Lee un parámetro numérico de la URL; si no existe o no es un número válido
+     * retorna el valor por defecto.
+     * */
+    private static Long parametroLong(HttpServletRequest req, String nombre, Long porDefecto) {
+        try {
+            return Long.parseLong(req.getParameter(nombre));
+        } catch (NumberFormatException e) {
+            return porDefecto;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package filter;
+/*
+Autor: Byron Melo
+Fecha: 17/10/2026
+Versión: 1.2
+Descripción:
+Caché de páginas completas para el listado de productos de los visitantes anónimos.
+Sin sesión iniciada, producto.jsp genera exactamente el mismo HTML para la misma URL
+mientras el catálogo no cambie. Este filtro guarda la página ya generada (los bytes
+originales y también comprimidos con gzip) y la envía directamente en las siguientes
+peticiones, sin ejecutar el servlet, sin consultar la base de datos y sin generar el JSP.
+
+- Cada página se guarda por su consulta (?after=&size=) junto con la versión del catálogo
+  (VersionCatalogo). Cualquier modificación de productos o categorías cambia la versión y
+  la página guardada deja de usarse: se vuelve a generar en la siguiente petición.
+- Regeneración única (single-flight): si llegan muchas peticiones cuando la página no está
+  en caché, solo la primera ejecuta el servlet; las demás esperan ese mismo resultado en
+  lugar de generar la página cada una.
+- Los usuarios con sesión iniciada (el JSP muestra su nombre y los precios) y los métodos
+  distintos de GET/HEAD pasan directamente al servlet.
+- Las cabeceras ETag / Last-Modified de la página se guardan con ella, así las peticiones
+  condicionales también se responden con 304 desde la caché.
+El orden de los filtros se define en web.xml: este filtro va antes de ConexionFilter, así
+una página en caché no crea ni siquiera la conexión perezosa.
+Versión 1.1: la negociación de Accept-Encoding se comparte con CompresionFilter.
+Versión 1.2: las páginas también expiran después de "ttlMs" milisegundos, y se generan
+leyendo del servidor principal (ConexionFilter.ATRIBUTO_LEER_PRINCIPAL) y no de la réplica.
+Sin esto, la primera petición después de un cambio podía generar la página con datos de una
+réplica atrasada, y esa página se usaba hasta el siguiente cambio del catálogo.
+ */
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebInitParam;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.servlet.http.HttpSession;
+import repositorio.VersionCatalogo;
+import util.RespuestaCondicional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/*
+Parámetros de inicio:
+- maximoPaginas: número máximo de páginas (consultas distintas) guardadas.
+- esperaMs: tiempo máximo que una petición espera la página que otra está generando;
+  si se supera, la genera ella misma sin guardarla.
+- ttlMs: tiempo máximo que se usa una página aunque la versión del catálogo no cambie.
+ */
+@WebFilter(filterName = "cachePaginaFilter", urlPatterns = "/productos", asyncSupported = true, initParams = {
+        @WebInitParam(name = "maximoPaginas", value = "200"),
+        @WebInitParam(name = "ttlMs", value = "30000"),
+        @WebInitParam(name = "esperaMs", value = "10000")})
+public class CachePaginaFilter implements Filter {
+
+    private static final Logger LOG = Logger.getLogger(CachePaginaFilter.class.getName());
+
+    /*
+    Página guardada: contenido original y comprimido, cabeceras que se repiten en cada
+    respuesta, número de versión del catálogo con el que se generó e instante
+    (System.nanoTime) en que expira.
+     */
+    private record Pagina(long version, long expira, byte[] contenido, byte[] gzip, String contentType,
+                          String etag, long modificado, String cacheControl) {
+    }
+
+    /*
+    Consulta -> página. El valor es un CompletableFuture: mientras una petición genera la
+    página, las demás encuentran el futuro sin completar y esperan su resultado.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Pagina>> paginas = new ConcurrentHashMap<>();
+    private int maximoPaginas = 200;
+    private long esperaMs = 10000;
+    private long ttlNanos = TimeUnit.SECONDS.toNanos(30);
+
+    // Contadores: páginas enviadas desde la caché, páginas generadas y esperas de otra petición
+    private static final LongAdder aciertos = new LongAdder();
+    private static final LongAdder generadas = new LongAdder();
+    private static final LongAdder esperas = new LongAdder();
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        String maximo = filterConfig.getInitParameter("maximoPaginas");
+        if (maximo != null) {
+            maximoPaginas = Integer.parseInt(maximo.trim());
+        }
+        String espera = filterConfig.getInitParameter("esperaMs");
+        if (espera != null) {
+            esperaMs = Long.parseLong(espera.trim());
+        }
+        String ttl = filterConfig.getInitParameter("ttlMs");
+        if (ttl != null) {
+            ttlNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(ttl.trim()));
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        if (!esLectura(req) || !esAnonimo(req)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long version = VersionCatalogo.actual().numero();
+        String clave = req.getQueryString() != null ? req.getQueryString() : "";
+
+        while (true) {
+            CompletableFuture<Pagina> actual = paginas.get(clave);
+            if (actual != null && (!actual.isDone() || esVigente(actual, version))) {
+                // Página en caché, o en generación por otra petición
+                Pagina pagina = esperar(actual);
+                if (pagina == null) {
+                    // La otra petición falló o tardó demasiado: se genera sin guardar
+                    chain.doFilter(request, response);
+                } else {
+                    aciertos.increment();
+                    enviar(req, resp, pagina);
+                }
+                return;
+            }
+
+            // No está, expiró o es de una versión anterior: solo la petición que registre su futuro la genera
+            CompletableFuture<Pagina> nueva = new CompletableFuture<>();
+            boolean registrada;
+            if (actual == null) {
+                if (paginas.size() >= maximoPaginas) {
+                    paginas.clear();
+                }
+                registrada = paginas.putIfAbsent(clave, nueva) == null;
+            } else {
+                registrada = paginas.replace(clave, actual, nueva);
+            }
+            if (registrada) {
+                generar(req, resp, chain, clave, version, nueva);
+                return;
+            }
+        }
+    }
+
+    /*
+    Ejecuta el servlet capturando la respuesta. Si es una página completa (200) se guarda,
+    se entrega a las peticiones que esperan y se envía; si no, se envía tal cual sin guardar.
+     */
+    private void generar(HttpServletRequest req, HttpServletResponse resp, FilterChain chain,
+                         String clave, long version, CompletableFuture<Pagina> futura)
+            throws IOException, ServletException {
+        Captura captura = new Captura(resp);
+        Pagina pagina = null;
+        try {
+            /*
+            La página la verán todos los visitantes hasta que expire: se lee del servidor
+            principal, porque la réplica puede no tener todavía el cambio que invalidó la página.
+             */
+            req.setAttribute(ConexionFilter.ATRIBUTO_LEER_PRINCIPAL, Boolean.TRUE);
+            // Sin cabeceras condicionales: el servlet siempre genera la página completa
+            chain.doFilter(new SinCondiciones(req), captura);
+            byte[] contenido = captura.getContenido();
+            if (resp.getStatus() == HttpServletResponse.SC_OK && !resp.isCommitted()) {
+                pagina = new Pagina(version, System.nanoTime() + ttlNanos, contenido, comprimir(contenido), resp.getContentType(),
+                        resp.getHeader("ETag"), VersionCatalogo.actual().modificado(),
+                        resp.getHeader("Cache-Control"));
+                generadas.increment();
+            } else if (!resp.isCommitted()) {
+                resp.getOutputStream().write(contenido);
+            }
+        } finally {
+            if (pagina != null) {
+                futura.complete(pagina);
+            } else {
+                futura.completeExceptionally(new IllegalStateException("La página no se puede guardar en caché"));
+                paginas.remove(clave, futura);
+            }
+        }
+        if (pagina != null) {
+            LOG.log(Level.FINE, "Página generada para /productos?{0} ({1} bytes, {2} gzip)",
+                    new Object[]{clave, pagina.contenido().length, pagina.gzip().length});
+            enviar(req, resp, pagina);
+        }
+    }
+
+    /*
+    Espera la página que genera otra petición. Retorna null si falló o se superó esperaMs.
+     */
+    private Pagina esperar(CompletableFuture<Pagina> futura) {
+        if (futura.isDone() && !futura.isCompletedExceptionally()) {
+            return futura.join();
+        }
+        esperas.increment();
+        try {
+            return futura.get(esperaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    /*
+    Envía una página guardada. Si el cliente ya la tiene se responde 304; si acepta gzip se
+    envían los bytes ya comprimidos (no se comprime en cada petición).
+     */
+    private static void enviar(HttpServletRequest req, HttpServletResponse resp, Pagina pagina) throws IOException {
+        if (pagina.etag() != null) {
+            resp.setHeader("ETag", pagina.etag());
+        }
+        resp.setDateHeader("Last-Modified", pagina.modificado());
+        if (pagina.cacheControl() != null) {
+            resp.setHeader("Cache-Control", pagina.cacheControl());
+        }
+        resp.setHeader("Vary", "Accept-Encoding, Cookie");
+        if (pagina.etag() != null && RespuestaCondicional.noModificado(req, pagina.etag(), pagina.modificado())) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] cuerpo = pagina.contenido();
+        if (CompresionFilter.acepta(req, "gzip")) {
+            resp.setHeader("Content-Encoding", "gzip");
+            cuerpo = pagina.gzip();
+        }
+        resp.setContentType(pagina.contentType());
+        resp.setContentLength(cuerpo.length);
+        if (!"HEAD".equals(req.getMethod())) {
+            resp.getOutputStream().write(cuerpo);
+        }
+    }
+
+    // La página es de la versión actual del catálogo y no expiró
+    private static boolean esVigente(CompletableFuture<Pagina> futura, long version) {
+        if (futura.isCompletedExceptionally()) {
+            return false;
+        }
+        Pagina pagina = futura.join();
+        return pagina.version() == version && System.nanoTime() - pagina.expira() < 0;
+    }
+
+    private static boolean esLectura(HttpServletRequest req) {
+        return "GET".equals(req.getMethod()) || "HEAD".equals(req.getMethod());
+    }
+
+    // Un visitante es anónimo si no tiene sesión o su sesión no tiene el atributo username
+    private static boolean esAnonimo(HttpServletRequest req) {
+        HttpSession session = req.getSession(false);
+        return session == null || session.getAttribute("username") == null;
+    }
+
+    private static byte[] comprimir(byte[] contenido) throws IOException {
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream(Math.max(64, contenido.length / 4));
+        try (GZIPOutputStream salida = new GZIPOutputStream(gzip)) {
+            salida.write(contenido);
+        }
+        return gzip.toByteArray();
+    }
+
+    // Número de páginas enviadas desde la caché
+    public static long getAciertos() {
+        return aciertos.sum();
+    }
+
+    // Número de páginas generadas y guardadas
+    public static long getGeneradas() {
+        return generadas.sum();
+    }
+
+    // Número de peticiones que esperaron una página generada por otra petición
+    public static long getEsperas() {
+        return esperas.sum();
+    }
+
+    /*
+    Petición sin If-None-Match ni If-Modified-Since, para que el servlet no responda 304
+    a la petición que genera la página que se va a guardar.
+     */
+    private static class SinCondiciones extends HttpServletRequestWrapper {
+
+        SinCondiciones(HttpServletRequest request) {
+            super(request);
+        }
+
+        private static boolean esCondicional(String nombre) {
+            return "If-None-Match".equalsIgnoreCase(nombre) || "If-Modified-Since".equalsIgnoreCase(nombre);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return esCondicional(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return esCondicional(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public long getDateHeader(String name) {
+            return esCondicional(name) ? -1 : super.getDateHeader(name);
+        }
+    }
+
+    /*
+    Respuesta que guarda el cuerpo en memoria en lugar de enviarlo al cliente.
+    Las cabeceras y el código de estado sí se aplican a la respuesta real.
+     */
+    private static class Captura extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream contenido = new ByteArrayOutputStream(32768);
+        private ServletOutputStream salida;
+        private PrintWriter writer;
+
+        Captura(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() ya fue invocado");
+            }
+            if (salida == null) {
+                salida = new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        // La página se captura en memoria de forma síncrona para guardarla
+                        throw new IllegalStateException(
+                                "CachePaginaFilter no admite escritura no bloqueante al capturar una página");
+                    }
+
+                    @Override
+                    public void write(int b) {
+                        contenido.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        contenido.write(b, off, len);
+                    }
+                };
+            }
+            return salida;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (salida != null) {
+                throw new IllegalStateException("getOutputStream() ya fue invocado");
+            }
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(contenido, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        // El largo lo fija el filtro al enviar (puede ser el del contenido comprimido)
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+        }
+
+        // No se confirma la respuesta real mientras se captura
+        @Override
+        public void flushBuffer() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            contenido.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            contenido.reset();
+        }
+
+        byte[] getContenido() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return contenido.toByteArray();
+        }
+    }
+}
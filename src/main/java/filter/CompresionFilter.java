@@ -0,0 +1,487 @@
+package filter;
+/*
+Autor: Byron Melo
+Fecha: 17/10/2026
+Versión: 1.2
+Descripción:
+Filtro que comprime las respuestas de texto (HTML de los JSP, CSS, JSON) con gzip o deflate,
+según lo que el cliente indique en la cabecera Accept-Encoding (se prefiere gzip).
+
+- Solo se comprimen los tipos de contenido de la lista "tipos"; los PDF, imágenes y demás
+  formatos ya comprimidos se envían sin cambios.
+- Las respuestas menores que "umbral" bytes no se comprimen: se guardan en un búfer y, si
+  terminan antes de llegar al umbral, se envían tal cual (comprimir unos pocos bytes cuesta
+  más de lo que ahorra).
+- Si la respuesta ya tiene Content-Encoding (por ejemplo la página gzip de CachePaginaFilter
+  o un archivo .gz precomprimido de RecursoEstaticoFilter) no se vuelve a comprimir.
+- Crear un Deflater reserva memoria nativa (zlib), por eso se reutilizan en lugar de crear
+  uno por respuesta. El Deflater se toma mientras dura la compresión y se devuelve al terminar,
+  así nunca lo usan dos respuestas a la vez.
+Versión 1.1: reset() y resetBuffer() de la respuesta también descartan lo que el filtro tenía
+guardado (el búfer bajo el umbral, el Writer y la compresión ya iniciada). Antes esos bytes
+sobrevivían, por ejemplo, al forward a una página de error después de que un JSP empezó a
+escribir, y se enviaban al terminar.
+Versión 1.2: los Deflater libres se guardan en una reserva compartida por todos los hilos
+(hasta "deflaters" de cada tipo) y no en un ThreadLocal: con el conector de hilos virtuales
+(useVirtualThreads="true") cada petición tiene un hilo nuevo y el Deflater guardado en el hilo
+nunca se reutilizaba ni se liberaba con end(). Si el servlet o el JSP lanza una excepción, el
+Deflater también se devuelve (antes solo se devolvía al terminar la respuesta sin errores).
+ */
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebInitParam;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/*
+Parámetros de inicio:
+- umbral: tamaño mínimo (bytes) de una respuesta para comprimirla.
+- nivel: nivel de compresión de zlib (1 = más rápido, 9 = más pequeño).
+- tipos: tipos de contenido que se comprimen, separados por comas.
+- deflaters: Deflater libres que se guardan para reutilizar, de cada tipo (gzip y deflate).
+ */
+@WebFilter(filterName = "compresionFilter", urlPatterns = "/*", asyncSupported = true, initParams = {
+        @WebInitParam(name = "umbral", value = "1024"),
+        @WebInitParam(name = "nivel", value = "6"),
+        @WebInitParam(name = "deflaters", value = "32"),
+        @WebInitParam(name = "tipos",
+                value = "text/html,text/css,text/plain,text/javascript,application/javascript,application/json,image/svg+xml")})
+public class CompresionFilter implements Filter {
+
+    // Cabecera gzip mínima (RFC 1952): método deflate, sin nombre ni fecha
+    private static final byte[] CABECERA_GZIP = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private int umbral = 1024;
+    private int nivel = 6;
+    private final Set<String> tipos = new HashSet<>();
+
+    // Deflater libres: sin envoltura zlib (para gzip) y con envoltura zlib (deflate)
+    private BlockingQueue<Deflater> deflaterGzip;
+    private BlockingQueue<Deflater> deflaterZlib;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        String valor = filterConfig.getInitParameter("umbral");
+        if (valor != null) {
+            umbral = Integer.parseInt(valor.trim());
+        }
+        valor = filterConfig.getInitParameter("nivel");
+        if (valor != null) {
+            nivel = Integer.parseInt(valor.trim());
+        }
+        int deflaters = 32;
+        valor = filterConfig.getInitParameter("deflaters");
+        if (valor != null) {
+            deflaters = Integer.parseInt(valor.trim());
+        }
+        deflaterGzip = new ArrayBlockingQueue<>(Math.max(deflaters, 1));
+        deflaterZlib = new ArrayBlockingQueue<>(Math.max(deflaters, 1));
+        valor = filterConfig.getInitParameter("tipos");
+        if (valor != null) {
+            for (String tipo : valor.split(",")) {
+                if (!tipo.isBlank()) {
+                    tipos.add(tipo.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        String codificacion = acepta(req, "gzip") ? "gzip" : acepta(req, "deflate") ? "deflate" : null;
+        if (codificacion == null || "HEAD".equals(req.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        RespuestaComprimida respuesta = new RespuestaComprimida((HttpServletResponse) response, codificacion);
+        boolean completa = false;
+        try {
+            chain.doFilter(request, respuesta);
+            completa = true;
+        } finally {
+            // En una petición asíncrona la respuesta se termina al cerrar la salida
+            if (!req.isAsyncStarted()) {
+                if (completa) {
+                    respuesta.terminar();
+                } else {
+                    // Error del servlet: no se termina el flujo comprimido, solo se devuelve el Deflater
+                    respuesta.abandonar();
+                }
+            }
+        }
+    }
+
+    // Libera la memoria nativa de los Deflater guardados
+    @Override
+    public void destroy() {
+        for (BlockingQueue<Deflater> libres : List.of(deflaterGzip, deflaterZlib)) {
+            Deflater deflater;
+            while ((deflater = libres.poll()) != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Indica si el cliente acepta la codificación indicada en Accept-Encoding
+     * (se excluye "q=0", que significa que no la acepta).
+     */
+    static boolean acepta(HttpServletRequest req, String codificacion) {
+        String aceptadas = req.getHeader("Accept-Encoding");
+        if (aceptadas == null) {
+            return false;
+        }
+        for (String valor : aceptadas.split(",")) {
+            String[] partes = valor.trim().split(";");
+            if (partes[0].trim().equalsIgnoreCase(codificacion)) {
+                return partes.length < 2 || !partes[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    /*
+    Toma un Deflater libre (o crea uno si no hay).
+     */
+    private Deflater tomarDeflater(boolean gzip) {
+        Deflater deflater = (gzip ? deflaterGzip : deflaterZlib).poll();
+        return deflater != null ? deflater : new Deflater(nivel, gzip);
+    }
+
+    /*
+    Devuelve el Deflater a los libres; si ya hay "deflaters" guardados se libera la memoria nativa.
+     */
+    private void devolverDeflater(Deflater deflater, boolean gzip) {
+        deflater.reset();
+        if (!(gzip ? deflaterGzip : deflaterZlib).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /*
+    Respuesta que decide si se comprime cuando el servlet pide la salida (en ese momento ya
+    se conoce el tipo de contenido). Si no se comprime, entrega la salida original.
+     */
+    private class RespuestaComprimida extends HttpServletResponseWrapper {
+        private final String codificacion;
+        private SalidaComprimida comprimida;
+        private ServletOutputStream original;
+        private PrintWriter writer;
+        // true si el Writer es del filtro (sobre salida()) y no el de la respuesta original
+        private boolean writerPropio;
+        private long contentLength = -1;
+
+        RespuestaComprimida(HttpServletResponse response, String codificacion) {
+            super(response);
+            this.codificacion = codificacion;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() ya fue invocado");
+            }
+            return salida();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (comprimida == null && original == null && !comprimible()) {
+                    writer = super.getWriter();
+                } else {
+                    writer = new PrintWriter(new OutputStreamWriter(salida(), getCharacterEncoding()));
+                    writerPropio = true;
+                }
+            }
+            return writer;
+        }
+
+        private ServletOutputStream salida() throws IOException {
+            if (comprimida != null) {
+                return comprimida;
+            }
+            if (original != null) {
+                return original;
+            }
+            if (comprimible()) {
+                addHeader("Vary", "Accept-Encoding");
+                comprimida = new SalidaComprimida((HttpServletResponse) getResponse(), codificacion);
+                return comprimida;
+            }
+            if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            }
+            original = super.getOutputStream();
+            return original;
+        }
+
+        private boolean comprimible() {
+            String tipo = getContentType();
+            if (tipo == null || containsHeader("Content-Encoding")
+                    || (contentLength >= 0 && contentLength < umbral)) {
+                return false;
+            }
+            int status = getStatus();
+            if (status == HttpServletResponse.SC_NO_CONTENT || status == HttpServletResponse.SC_NOT_MODIFIED) {
+                return false;
+            }
+            int fin = tipo.indexOf(';');
+            return tipos.contains((fin >= 0 ? tipo.substring(0, fin) : tipo).trim().toLowerCase(Locale.ROOT));
+        }
+
+        // Mientras no se decida, el largo se guarda: si se comprime, el largo original no sirve
+        @Override
+        public void setContentLength(int len) {
+            setContentLengthLong(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            if (original != null) {
+                super.setContentLengthLong(len);
+            } else if (comprimida == null) {
+                contentLength = len;
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (comprimida != null) {
+                comprimida.flush();
+            } else {
+                super.flushBuffer();
+            }
+        }
+
+        /*
+        Vacía el búfer de la respuesta (lanza IllegalStateException si ya se envió algo) y
+        descarta lo escrito que el filtro tenía guardado. Se mantienen las cabeceras, por eso
+        una compresión ya iniciada vuelve a empezar con Content-Encoding.
+         */
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            descartarWriter();
+            if (comprimida != null) {
+                comprimida.descartar();
+            }
+        }
+
+        /*
+        Vacía el búfer, el código de estado y las cabeceras (también Content-Encoding y Vary):
+        la decisión de comprimir se vuelve a tomar con el siguiente getOutputStream/getWriter.
+         */
+        @Override
+        public void reset() {
+            super.reset();
+            descartarWriter();
+            if (comprimida != null) {
+                comprimida.abandonar();
+                comprimida = null;
+            }
+            original = null;
+            contentLength = -1;
+        }
+
+        // Los caracteres pendientes del Writer del filtro se pierden con él; el siguiente getWriter crea otro
+        private void descartarWriter() {
+            if (writerPropio) {
+                writer = null;
+                writerPropio = false;
+            }
+        }
+
+        // Devuelve el Deflater sin terminar el flujo comprimido (el servlet falló)
+        void abandonar() {
+            if (comprimida != null) {
+                comprimida.abandonar();
+            }
+        }
+
+        void terminar() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (comprimida != null) {
+                comprimida.close();
+            }
+        }
+    }
+
+    /*
+    Salida que guarda los primeros bytes en un búfer hasta superar el umbral. Si se supera,
+    agrega Content-Encoding y comprime; si la respuesta termina antes, envía el búfer sin comprimir.
+    Para gzip se escriben a mano la cabecera y el final (CRC32 y tamaño), porque
+    GZIPOutputStream no permite reutilizar un Deflater.
+     */
+    private class SalidaComprimida extends ServletOutputStream {
+        private final HttpServletResponse respuesta;
+        private final boolean gzip;
+        private final byte[] bufer = new byte[umbral];
+        private int enBufer;
+        private final CRC32 crc = new CRC32();
+        private final byte[] bloque = new byte[8192];
+        private ServletOutputStream destino;
+        private Deflater deflater;
+        // La cabecera gzip se escribe antes del primer bloque comprimido
+        private boolean cabeceraPendiente;
+        private boolean cerrada;
+
+        SalidaComprimida(HttpServletResponse respuesta, String codificacion) {
+            this.respuesta = respuesta;
+            this.gzip = "gzip".equals(codificacion);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (cerrada) {
+                throw new IOException("La salida ya está cerrada");
+            }
+            if (deflater == null) {
+                if (enBufer + len <= bufer.length) {
+                    System.arraycopy(b, off, bufer, enBufer, len);
+                    enBufer += len;
+                    return;
+                }
+                iniciar();
+            }
+            comprimir(b, off, len);
+        }
+
+        private void iniciar() throws IOException {
+            respuesta.setHeader("Content-Encoding", gzip ? "gzip" : "deflate");
+            destino = respuesta.getOutputStream();
+            deflater = tomarDeflater(gzip);
+            cabeceraPendiente = gzip;
+            comprimir(bufer, 0, enBufer);
+            enBufer = 0;
+        }
+
+        private void comprimir(byte[] b, int off, int len) throws IOException {
+            if (gzip) {
+                crc.update(b, off, len);
+            }
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                escribirBloque();
+            }
+        }
+
+        private void escribirBloque() throws IOException {
+            int largo = deflater.deflate(bloque, 0, bloque.length);
+            if (largo > 0) {
+                if (cabeceraPendiente) {
+                    destino.write(CABECERA_GZIP);
+                    cabeceraPendiente = false;
+                }
+                destino.write(bloque, 0, largo);
+            }
+        }
+
+        /*
+        Descarta lo escrito después de resetBuffer(): el búfer bajo el umbral y, si la compresión
+        ya empezó, el estado del Deflater (el flujo comprimido vuelve a empezar desde la cabecera).
+         */
+        void descartar() {
+            enBufer = 0;
+            if (deflater != null) {
+                deflater.reset();
+                crc.reset();
+                cabeceraPendiente = gzip;
+            }
+        }
+
+        // Descarta todo después de reset(): la salida no se vuelve a usar y el Deflater se devuelve
+        void abandonar() {
+            enBufer = 0;
+            cerrada = true;
+            if (deflater != null) {
+                devolverDeflater(deflater, gzip);
+                deflater = null;
+            }
+        }
+
+        // Mientras se llena el búfer no se envía nada (el umbral todavía no se decide)
+        @Override
+        public void flush() throws IOException {
+            if (destino != null) {
+                destino.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (cerrada) {
+                return;
+            }
+            cerrada = true;
+            if (deflater == null) {
+                // Respuesta pequeña: se envía sin comprimir
+                respuesta.setContentLength(enBufer);
+                respuesta.getOutputStream().write(bufer, 0, enBufer);
+                return;
+            }
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    escribirBloque();
+                }
+                if (gzip) {
+                    escribirEntero((int) crc.getValue());
+                    escribirEntero((int) deflater.getBytesRead());
+                }
+            } finally {
+                devolverDeflater(deflater, gzip);
+                deflater = null;
+            }
+        }
+
+        // Entero de 4 bytes en orden little-endian (final del formato gzip)
+        private void escribirEntero(int valor) throws IOException {
+            destino.write(valor & 0xff);
+            destino.write((valor >>> 8) & 0xff);
+            destino.write((valor >>> 16) & 0xff);
+            destino.write((valor >>> 24) & 0xff);
+        }
+
+        @Override
+        public boolean isReady() {
+            return destino == null || destino.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                respuesta.getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -2,30 +2,77 @@ package filter;
 /*
 Autor: Byron Melo
 Fecha: 17/11/2025
-Versión: 1.0
+Versión: 1.10
 Descripción:
 Filtro encargado de administrar la conexión a la base de datos para todas las
 solicitudes que lleguen a la aplicación. El filtro obtiene una conexión,
 la agrega como atributo en el request para que otros componentes (servlets o DAOs)
 puedan utilizarla, y realiza commit o rollback según corresponda.
+Versión 1.1: la conexión es perezosa (ConexionPerezosa), solo se pide al pool cuando se
+ejecuta SQL, y las rutas que no usan la base de datos se excluyen del filtro.
+Versión 1.2: los servicios confirman y liberan la conexión al terminar cada unidad de
+trabajo (UnidadTrabajo), antes de que se genere la vista o se envíe la respuesta. El filtro
+solo confirma lo que haya quedado pendiente fuera de una unidad de trabajo y mide, por
+petición, el tiempo que se retuvo una conexión del pool frente al tiempo de acceso a datos.
+Versión 1.3: las peticiones GET y HEAD (solo lectura) usan una conexión de solo lectura de
+la réplica (ConexionBDD.getDataSourceLectura); el resto usa el servidor principal. Después
+de una escritura, las lecturas de ese usuario se mantienen en el servidor principal durante
+"replicaPegajosoMs" milisegundos, para que siempre vea sus propios cambios aunque la
+réplica todavía no los haya recibido.
+Versión 1.4: el filtro tiene nombre (conexionFilter) para fijar su orden en web.xml.
+Versión 1.5: se cuentan las peticiones atendidas en un hilo virtual (conector de Tomcat con
+useVirtualThreads="true").
+Versión 1.6: los errores de base de datos se registran con el logger (antes printStackTrace) y
+se cuentan en Metricas; los contadores del filtro también se publican en /metrics, que se
+excluye del filtro (junto con /metrics/sql).
+Versión 1.7: cada petición que usó la base de datos emite un evento de JFR
+(util.EventosJfr.Transaccion) con el resultado (commit o rollback), el tiempo que retuvo la
+conexión y el tiempo de acceso a datos, cuando hay una grabación activa.
+Versión 1.8: una lectura con el atributo ATRIBUTO_LEER_PRINCIPAL usa el servidor principal y
+no la réplica (CachePaginaFilter lo usa para las páginas que guarda para todos los visitantes).
+Versión 1.9: el resumen de destroy() se registra con el logger en lugar de System.out.
+Versión 1.10: atender las peticiones en hilos virtuales es configuración del contenedor, no de
+la aplicación: <Connector ... useVirtualThreads="true"/> en server.xml de Tomcat (10.1.25+ / 11).
+El filtro solo cuenta cuántas peticiones llegaron en un hilo virtual, para confirmar que el
+conector está configurado (ver util.PruebaCargaHilosVirtuales).
  */
 
 import jakarta.servlet.*;
 import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebInitParam;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import util.ConexionBDD;
+import util.ConexionContexto;
+import util.ConexionPerezosa;
+import util.EventosJfr;
+import util.Metricas;
 import services.ServiceJbdcException;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /*
 Implementamos una anotación que nos permite ejecutar este filtro para
 todas las rutas de la aplicación ("/*"). Eso significa que cada request
 pasará por este filtro antes de llegar al recurso solicitado.
+asyncSupported = true permite que los servlets asíncronos (DescargarFacturaServlet) usen
+req.startAsync(). El filtro libera la conexión cuando el servlet retorna; el trabajo que
+continúa en otro hilo no tiene conexión asociada y, si accede a datos, UnidadTrabajo pide
+una conexión propia al pool.
  */
-@WebFilter("/*")
+@WebFilter(filterName = "conexionFilter", urlPatterns = "/*", asyncSupported = true, initParams = {
+        @WebInitParam(name = "excluir",
+                value = "/css/,*.css,*.js,*.png,*.jpg,*.ico,/index.html,/login,/login.html,/login.jsp,/logout,/ver-carro,/actualizar-carro,/carro.jsp,/descargar-factura,/metrics,/metrics/"),
+        @WebInitParam(name = "replicaPegajosoMs", value = "5000")})
 public class ConexionFilter implements Filter {
 
     /*
@@ -40,6 +87,97 @@ public class ConexionFilter implements Filter {
     Los filtros funcionan en servidores compatibles con Jakarta EE.
      */
 
+    /*
+    Rutas que nunca usan la base de datos. Se configuran con el parámetro de inicio "excluir"
+    (se puede sobrescribir en web.xml) como una lista separada por comas:
+    - Una ruta que termina en "/" excluye todo lo que empiece con ese prefijo (ej: /css/).
+    - Una ruta que empieza con "*." excluye por extensión (ej: *.css).
+    - Cualquier otra ruta se compara de forma exacta (ej: /logout).
+     */
+    private final List<String> prefijosExcluidos = new ArrayList<>();
+    private final List<String> extensionesExcluidas = new ArrayList<>();
+    private final Set<String> rutasExcluidas = new HashSet<>();
+
+    /*
+    Atributo de sesión con el momento (System.currentTimeMillis) de la última escritura
+    del usuario, y tiempo durante el cual sus lecturas se hacen en el servidor principal.
+    Debe ser mayor que el retraso habitual de la réplica.
+     */
+    private static final String ATRIBUTO_ULTIMA_ESCRITURA = "ultimaEscritura";
+
+    /*
+    Atributo de la petición con el que otro filtro pide que las lecturas se hagan en el servidor
+    principal, cuando el resultado se comparte con otros usuarios y no puede estar atrasado.
+     */
+    public static final String ATRIBUTO_LEER_PRINCIPAL = "sistemaventas.leerPrincipal";
+    private long replicaPegajosoMs = 5000;
+
+    /*
+    Contadores globales: peticiones que pasaron por el filtro y peticiones que
+    realmente necesitaron una conexión a la base de datos.
+    Se usa LongAdder porque es más eficiente que AtomicLong cuando muchos hilos
+    incrementan el mismo contador al mismo tiempo.
+     */
+    private static final LongAdder peticionesTotales = new LongAdder();
+    private static final LongAdder peticionesConConexion = new LongAdder();
+    private static final LongAdder peticionesSoloLectura = new LongAdder();
+    private static final LongAdder peticionesHiloVirtual = new LongAdder();
+
+    /*
+    Tiempos acumulados de las peticiones que usaron la base de datos:
+    - retenida: tiempo total que las peticiones tuvieron ocupada una conexión del pool.
+    - acceso a datos: tiempo total dentro de unidades de trabajo (ejecución de SQL).
+    Si la conexión se retiene mucho más tiempo del que se usa, hay trabajo que no es SQL
+    (generar HTML o PDF, enviar la respuesta) ocupando conexiones del pool.
+    El detalle de cada petición se registra con el nivel FINE del logger.
+     */
+    private static final LongAdder retenidaNanos = new LongAdder();
+    private static final LongAdder accesoDatosNanos = new LongAdder();
+    private static final Logger LOG = Logger.getLogger(ConexionFilter.class.getName());
+    // Peticiones que terminaron con un error de base de datos (rollback y respuesta 500)
+    private static final Metricas.Contador ERRORES = Metricas.contador("sistemaventas_errores_bd_total",
+            "Peticiones que terminaron con un error de base de datos");
+
+    static {
+        Metricas.contador("sistemaventas_peticiones_total", "Peticiones que pasaron por ConexionFilter",
+                ConexionFilter::getPeticionesTotales);
+        Metricas.contador("sistemaventas_peticiones_con_conexion_total",
+                "Peticiones que necesitaron una conexión a la base de datos", ConexionFilter::getPeticionesConConexion);
+        Metricas.contador("sistemaventas_peticiones_solo_lectura_total",
+                "Peticiones que usaron una conexión de solo lectura", ConexionFilter::getPeticionesSoloLectura);
+        Metricas.contador("sistemaventas_conexion_retenida_ms_total",
+                "Tiempo total que las peticiones retuvieron una conexión del pool (ms)",
+                ConexionFilter::getTiempoRetenidaMs);
+        Metricas.contador("sistemaventas_acceso_datos_ms_total",
+                "Tiempo total que las peticiones pasaron accediendo a datos (ms)", ConexionFilter::getTiempoAccesoDatosMs);
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        String pegajoso = filterConfig.getInitParameter("replicaPegajosoMs");
+        if (pegajoso != null) {
+            replicaPegajosoMs = Long.parseLong(pegajoso.trim());
+        }
+
+        String excluir = filterConfig.getInitParameter("excluir");
+        if (excluir == null) {
+            return;
+        }
+        for (String ruta : excluir.split(",")) {
+            ruta = ruta.trim();
+            if (ruta.isEmpty()) {
+                continue;
+            }
+            if (ruta.startsWith("*.")) {
+                extensionesExcluidas.add(ruta.substring(1));
+            } else if (ruta.endsWith("/")) {
+                prefijosExcluidos.add(ruta);
+            } else {
+                rutasExcluidas.add(ruta);
+            }
+        }
+    }
+
     // Sobrescribimos el metodo doFilter de la interfaz Filter.
     // Este metodo es obligatorio y se ejecuta en cada solicitud.
     @Override
@@ -54,31 +192,61 @@ public class ConexionFilter implements Filter {
                        mediante filterChain.doFilter(request, response).
          */
 
-        // Obtenemos una conexión desde la clase utilitaria ConexionBDD
-        try (Connection conn = ConexionBDD.getConnection()) {
+        peticionesTotales.increment();
+        if (Thread.currentThread().isVirtual()) {
+            peticionesHiloVirtual.increment();
+        }
 
-            /*
-            Antes de procesar la solicitud verificamos y configuramos el autocommit.
-            Si el autocommit está en true, lo desactivamos para poder controlar
-            manualmente las transacciones (commit o rollback).
-             */
-            if (conn.getAutoCommit()) {
-                conn.setAutoCommit(false);
-            }
+        // Las rutas excluidas (recursos estáticos, login, logout, carro) no hacen ningún trabajo JDBC
+        if (estaExcluida((HttpServletRequest) request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
 
+        /*
+        En lugar de pedir una conexión al pool en cada petición, creamos una conexión perezosa:
+        el proxy solo pide una conexión real la primera vez que un servlet o DAO ejecuta SQL.
+         */
+        HttpServletRequest req = (HttpServletRequest) request;
+        EventosJfr.Transaccion evento = new EventosJfr.Transaccion();
+        evento.begin();
+        boolean soloLectura = esLectura(req);
+        /*
+        Para las escrituras se crea la sesión antes de ejecutar el servlet, porque después
+        la respuesta ya puede estar enviada (por ejemplo una redirección) y no se podría crear.
+         */
+        HttpSession session = soloLectura ? req.getSession(false) : req.getSession();
+        ConexionPerezosa conexion;
+        if (soloLectura && !escribioRecientemente(session)
+                && !Boolean.TRUE.equals(req.getAttribute(ATRIBUTO_LEER_PRINCIPAL))) {
+            conexion = new ConexionPerezosa(ConexionBDD.getDataSourceLectura(), true);
+        } else {
+            // Escrituras, lecturas justo después de una escritura o que se comparten: servidor principal
+            conexion = new ConexionPerezosa(ConexionBDD.getDataSource(), soloLectura);
+        }
+        try {
             try {
                 /*
                 Agregamos la conexión como atributo dentro del request.
                 Esto permite que servlets, DAOs u otros filtros puedan obtenerla
                 mediante el siguiente código: (Connection) request.getAttribute("conn").
                  */
-                request.setAttribute("conn", conn);
+                request.setAttribute("conn", conexion.getConexion());
+                /*
+                También la asociamos al hilo de la petición (ConexionContexto), de donde la toman
+                los repositorios, que son objetos únicos compartidos por todas las peticiones.
+                 */
+                ConexionContexto.asociar(conexion.getConexion());
 
                 // Pasamos la solicitud y respuesta al siguiente filtro o servlet
                 filterChain.doFilter(request, response);
 
-                // Si sale bien confirmamos los cambios
-                conn.commit();
+                /*
+                Si sale bien confirmamos los cambios hechos fuera de una unidad de trabajo
+                (solo si la conexión real sigue abierta).
+                 */
+                conexion.commit();
+                evento.resultado = "commit";
 
             } catch (SQLException | ServiceJbdcException e) {
                  /*
@@ -86,18 +254,153 @@ public class ConexionFilter implements Filter {
                 realizamos un rollback para evitar que los cambios se guarden
                 de forma incorrecta.
                  */
-                conn.rollback();
+                evento.resultado = "rollback";
+                conexion.rollback();
                 /*
 
                 Se envía el código de error 500 al cliente indicando un problema interno del servidor
                  */
                 ((HttpServletResponse) response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
                 e.getMessage());
-                e.printStackTrace();
+                ERRORES.incrementar();
+                LOG.log(Level.SEVERE, "Error de base de datos en " + req.getMethod() + " " + req.getRequestURI(), e);
+            } finally {
+                ConexionContexto.desasociar();
+                // Devolvemos la conexión real al pool (si se llegó a pedir)
+                conexion.liberar();
+                if (conexion.isUsada()) {
+                    registrarTiempos(req, conexion);
+                    registrarEvento(evento, req, conexion);
+                    if (!soloLectura) {
+                        // Las siguientes lecturas de este usuario irán al servidor principal
+                        session.setAttribute(ATRIBUTO_ULTIMA_ESCRITURA, System.currentTimeMillis());
+                    }
+                }
             }
         }catch(SQLException throwables) {
-            throwables.printStackTrace();
+            ERRORES.incrementar();
+            LOG.log(Level.SEVERE, "No se pudo liberar la conexión de " + req.getRequestURI(), throwables);
+        }
+    }
 
+    /*
+    Verifica si la ruta de la petición (sin el contexto de la aplicación) está excluida.
+     */
+    private boolean estaExcluida(HttpServletRequest req) {
+        String ruta = req.getRequestURI().substring(req.getContextPath().length());
+        if (rutasExcluidas.contains(ruta)) {
+            return true;
         }
+        for (String prefijo : prefijosExcluidos) {
+            if (ruta.startsWith(prefijo)) {
+                return true;
+            }
+        }
+        for (String extension : extensionesExcluidas) {
+            if (ruta.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    Las peticiones GET y HEAD solo consultan datos, el resto (POST, etc.) puede escribir.
+     */
+    private static boolean esLectura(HttpServletRequest req) {
+        return "GET".equals(req.getMethod()) || "HEAD".equals(req.getMethod());
+    }
+
+    /*
+    Indica si el usuario escribió hace menos de replicaPegajosoMs milisegundos.
+     */
+    private boolean escribioRecientemente(HttpSession session) {
+        if (session == null) {
+            return false;
+        }
+        Object ultima;
+        try {
+            ultima = session.getAttribute(ATRIBUTO_ULTIMA_ESCRITURA);
+        } catch (IllegalStateException e) {
+            // La sesión fue invalidada
+            return false;
+        }
+        return ultima instanceof Long momento && System.currentTimeMillis() - momento < replicaPegajosoMs;
+    }
+
+    /*
+    Acumula los tiempos de conexión de la petición.
+     */
+    private static void registrarTiempos(HttpServletRequest req, ConexionPerezosa conexion) {
+        peticionesConConexion.increment();
+        if (conexion.isSoloLectura()) {
+            peticionesSoloLectura.increment();
+        }
+        retenidaNanos.add(conexion.getRetenidaNanos());
+        accesoDatosNanos.add(conexion.getOperacionesNanos());
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("%s %s: conexión retenida %.2f ms, acceso a datos %.2f ms",
+                    req.getMethod(), req.getRequestURI(), conexion.getRetenidaNanos() / 1e6,
+                    conexion.getOperacionesNanos() / 1e6));
+        }
+    }
+
+    /*
+    Termina el evento de JFR de la petición; los campos solo se llenan si se va a grabar.
+     */
+    private static void registrarEvento(EventosJfr.Transaccion evento, HttpServletRequest req,
+                                        ConexionPerezosa conexion) {
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.metodo = req.getMethod();
+            evento.uri = req.getRequestURI();
+            evento.soloLectura = conexion.isSoloLectura();
+            evento.retenida = conexion.getRetenidaNanos();
+            evento.accesoDatos = conexion.getOperacionesNanos();
+            if (evento.resultado == null) {
+                // El servlet lanzó una excepción que no es de base de datos
+                evento.resultado = "excepcion";
+            }
+            evento.commit();
+        }
+    }
+
+    // Número de peticiones que usaron una conexión de solo lectura
+    public static long getPeticionesSoloLectura() {
+        return peticionesSoloLectura.sum();
+    }
+
+    // Número de peticiones atendidas en un hilo virtual
+    public static long getPeticionesHiloVirtual() {
+        return peticionesHiloVirtual.sum();
+    }
+
+    // Tiempo total (ms) que las peticiones retuvieron una conexión del pool
+    public static long getTiempoRetenidaMs() {
+        return retenidaNanos.sum() / 1_000_000;
+    }
+
+    // Tiempo total (ms) que las peticiones pasaron accediendo a datos
+    public static long getTiempoAccesoDatosMs() {
+        return accesoDatosNanos.sum() / 1_000_000;
+    }
+
+    // Número de peticiones que pasaron por el filtro
+    public static long getPeticionesTotales() {
+        return peticionesTotales.sum();
+    }
+
+    // Número de peticiones que realmente necesitaron una conexión a la base de datos
+    public static long getPeticionesConConexion() {
+        return peticionesConConexion.sum();
+    }
+
+    @Override
+    public void destroy() {
+        LOG.info("ConexionFilter: " + getPeticionesConConexion() + " de "
+                + getPeticionesTotales() + " peticiones necesitaron una conexión a la base de datos ("
+                + getPeticionesHiloVirtual() + " atendidas en hilos virtuales)");
+        LOG.info("ConexionFilter: conexión retenida " + getTiempoRetenidaMs()
+                + " ms, acceso a datos " + getTiempoAccesoDatosMs() + " ms");
     }
 }
\ No newline at end of file
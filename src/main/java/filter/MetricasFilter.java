@@ -0,0 +1,88 @@
+package filter;
+/*
+Autor: Byron Melo
+Fecha: 17/10/2026
+Versión: 1.0
+Descripción:
+Filtro que mide cada petición HTTP y la registra en Metricas, agrupada por el servlet que la
+atiende (nombre del servlet, por ejemplo controllers.ProductoServlet, "default" para los
+recursos estáticos o "jsp" para los JSP), así el número de series es fijo y no crece con
+cada URL distinta:
+- sistemaventas_http_segundos{servlet="..."}: duración de la petición.
+- sistemaventas_http_respuestas_total{clase="2xx"}: respuestas por clase de código HTTP.
+Es el primer filtro de web.xml, así el tiempo incluye a los demás filtros (compresión,
+caché de páginas y conexión). Si el servlet continúa de forma asíncrona
+(DescargarFacturaServlet), la petición se registra cuando termina el AsyncContext.
+ */
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.Metricas;
+
+import java.io.IOException;
+
+@WebFilter(filterName = "metricasFilter", urlPatterns = "/*", asyncSupported = true)
+public class MetricasFilter implements Filter {
+
+    private static final Metricas.Familia<Metricas.Histograma> DURACION = Metricas.histogramas(
+            "sistemaventas_http_segundos", "Duración de las peticiones HTTP por servlet", "servlet");
+    private static final Metricas.Familia<Metricas.Contador> RESPUESTAS = Metricas.contadores(
+            "sistemaventas_http_respuestas_total", "Respuestas HTTP por clase de código", "clase");
+
+    // Contadores de cada clase de código (1xx a 5xx), sin buscarlos en cada petición
+    private static final Metricas.Contador[] POR_CLASE = new Metricas.Contador[6];
+
+    static {
+        for (int i = 1; i < POR_CLASE.length; i++) {
+            POR_CLASE[i] = RESPUESTAS.de(i + "xx");
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        long inicio = System.nanoTime();
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        boolean asincrona = false;
+        try {
+            chain.doFilter(request, response);
+            if (req.isAsyncStarted()) {
+                asincrona = true;
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        registrar(req, resp, inicio);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+        } finally {
+            if (!asincrona) {
+                registrar(req, resp, inicio);
+            }
+        }
+    }
+
+    private static void registrar(HttpServletRequest req, HttpServletResponse resp, long inicio) {
+        String servlet = req.getHttpServletMapping() != null ? req.getHttpServletMapping().getServletName() : null;
+        DURACION.de(servlet != null ? servlet : "desconocido").registrarDesde(inicio);
+        int clase = resp.getStatus() / 100;
+        if (clase >= 1 && clase < POR_CLASE.length) {
+            POR_CLASE[clase].incrementar();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package filter;
+/*
+Autor: Byron Melo
+Fecha: 17/10/2026
+Versión: 1.0
+Descripción:
+Filtro que envía los recursos estáticos (CSS) sin pasar por el resto de filtros.
+- Si el cliente acepta gzip y existe la versión precomprimida (archivo .gz generado al
+  empaquetar el WAR), se envía esa versión: no se comprime nada al atender la petición.
+- Los nombres versionados (con huella, ver util.RecursosEstaticos) no cambian nunca de
+  contenido, por eso se envían con Cache-Control immutable por un año. Los nombres
+  originales se envían con no-cache (el navegador revalida con ETag / Last-Modified).
+- Si no existe el .gz, la petición sigue hacia el servlet por defecto del contenedor
+  (CompresionFilter la comprime si corresponde).
+ */
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.RecursosEstaticos;
+import util.RespuestaCondicional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+
+@WebFilter(filterName = "recursoEstaticoFilter", urlPatterns = "/css/*")
+public class RecursoEstaticoFilter implements Filter {
+
+    private static final String CACHE_INMUTABLE = "public, max-age=31536000, immutable";
+    private static final String CACHE_REVALIDAR = "no-cache";
+
+    private ServletContext context;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        context = filterConfig.getServletContext();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        String ruta = req.getServletPath() + (req.getPathInfo() != null ? req.getPathInfo() : "");
+
+        resp.setHeader("Cache-Control", RecursosEstaticos.esVersionado(ruta) ? CACHE_INMUTABLE : CACHE_REVALIDAR);
+        URL comprimido = CompresionFilter.acepta(req, "gzip") ? context.getResource(ruta + ".gz") : null;
+        if (comprimido == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        URLConnection conexion = comprimido.openConnection();
+        long largo = conexion.getContentLengthLong();
+        long modificado = conexion.getLastModified();
+        String etag = "\"" + largo + "-" + modificado + "-gz\"";
+        resp.setHeader("ETag", etag);
+        resp.setDateHeader("Last-Modified", modificado);
+        resp.setHeader("Vary", "Accept-Encoding");
+        if (RespuestaCondicional.noModificado(req, etag, modificado)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        resp.setContentType(context.getMimeType(ruta));
+        resp.setHeader("Content-Encoding", "gzip");
+        if (largo >= 0) {
+            resp.setContentLengthLong(largo);
+        }
+        if ("HEAD".equals(req.getMethod())) {
+            return;
+        }
+        try (InputStream entrada = conexion.getInputStream()) {
+            entrada.transferTo(resp.getOutputStream());
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package listeners;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.13
+ * Descripción: Listener del ciclo de vida de la aplicación web. El contenedor (Tomcat)
+ * invoca contextInitialized al desplegar la aplicación y contextDestroyed al detenerla.
+ * Se utiliza para preparar y liberar los recursos compartidos por toda la aplicación:
+ * - Al iniciar crea los repositorios y el servicio de productos una sola vez y guarda el
+ *   servicio como atributo "productoService" del ServletContext para que los servlets lo usen.
+ *   De la misma forma crea el servicio de órdenes (atributo "ordenService").
+ * - Al iniciar carga la copia en memoria de las categorías (CatalogoCategorias).
+ * - Al iniciar crea el ejecutor acotado que genera las facturas PDF (atributo
+ *   "ejecutorFacturas", ver DescargarFacturaServlet) y al detener lo apaga.
+ * - Al iniciar abre el archivo de facturas ya generadas (atributo "archivoFacturas").
+ * - Al iniciar carga los nombres versionados de los recursos estáticos (RecursosEstaticos).
+ * - Al detener cierra el pool de conexiones a la base de datos.
+ * Versión 1.6: el repositorio de productos se envuelve con ProductoRepositoryIndiceImplement
+ * (Cache -> Indice -> Jdbc) y al iniciar se carga el índice de búsqueda (IndiceProductos).
+ * Versión 1.7: en el mismo recorrido se carga el índice de códigos de barras (IndiceCodigos).
+ * Versión 1.8: los repositorios se envuelven con Metricas.medir (duración de cada metodo) y se
+ * publican en /metrics el estado del pool de conexiones, de las cachés y de los índices.
+ * Versión 1.9: al detener, si la instrumentación de SQL está activa, se escriben en el log las
+ * sentencias con más tiempo total (SqlInstrumentado).
+ * Versión 1.10: los repositorios también emiten eventos de JFR (EventosJfr.Repositorio) y, con
+ * -Dsistemaventas.jfr.archivo, se graba JFR desde el inicio hasta que se detiene la aplicación.
+ * Versión 1.11: el repositorio de categorías recibe la caché de productos para invalidarla.
+ * Versión 1.12: -Dsistemaventas.cache.productos.replicaMs (lecturas de la réplica que no se
+ * guardan en la caché justo después de un cambio).
+ * Versión 1.13: al detener se desregistran los eventos de JFR (EventosJfr.desregistrar) para
+ * no retener el classloader de la aplicación después de un redespliegue.
+ * */
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import filter.CachePaginaFilter;
+import models.Categoria;
+import models.Producto;
+import repositorio.CacheProductos;
+import repositorio.CatalogoCategorias;
+import repositorio.CategoriaRepositoryJdbcImplement;
+import repositorio.IndiceCodigos;
+import repositorio.IndiceProductos;
+import repositorio.OrdenRepository;
+import repositorio.OrdenRepositoryJdbcImplement;
+import repositorio.ProductoRepository;
+import repositorio.ProductoRepositoryCacheImplement;
+import repositorio.ProductoRepositoryIndiceImplement;
+import repositorio.ProductoRepositoryJdbcImplement;
+import repositorio.Repository;
+import services.OrdenService;
+import services.OrdenServiceJdbcImpl;
+import services.ProductoService;
+import services.ProductoServiceJdbcImpl;
+import util.ArchivoFacturas;
+import util.ConexionBDD;
+import util.ConexionContexto;
+import util.EventosJfr;
+import util.Metricas;
+import util.PoolConexiones;
+import util.RecursosEstaticos;
+import util.SqlInstrumentado;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+@WebListener
+public class AplicacionListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ServletContext context = sce.getServletContext();
+        context.log("Iniciando la aplicación sistemaventas");
+
+        // Grabación JFR continua, solo si se definió -Dsistemaventas.jfr.archivo
+        EventosJfr.iniciarGrabacion();
+
+        /*
+         * Caché del catálogo de productos compartida por todas las peticiones.
+         * El tiempo de vida y el tamaño máximo se configuran con propiedades del sistema:
+         * -Dsistemaventas.cache.productos.ttlMs=30000 -Dsistemaventas.cache.productos.maximo=1000
+         * -Dsistemaventas.cache.productos.replicaMs=5000: tiempo después de un cambio en el que no
+         * se guarda lo leído de la réplica (igual o mayor que replicaPegajosoMs de ConexionFilter).
+         */
+        CacheProductos cacheProductos = new CacheProductos(
+                Long.getLong("sistemaventas.cache.productos.ttlMs", 30000L),
+                Integer.getInteger("sistemaventas.cache.productos.maximo", 1000),
+                Long.getLong("sistemaventas.cache.productos.replicaMs", 5000L));
+
+        /*
+         * Repositorios y servicio únicos (sin estado) para toda la aplicación.
+         * El decorador del índice va debajo de la caché para releer los productos modificados
+         * directamente en la base de datos.
+         */
+        ProductoRepository productoRepository = medir(ProductoRepository.class, new ProductoRepositoryCacheImplement(
+                new ProductoRepositoryIndiceImplement(
+                        medir(ProductoRepository.class, new ProductoRepositoryJdbcImplement(), "Producto"),
+                        IndiceProductos.getInstancia(), IndiceCodigos.getInstancia()),
+                cacheProductos, IndiceCodigos.getInstancia()), "Producto");
+        Repository<Categoria> categoriaRepository = medirCategorias(new CategoriaRepositoryJdbcImplement(cacheProductos));
+        ProductoService productoService = new ProductoServiceJdbcImpl(productoRepository, categoriaRepository);
+        OrdenService ordenService = new OrdenServiceJdbcImpl(
+                medir(OrdenRepository.class, new OrdenRepositoryJdbcImplement(), "Orden"), cacheProductos);
+
+        context.setAttribute("cacheProductos", cacheProductos);
+        context.setAttribute("productoService", productoService);
+        context.setAttribute("ordenService", ordenService);
+
+        /*
+         * Ejecutor de facturas PDF: un número fijo de hilos (generar un PDF usa mucha CPU) y una
+         * cola de espera acotada. Si la cola se llena el ejecutor rechaza la tarea y el servlet
+         * responde 503, en lugar de acumular trabajo sin límite y dejar sin CPU al catálogo.
+         * -Dsistemaventas.facturas.hilos=4 -Dsistemaventas.facturas.cola=50
+         */
+        int hilosFacturas = Integer.getInteger("sistemaventas.facturas.hilos",
+                Runtime.getRuntime().availableProcessors());
+        int colaFacturas = Integer.getInteger("sistemaventas.facturas.cola", 50);
+        context.setAttribute("ejecutorFacturas", new ThreadPoolExecutor(hilosFacturas, hilosFacturas,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(colaFacturas),
+                hilosConNombre("facturas"), new ThreadPoolExecutor.AbortPolicy()));
+
+        /*
+         * Archivo de facturas en disco, acotado en tamaño:
+         * -Dsistemaventas.facturas.directorio=/var/lib/sistemaventas/facturas
+         * -Dsistemaventas.facturas.maxBytes=268435456
+         * Si no se puede abrir, las facturas se generan siempre (sin archivo).
+         */
+        Path directorioFacturas = Path.of(System.getProperty("sistemaventas.facturas.directorio",
+                Path.of(System.getProperty("java.io.tmpdir"), "sistemaventas-facturas").toString()));
+        try {
+            context.setAttribute("archivoFacturas", new ArchivoFacturas(directorioFacturas,
+                    Long.getLong("sistemaventas.facturas.maxBytes", 256L * 1024 * 1024)));
+        } catch (IOException | RuntimeException e) {
+            context.log("No se pudo abrir el archivo de facturas " + directorioFacturas, e);
+        }
+
+        // Nombres con huella de los recursos estáticos (generados al empaquetar el WAR)
+        try {
+            RecursosEstaticos.cargar(context);
+        } catch (IOException e) {
+            context.log("No se pudieron cargar los nombres de los recursos estáticos", e);
+        }
+
+        /*
+         * Cargamos las categorías una sola vez al iniciar. Si la base de datos no está
+         * disponible, no detenemos el despliegue: el servicio las cargará en el primer uso.
+         */
+        try (Connection conn = ConexionBDD.getConnection()) {
+            ConexionContexto.asociar(conn);
+            CatalogoCategorias.getInstancia().recargar(categoriaRepository);
+            context.log("Categorías cargadas: " + CatalogoCategorias.getInstancia().listar().size());
+        } catch (SQLException e) {
+            context.log("No se pudieron cargar las categorías al iniciar", e);
+        } finally {
+            ConexionContexto.desasociar();
+        }
+
+        /*
+         * Índices de búsqueda y de códigos: se recorre el catálogo una sola vez con un cursor
+         * (sin cargar todas las filas a la vez). Si falla, el servicio los cargará en la primera
+         * búsqueda y los códigos se aprenden en cada consulta a la base de datos.
+         */
+        try (Connection conn = ConexionBDD.getConnection()) {
+            ConexionContexto.asociar(conn);
+            try (Stream<Producto> productos = productoRepository.stream(1000)) {
+                IndiceProductos.getInstancia().cargar(productos.peek(IndiceCodigos.getInstancia()::registrar));
+            }
+            context.log("Productos indexados para la búsqueda: " + IndiceProductos.getInstancia().tamanio()
+                    + ", códigos de barras: " + IndiceCodigos.getInstancia().tamanio());
+        } catch (SQLException | RuntimeException e) {
+            context.log("No se pudo cargar el índice de búsqueda al iniciar", e);
+        } finally {
+            ConexionContexto.desasociar();
+        }
+
+        registrarMetricas(context, cacheProductos);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        // Dejamos terminar las facturas en curso antes de cerrar el pool
+        ExecutorService ejecutorFacturas = (ExecutorService) sce.getServletContext().getAttribute("ejecutorFacturas");
+        if (ejecutorFacturas != null) {
+            ejecutorFacturas.shutdown();
+            try {
+                if (!ejecutorFacturas.awaitTermination(10, TimeUnit.SECONDS)) {
+                    ejecutorFacturas.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                ejecutorFacturas.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (ConexionBDD.isSqlInstrumentado()) {
+            StringBuilder resumen = new StringBuilder("Sentencias SQL con más tiempo total:\n");
+            SqlInstrumentado.escribirResumen(resumen, 20);
+            sce.getServletContext().log(resumen.toString());
+        }
+
+        // Cerramos las conexiones físicas del pool para no dejarlas abiertas en MySQL
+        ConexionBDD.cerrar();
+        sce.getServletContext().log("Pool de conexiones cerrado");
+
+        // Se escribe la grabación JFR al final, para que incluya el cierre de la aplicación
+        EventosJfr.detenerGrabacion();
+        EventosJfr.desregistrar();
+    }
+
+    /*
+     * Proxy que mide la duración de cada metodo del repositorio (sistemaventas_repositorio_segundos)
+     * y, por fuera, proxy que emite el evento de JFR sistemaventas.Repositorio.
+     */
+    private static <T> T medir(Class<T> interfaz, T repositorio, String entidad) {
+        T medido = Metricas.medir(interfaz, repositorio, "sistemaventas_repositorio",
+                "Duración de cada operación de repositorio");
+        return EventosJfr.medir(interfaz, medido, entidad, repositorio.getClass().getSimpleName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Repository<Categoria> medirCategorias(Repository<Categoria> repositorio) {
+        return medir(Repository.class, repositorio, "Categoria");
+    }
+
+    /*
+     * Publica en /metrics valores que ya llevan otras clases; se leen en cada consulta a /metrics.
+     */
+    private static void registrarMetricas(ServletContext context, CacheProductos cacheProductos) {
+        if (ConexionBDD.getDataSource() instanceof PoolConexiones pool) {
+            Metricas.indicador("sistemaventas_pool_conexiones_prestadas", "Conexiones del pool prestadas",
+                    pool::getConexionesPrestadas);
+            Metricas.indicador("sistemaventas_pool_conexiones_libres", "Conexiones del pool libres",
+                    pool::getConexionesLibres);
+            Metricas.indicador("sistemaventas_pool_conexiones_maximo", "Máximo de conexiones del pool",
+                    pool::getMaximo);
+        }
+        Metricas.contador("sistemaventas_cache_productos_aciertos_total", "Lecturas respondidas por CacheProductos",
+                cacheProductos::getAciertos);
+        Metricas.contador("sistemaventas_cache_productos_fallos_total", "Lecturas que CacheProductos no tenía",
+                cacheProductos::getFallos);
+        Metricas.contador("sistemaventas_cache_productos_desalojos_total", "Productos desalojados de CacheProductos",
+                cacheProductos::getDesalojos);
+        Metricas.indicador("sistemaventas_cache_productos_tamanio", "Elementos en CacheProductos",
+                cacheProductos::getTamanio);
+        Metricas.contador("sistemaventas_cache_paginas_aciertos_total", "Páginas enviadas desde CachePaginaFilter",
+                CachePaginaFilter::getAciertos);
+        Metricas.contador("sistemaventas_cache_paginas_generadas_total", "Páginas generadas por CachePaginaFilter",
+                CachePaginaFilter::getGeneradas);
+        Metricas.indicador("sistemaventas_indice_productos_tamanio", "Productos en el índice de búsqueda",
+                () -> IndiceProductos.getInstancia().tamanio());
+        Metricas.indicador("sistemaventas_indice_codigos_tamanio", "Códigos de barras en IndiceCodigos",
+                () -> IndiceCodigos.getInstancia().tamanio());
+        if (context.getAttribute("ejecutorFacturas") instanceof ThreadPoolExecutor ejecutor) {
+            Metricas.indicador("sistemaventas_facturas_en_cola", "Facturas PDF esperando un hilo",
+                    () -> ejecutor.getQueue().size());
+            Metricas.indicador("sistemaventas_facturas_en_proceso", "Facturas PDF generándose",
+                    ejecutor::getActiveCount);
+        }
+    }
+
+    /*
+     * Fábrica de hilos con nombre (por ejemplo "facturas-1"), útil en los volcados de hilos.
+     */
+    private static ThreadFactory hilosConNombre(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, prefijo + "-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
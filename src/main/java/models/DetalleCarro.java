@@ -2,16 +2,24 @@ package models;
 /*
  * Autor: Byron Melo
  * Fecha: 12/11/2025
- * Versión: 1.0
+ * Versión: 1.2
  * Descripción: Clase que representa el detalle completo del carrito de compras.
  * Esta clase gestiona la colección de todos los ítems (productos) que el usuario
  * ha agregado a su carrito, proporcionando funcionalidades para agregar productos,
  * calcular totales y mantener la lista actualizada de compras.
+ * Versión 1.1: los ítems se guardan en un mapa indexado por ID de producto y el subtotal
+ * se mantiene acumulado, así agregar, actualizar, eliminar y calcular los totales no
+ * recorren el carrito completo (importante en carritos de miles de líneas).
+ * Versión 1.2: cada cambio del carrito (agregar, actualizar, eliminar) emite un evento de JFR
+ * (util.EventosJfr.Carro) cuando hay una grabación activa; copiar() no emite eventos.
  * */
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import util.EventosJfr;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * La clase DetalleCarro actúa como el contenedor principal que administra todos
@@ -21,27 +29,34 @@ import java.util.Optional;
 public class DetalleCarro {
 
     /**
-     * Se declara una lista privada que almacenará todos los objetos ItemCarro.
-     * Esta colección representa el contenido completo del carrito de compras.
-     * Se utiliza la interfaz List para mayor flexibilidad y la implementación
-     * será ArrayList.
+     * Se declara un mapa privado que almacenará todos los objetos ItemCarro, usando como
+     * clave el ID del producto. Buscar un producto en el carrito es inmediato (no se
+     * recorre la colección) y LinkedHashMap conserva el orden en que se agregaron los
+     * productos, que es el orden en que se muestran en el JSP y en la factura.
+     */
+    private final Map<Long, ItemCarro> items;
+
+    /**
+     * Subtotal acumulado del carrito expresado en centavos. Se actualiza cada vez que se
+     * agrega, modifica o elimina un ítem, por eso getSubtotal(), getSubtotalIva() y getTotal()
+     * no necesitan recorrer los ítems. Al trabajar con centavos (enteros) las sumas y
+     * restas sucesivas no acumulan errores de redondeo de double.
      */
-    private List<ItemCarro> items;
+    private long subtotalCentavos;
 
     /**
      * Constructor por defecto de la clase DetalleCarro.
-     * Se inicializa la lista de ítems como un ArrayList vacío, preparando
-     * el carrito para recibir productos. Al usar ArrayList se garantiza un
-     * acceso rápido por índice y una inserción eficiente al final de la lista.
+     * Se inicializa el mapa de ítems vacío, preparando el carrito para recibir productos.
      */
     public DetalleCarro() {
-        this.items = new ArrayList<>();
+        this.items = new LinkedHashMap<>();
     }
 
     /**
      * Metodo fundamental que permite agregar un producto al carrito de compras.
      * Este metodo que verifica si el producto ya existe en el carrito, si ya existe
-     * incrementa su cantidad en 1 unidad y si no existe lo agrega como un nuevo ítem a la lista
+     * incrementa su cantidad con la cantidad del ítem recibido y si no existe lo agrega
+     * como un nuevo ítem.
      *
      * Esta aproximación evita tener productos duplicados en el carrito y en su lugar
      * acumula las cantidades.
@@ -49,84 +64,120 @@ public class DetalleCarro {
      * @param itemCarro El ítem (producto con cantidad) que se desea agregar al carrito
      */
     public void addItemCarro(ItemCarro itemCarro) {
-        /**
-         * Se verifica si el ítem ya existe en la lista utilizando el metodo contains().
-         * Este metodo internamente usa el equals() que se sobrescribió en ItemCarro,
-         * comparando por ID de producto y cantidad.
-         */
-        if(items.contains(itemCarro)) {
-            /**
-             * Si el producto ya existe en el carrito, se procede a buscar ese ítem
-             * específico usando Streams. Este bloque implementa la lógica
-             * para incrementar la cantidad del producto existente.
-             */
-
-            /**
-             * Se utiliza la API de Streams para buscar el ítem existente:
-             * 1. items.stream() convierte la lista en un flujo de datos procesable
-             * 2. filter() se encarga filtra el stream para encontrar el ítem que coincida
-             * 3. i -> i.equals(itemCarro) es una expresión lambda que compara cada ítem con el nuevo
-             * 4. findAny() retorna cualquier elemento que cumpla el filtro envuelto en Optional
-             *
-             * Se retorna un Optional<ItemCarro> que puede o no contener el ítem encontrado.
-             */
-            Optional<ItemCarro> optionalItemCarro = items.stream()
-                    .filter(i -> i.equals(itemCarro))
-                    .findAny();
-
-            /**
-             * Se verifica si el Optional contiene un valor (es decir, si se encontró el ítem).
-             * isPresent() retorna true si existe un valor, false si está vacío.
-             * Esta verificación adicional asegura que el ítem realmente exista antes de
-             * intentar acceder a él, evitando posibles excepciones.
-             */
-            if(optionalItemCarro.isPresent()) {
-                /**
-                 * Se extrae el objeto ItemCarro del Optional usando get().
-                 * En este punto se tiene la garantía de que el valor existe gracias
-                 * a la validación previa con isPresent().
-                 */
-                ItemCarro i = optionalItemCarro.get();
-
-                /**
-                 * Se incrementa la cantidad del ítem existente en 1 unidad.
-                 * Se obtiene la cantidad actual con getCantidad(), se le suma 1,
-                 * y se establece el nuevo valor con setCantidad().
-                 * Esta es la operación clave que acumula productos en lugar de duplicarlos.
-                 */
-                i.setCantidad(i.getCantidad() + 1);
-            }
-        }else{
-            /**
-             * Si el producto NO existe en el carrito (el contains() retornó false),
-             * simplemente se agrega el nuevo ítem a la lista.
-             * Este es el caso cuando el usuario agrega un producto por primera vez.
-             */
-            this.items.add(itemCarro);
+        EventosJfr.Carro evento = new EventosJfr.Carro();
+        evento.begin();
+        agregar(itemCarro);
+        registrar(evento, "agregar", itemCarro.getProducto().getId(), itemCarro.getCantidad());
+    }
+
+    /*
+     * Agrega el ítem sin emitir el evento (lo usan addItemCarro y copiar).
+     */
+    private void agregar(ItemCarro itemCarro) {
+        // Se busca directamente por el ID del producto, sin recorrer el carrito
+        ItemCarro existente = items.get(itemCarro.getProducto().getId());
+        if (existente != null) {
+            cambiarCantidad(existente, existente.getCantidad() + itemCarro.getCantidad());
+        } else {
+            items.put(itemCarro.getProducto().getId(), itemCarro);
+            subtotalCentavos += centavos(itemCarro);
+        }
+    }
+
+    /**
+     * Cambia la cantidad de un producto del carrito.
+     * Si la nueva cantidad es 0 o negativa, el producto se elimina del carrito.
+     *
+     * @param productoId ID del producto a modificar.
+     * @param cantidad Nueva cantidad del producto.
+     * @return true si el producto estaba en el carrito.
+     */
+    public boolean actualizarCantidad(Long productoId, int cantidad) {
+        ItemCarro item = items.get(productoId);
+        if (item == null) {
+            return false;
+        }
+        EventosJfr.Carro evento = new EventosJfr.Carro();
+        evento.begin();
+        if (cantidad <= 0) {
+            quitar(productoId);
+        } else {
+            cambiarCantidad(item, cantidad);
         }
+        registrar(evento, cantidad <= 0 ? "eliminar" : "actualizar", productoId, cantidad);
+        return true;
     }
 
     /**
-     * Metodo getter que permite obtener la lista completa de ítems del carrito.
+     * Cambia la cantidad de varios productos a la vez (por ejemplo, todas las cantidades
+     * enviadas desde el formulario del carrito). Los productos que no están en el carrito
+     * se ignoran.
+     *
+     * @param cantidades Mapa (ID del producto, nueva cantidad).
+     */
+    public void actualizarCantidades(Map<Long, Integer> cantidades) {
+        cantidades.forEach(this::actualizarCantidad);
+    }
+
+    /**
+     * Elimina un producto del carrito.
+     *
+     * @param productoId ID del producto a eliminar.
+     * @return true si el producto estaba en el carrito.
+     */
+    public boolean eliminar(Long productoId) {
+        EventosJfr.Carro evento = new EventosJfr.Carro();
+        evento.begin();
+        if (!quitar(productoId)) {
+            return false;
+        }
+        registrar(evento, "eliminar", productoId, 0);
+        return true;
+    }
+
+    /*
+     * Quita el ítem y descuenta su subtotal, sin emitir el evento.
+     */
+    private boolean quitar(Long productoId) {
+        ItemCarro item = items.remove(productoId);
+        if (item == null) {
+            return false;
+        }
+        subtotalCentavos -= centavos(item);
+        return true;
+    }
+
+    /**
+     * Retorna una copia independiente del carrito (con copias de sus ítems). Se usa cuando
+     * otro hilo debe leer el carrito, por ejemplo para generar la factura, mientras el usuario
+     * puede seguir modificando el carrito de su sesión.
+     */
+    public DetalleCarro copiar() {
+        DetalleCarro copia = new DetalleCarro();
+        for (ItemCarro item : items.values()) {
+            copia.agregar(new ItemCarro(item.getCantidad(), item.getProducto()));
+        }
+        return copia;
+    }
+
+    /**
+     * Metodo getter que permite obtener los ítems del carrito en el orden en que se agregaron.
      * Este metodo es esencial para que otras clases puedan acceder a los productos
      * del carrito, por ejemplo, para mostrarlos en el JSP o para generar la factura de compra.
+     * La colección es de solo lectura: los cambios se hacen con los métodos del carrito para
+     * que el subtotal acumulado se mantenga correcto.
      */
-    public List<ItemCarro> getItem() {
-        return items;
+    public Collection<ItemCarro> getItem() {
+        return Collections.unmodifiableCollection(items.values());
     }
 
     /**
-     * Metodo que calcula y retorna el total general del carrito de compras.
-     * El proceso se realiza en tres pasos:
-     * 1. items.stream() convierte la lista de ítems en un Stream
-     * 2. mapToDouble(ItemCarro::getSubtotal) transforma cada ItemCarro en su subtotal (double)
-     *    usando una referencia al metodo getSubtotal()
-     * 3. sum() se encarga suma todos los valores double del stream resultante
+     * Metodo que retorna el subtotal del carrito de compras (suma de los subtotales de
+     * cada ítem). El valor se mantiene acumulado, por lo que no se recorre el carrito.
      */
-
     public double getSubtotal() {
         //Este calculo representa la suma de todos los precios unitarios del carrito de compras
-        return items.stream().mapToDouble(ItemCarro::getSubtotal).sum();
+        return subtotalCentavos / 100.0;
     }
 
     public double getSubtotalIva(){
@@ -140,5 +191,35 @@ public class DetalleCarro {
         return getSubtotal() + getSubtotalIva();
     }
 
+    /*
+     * Cambia la cantidad de un ítem y ajusta el subtotal acumulado con la diferencia.
+     */
+    private void cambiarCantidad(ItemCarro item, int cantidad) {
+        subtotalCentavos -= centavos(item);
+        item.setCantidad(cantidad);
+        subtotalCentavos += centavos(item);
+    }
+
+    /*
+     * Termina el evento de JFR del cambio. Si no hay una grabación con el evento activo,
+     * shouldCommit() retorna false y no se llena ningún campo.
+     */
+    private void registrar(EventosJfr.Carro evento, String operacion, Long productoId, int cantidad) {
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.operacion = operacion;
+            evento.productoId = productoId != null ? productoId : 0;
+            evento.cantidad = cantidad;
+            evento.lineas = items.size();
+            evento.subtotal = getSubtotal();
+            evento.commit();
+        }
+    }
 
-}
\ No newline at end of file
+    /*
+     * Subtotal de un ítem redondeado a centavos.
+     */
+    private static long centavos(ItemCarro item) {
+        return Math.round(item.getSubtotal() * 100);
+    }
+}
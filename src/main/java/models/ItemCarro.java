@@ -59,6 +59,8 @@ public class ItemCarro {
     }
 
     //Metodo setter que permite modificar la cantidad de unidades del producto.
+    //Si el ítem ya está en un carrito se debe usar DetalleCarro.actualizarCantidad para que
+    //el subtotal acumulado del carrito se mantenga correcto.
     public void setCantidad(int cantidad) {
         this.cantidad = cantidad;
     }
@@ -111,9 +113,8 @@ public class ItemCarro {
      *  del contrato de Java, si no sobreescribimos este metodo puede ocurri lo siguiente:
      * contains() puede fallar si internamente usa hash (por ejemplo en un HashSet).
      * remove() y indexOf() (basado en hash) puede fallar.
-     * En nuestro código si lo sobreescribimos no pasa nada porque nosotros en la clase DetalleCarro
-     * estamos utilzando contains() que internamente usa el metodo equals() sobreescrito pero contains()
-     * se aplica a una lista y las listas no usan hash sino comparaciones secuenciales con equals()
+     * DetalleCarro guarda los ítems en un mapa indexado por el ID del producto, que es el
+     * mismo valor que usan equals() y hashCode().
      * */
     @Override
     public int hashCode() {
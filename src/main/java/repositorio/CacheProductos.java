@@ -0,0 +1,277 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.2
+ * Descripción:
+ *  Almacén en memoria compartido por todas las peticiones que guarda el listado
+ *  completo de productos y los productos consultados por ID. Es utilizado por el
+ *  decorador ProductoRepositoryCacheImplement.
+ *
+ *  - El listado, las páginas y cada producto expiran después de un tiempo de vida (TTL).
+ *  - Los productos por ID y las páginas del listado se guardan en mapas LRU de tamaño
+ *    máximo: cuando se llenan se desaloja el elemento usado hace más tiempo.
+ *  - Se cuentan los aciertos (hits), fallos (misses) y desalojos (evictions).
+ *  Versión 1.1: invalidarAlTerminar() invalida de inmediato y otra vez cuando termina la
+ *  unidad de trabajo (después del commit). Con una sola invalidación antes del commit, una
+ *  lectura concurrente en otra conexión podía empezar con la generación nueva, leer los datos
+ *  anteriores (el cambio todavía no está confirmado) y guardarlos durante todo el TTL.
+ *  Versión 1.2: lo leído de la réplica no se guarda durante retrasoReplicaMs después de la
+ *  última invalidación (generacionLectura). La réplica puede no tener todavía el cambio, y la
+ *  caché es de todos los usuarios: la lectura pegajosa de ConexionFilter solo protege la
+ *  sesión de quien escribió.
+ */
+
+import models.Producto;
+import util.UnidadTrabajo;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CacheProductos {
+
+    /**
+     * Valor guardado en caché junto con el instante (System.nanoTime) en el que expira.
+     */
+    private record Entrada<V>(V valor, long expira) {
+        boolean vigente(long ahora) {
+            return ahora - expira < 0;
+        }
+    }
+
+    /**
+     * Clave de una página del listado paginado por clave (keyset).
+     */
+    private record Pagina(long despuesDe, int limite) {
+    }
+
+    // Generación que nunca coincide con la actual: lo leído con ella no se guarda
+    private static final long SIN_GUARDAR = -1;
+
+    private final long ttlNanos;
+    private final int maximo;
+    // Tiempo después de una invalidación en el que no se guarda lo leído de la réplica
+    private final long retrasoReplicaNanos;
+    // Momento (System.nanoTime) de la última invalidación
+    private volatile long ultimaInvalidacion = System.nanoTime();
+
+    // Listado completo de productos (null cuando no está en caché)
+    private volatile Entrada<List<Producto>> listado;
+
+    /**
+     * Mapa LRU: LinkedHashMap con accessOrder=true mueve al final el elemento consultado,
+     * así el primero siempre es el menos usado y es el que se desaloja al superar el máximo.
+     * LinkedHashMap no es seguro entre hilos, por eso todos los accesos se sincronizan.
+     */
+    private final Map<Long, Entrada<Producto>> porId;
+
+    // Páginas del listado (LRU), se sincronizan con el mismo candado que porId
+    private final Map<Pagina, Entrada<List<Producto>>> paginas;
+
+    /**
+     * Generación de la caché. Cada invalidación la incrementa, y una consulta que empezó
+     * antes de la invalidación no puede guardar su resultado (evita guardar datos viejos).
+     */
+    private final AtomicLong generacion = new AtomicLong();
+
+    // Contadores de estadísticas
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+
+    public CacheProductos(long ttlMs, int maximo) {
+        this(ttlMs, maximo, 5000);
+    }
+
+    /**
+     * @param ttlMs  Tiempo de vida de los datos en caché en milisegundos.
+     * @param maximo Número máximo de productos guardados por ID.
+     * @param retrasoReplicaMs Retraso máximo esperado de la réplica (como replicaPegajosoMs de
+     *                         ConexionFilter): durante ese tiempo después de un cambio no se
+     *                         guarda lo leído de la réplica.
+     */
+    public CacheProductos(long ttlMs, int maximo, long retrasoReplicaMs) {
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.maximo = maximo;
+        this.retrasoReplicaNanos = retrasoReplicaMs * 1_000_000L;
+        this.porId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entrada<Producto>> eldest) {
+                if (size() > CacheProductos.this.maximo) {
+                    desalojos.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.paginas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Pagina, Entrada<List<Producto>>> eldest) {
+                if (size() > CacheProductos.this.maximo) {
+                    desalojos.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retorna la generación actual; se debe leer antes de consultar la base de datos.
+     */
+    public long generacion() {
+        return generacion.get();
+    }
+
+    /**
+     * Generación con la que se debe guardar una lectura, leída antes de consultar la base de
+     * datos. Si la lectura es de la réplica y hubo un cambio hace menos de retrasoReplicaMs,
+     * retorna una generación que nunca coincide: la réplica puede no tener el cambio todavía.
+     * @param replica true si la consulta se hace en la réplica.
+     */
+    public long generacionLectura(boolean replica) {
+        long actual = generacion.get();
+        if (replica && System.nanoTime() - ultimaInvalidacion < retrasoReplicaNanos) {
+            return SIN_GUARDAR;
+        }
+        return actual;
+    }
+
+    /**
+     * Retorna el listado en caché o null si no existe o ya expiró.
+     */
+    public List<Producto> getListado() {
+        Entrada<List<Producto>> e = listado;
+        if (e != null && e.vigente(System.nanoTime())) {
+            aciertos.increment();
+            return e.valor();
+        }
+        fallos.increment();
+        return null;
+    }
+
+    /**
+     * Guarda el listado si no hubo invalidaciones desde la generación indicada.
+     */
+    public void putListado(List<Producto> productos, long generacionLeida) {
+        Entrada<List<Producto>> e = new Entrada<>(List.copyOf(productos), System.nanoTime() + ttlNanos);
+        synchronized (porId) {
+            if (generacion.get() == generacionLeida) {
+                listado = e;
+            }
+        }
+    }
+
+    /**
+     * Retorna una página del listado en caché o null si no existe o ya expiró.
+     */
+    public List<Producto> getPagina(Long despuesDe, int limite) {
+        Pagina clave = new Pagina(despuesDe != null ? despuesDe : 0L, limite);
+        long ahora = System.nanoTime();
+        synchronized (porId) {
+            Entrada<List<Producto>> e = paginas.get(clave);
+            if (e != null) {
+                if (e.vigente(ahora)) {
+                    aciertos.increment();
+                    return e.valor();
+                }
+                paginas.remove(clave);
+            }
+        }
+        fallos.increment();
+        return null;
+    }
+
+    /**
+     * Guarda una página del listado si no hubo invalidaciones desde la generación indicada.
+     */
+    public void putPagina(Long despuesDe, int limite, List<Producto> productos, long generacionLeida) {
+        Pagina clave = new Pagina(despuesDe != null ? despuesDe : 0L, limite);
+        Entrada<List<Producto>> e = new Entrada<>(List.copyOf(productos), System.nanoTime() + ttlNanos);
+        synchronized (porId) {
+            if (generacion.get() == generacionLeida) {
+                paginas.put(clave, e);
+            }
+        }
+    }
+
+    /**
+     * Retorna el producto en caché o null si no existe o ya expiró.
+     */
+    public Producto getPorId(Long id) {
+        long ahora = System.nanoTime();
+        synchronized (porId) {
+            Entrada<Producto> e = porId.get(id);
+            if (e != null) {
+                if (e.vigente(ahora)) {
+                    aciertos.increment();
+                    return e.valor();
+                }
+                porId.remove(id);
+            }
+        }
+        fallos.increment();
+        return null;
+    }
+
+    /**
+     * Guarda un producto si no hubo invalidaciones desde la generación indicada.
+     */
+    public void putPorId(Producto producto, long generacionLeida) {
+        Entrada<Producto> e = new Entrada<>(producto, System.nanoTime() + ttlNanos);
+        synchronized (porId) {
+            if (generacion.get() == generacionLeida) {
+                porId.put(producto.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Invalida toda la caché. Se invoca después de cualquier modificación del catálogo
+     * (guardar, eliminar, activar o desactivar).
+     */
+    public void invalidar() {
+        synchronized (porId) {
+            // Antes que la generación: quien lea la generación nueva también ve este instante
+            ultimaInvalidacion = System.nanoTime();
+            generacion.incrementAndGet();
+            listado = null;
+            porId.clear();
+            paginas.clear();
+        }
+    }
+
+    /**
+     * Invalida la caché ahora (las lecturas de la misma transacción no ven datos anteriores) y
+     * de nuevo cuando termine la unidad de trabajo actual: la segunda invalidación descarta lo
+     * que otras peticiones hayan leído y guardado mientras el cambio no estaba confirmado.
+     * Si no hay una unidad de trabajo, el cambio ya está confirmado y basta con invalidar.
+     */
+    public void invalidarAlTerminar() {
+        invalidar();
+        UnidadTrabajo.alTerminar(this::invalidar);
+    }
+
+    // Estadísticas de la caché
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getDesalojos() {
+        return desalojos.sum();
+    }
+
+    public int getTamanio() {
+        synchronized (porId) {
+            return porId.size() + paginas.size();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.1
+ * Descripción:
+ *  Copia en memoria (snapshot) de todas las categorías, compartida por toda la aplicación.
+ *  Las categorías casi nunca cambian, por eso en lugar de ejecutar "select * from categoria"
+ *  en cada formulario se cargan una vez al iniciar la aplicación (AplicacionListener)
+ *  y se vuelven a cargar solo cuando CategoriaRepositoryJdbcImplement las modifica.
+ *
+ *  La instantánea es inmutable y se reemplaza completa con una AtomicReference, así los
+ *  lectores nunca usan candados: siempre ven la instantánea anterior o la nueva, nunca
+ *  una a medio construir.
+ *  Versión 1.1: marcarPendiente() indica que la instantánea quedó desactualizada (falló la
+ *  recarga después de un cambio); se sigue usando hasta que el servicio la vuelva a cargar.
+ */
+
+import models.Categoria;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public final class CatalogoCategorias {
+
+    /**
+     * Instantánea inmutable: la lista en el orden de la base de datos y un mapa indexado por ID.
+     */
+    private record Instantanea(List<Categoria> lista, Map<Long, Categoria> porId, boolean cargada) {
+    }
+
+    private static final CatalogoCategorias INSTANCIA = new CatalogoCategorias();
+
+    private final AtomicReference<Instantanea> actual =
+            new AtomicReference<>(new Instantanea(List.of(), Map.of(), false));
+
+    private CatalogoCategorias() {
+    }
+
+    // Retorna el catálogo único de la aplicación
+    public static CatalogoCategorias getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Vuelve a leer todas las categorías con el repositorio indicado y reemplaza
+     * la instantánea de forma atómica.
+     * @param repository Repositorio de categorías a utilizar para la lectura.
+     * @throws SQLException Si ocurre un error al consultar la base de datos.
+     */
+    public void recargar(Repository<Categoria> repository) throws SQLException {
+        List<Categoria> categorias = List.copyOf(repository.listar());
+        Map<Long, Categoria> porId = categorias.stream()
+                .collect(Collectors.toUnmodifiableMap(Categoria::getId, Function.identity()));
+        actual.set(new Instantanea(categorias, porId, true));
+    }
+
+    // Indica si ya se cargaron las categorías al menos una vez
+    public boolean isCargado() {
+        return actual.get().cargada();
+    }
+
+    // Mantiene la instantánea actual pero indica que se debe volver a cargar
+    public void marcarPendiente() {
+        actual.updateAndGet(i -> new Instantanea(i.lista(), i.porId(), false));
+    }
+
+    // Retorna la lista inmutable de categorías
+    public List<Categoria> listar() {
+        return actual.get().lista();
+    }
+
+    // Busca una categoría por su ID en el mapa, sin consultar la base de datos
+    public Categoria porId(Long id) {
+        return id != null ? actual.get().porId().get(id) : null;
+    }
+}
@@ -3,31 +3,75 @@ package repositorio;
 /**
  * Autor: Byron Melo
  * Fecha: 12/11/2025
- * Versión: 1.0
+ * Versión: 1.4
  * Descripción:
  * Implementación de la interfaz Repository para la entidad Categoria,
  * utilizando Java Database Connectivity (JDBC) para interactuar con la base de datos.
  * Esta clase maneja las operaciones CRUD (Crear, Leer, Actualizar, Eliminar)
  * y las operaciones de activación/desactivación de categorías.
+ * Después de cada modificación confirmada se recarga la copia en memoria CatalogoCategorias,
+ * para que los formularios vean las categorías actualizadas sin consultar la BD.
+ * El repositorio es un objeto único sin estado: la conexión se toma de ConexionContexto.
+ * Las sentencias SQL se definen como constantes con nombre y siempre se ejecutan con
+ * PreparedStatement para aprovechar la caché de sentencias preparadas del driver.
+ * Versión 1.1: cada modificación también registra un cambio en VersionCatalogo, porque el
+ * listado de productos muestra el nombre de la categoría.
+ * Versión 1.2: al actualizar una categoría, cuando se confirma la transacción se actualiza su
+ * nombre en el índice de búsqueda de productos (IndiceProductos).
+ * Versión 1.3: cada modificación invalida CacheProductos (si se indicó en el constructor),
+ * porque los productos guardados en la caché llevan el nombre y el estado de su categoría.
+ * Versión 1.4: CatalogoCategorias se recarga cuando se confirma la transacción
+ * (UnidadTrabajo.alConfirmar), en una unidad de trabajo propia. Antes se recargaba con la
+ * transacción sin confirmar: todas las peticiones veían categorías que no existían para la base
+ * de datos y, si la transacción se deshacía, quedaban en el catálogo.
  */
 
 
 import models.Categoria;
+import util.ConexionContexto;
+import util.UnidadTrabajo;
 import java.sql.*; // Importa las clases necesarias para trabajar con JDBC
 import java.util.List;
 import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
 
-    // Variable para mantener la conexión a la base de datos
-    private Connection conn;
+    // Sentencias SQL con nombre (el mismo texto en cada llamada para reutilizar la sentencia preparada)
+    private static final String SQL_LISTAR = "select * from categoria order by id asc";
+    private static final String SQL_LISTAR_PAGINA = "select * from categoria where id > ? order by id asc limit ?";
+    private static final String SQL_POR_ID = "select * from categoria where id = ?";
+    private static final String SQL_INSERTAR = "INSERT INTO categoria (nombreCategoria, descripción, estado) VALUES (?, ?, 1)";
+    private static final String SQL_ACTUALIZAR = "UPDATE categoria SET nombreCategoria=?, descripción=?, estado=? WHERE id=?";
+    private static final String SQL_ELIMINAR = "DELETE FROM categoria WHERE id=?";
+    private static final String SQL_DESACTIVAR = "UPDATE categoria SET estado = 0 WHERE id=?";
+    private static final String SQL_ACTIVAR = "UPDATE categoria SET estado = 1 WHERE id=?";
+
+    private static final Logger LOG = Logger.getLogger(CategoriaRepositoryJdbcImplement.class.getName());
+
+    // Caché de productos que se invalida al modificar una categoría (null si no hay caché)
+    private final CacheProductos cacheProductos;
+
+    public CategoriaRepositoryJdbcImplement() {
+        this(null);
+    }
+
+    /**
+     * @param cacheProductos Caché de productos que se invalida después de cada modificación.
+     */
+    public CategoriaRepositoryJdbcImplement(CacheProductos cacheProductos) {
+        this.cacheProductos = cacheProductos;
+    }
 
     /**
-     * Constructor que recibe una conexión JDBC.
-     * @param conn La conexión a la base de datos.
+     * Retorna la conexión a la base de datos asociada a la petición actual.
+     * @return La conexión a la base de datos.
+     * @throws SQLException Si la petición no tiene una conexión asociada.
      */
-    public CategoriaRepositoryJdbcImplement(Connection conn){
-        this.conn = conn;
+    private Connection getConnection() throws SQLException {
+        return ConexionContexto.get();
     }
 
     /**
@@ -39,8 +83,8 @@ public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
     public List<Categoria> listar() throws SQLException {
         List<Categoria> categorias = new ArrayList<>();
         // Usa try-with-resources para asegurar que Statement y ResultSet se cierren automáticamente
-        try (Statement stm = conn.createStatement();
-             ResultSet rs = stm.executeQuery("select * from categoria")) { // Ejecuta la consulta SQL
+        try (PreparedStatement stm = getConnection().prepareStatement(SQL_LISTAR);
+             ResultSet rs = stm.executeQuery()) { // Ejecuta la consulta SQL
             while (rs.next()) { // Itera sobre los resultados
                 Categoria categoria = getCategoria(rs); // Mapea la fila actual a un objeto Categoria
                 categorias.add(categoria);
@@ -49,6 +93,41 @@ public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
         return categorias;
     }
 
+    /**
+     * Método para obtener una página de categorías ordenadas por ID (paginación por clave).
+     * @param despuesDe ID de la última categoría de la página anterior (null o 0 para empezar).
+     * @param limite Número máximo de categorías a retornar.
+     * @return Una lista con las categorías de la página.
+     * @throws SQLException Si ocurre un error al acceder a la BD.
+     */
+    @Override
+    public List<Categoria> listar(Long despuesDe, int limite) throws SQLException {
+        List<Categoria> categorias = new ArrayList<>();
+        try (PreparedStatement stm = getConnection().prepareStatement(SQL_LISTAR_PAGINA)) {
+            stm.setLong(1, despuesDe != null ? despuesDe : 0L);
+            stm.setInt(2, limite);
+            try (ResultSet rs = stm.executeQuery()) {
+                while (rs.next()) {
+                    categorias.add(getCategoria(rs));
+                }
+            }
+        }
+        return categorias;
+    }
+
+    /**
+     * Método para recorrer todas las categorías con un cursor del servidor.
+     * El Stream debe cerrarse al terminar para liberar el cursor.
+     * @param fetchSize Número de filas por bloque.
+     * @return Stream perezoso de categorías ordenadas por ID.
+     * @throws SQLException Si ocurre un error al acceder a la BD.
+     */
+    @Override
+    public Stream<Categoria> stream(int fetchSize) throws SQLException {
+        return CursorJdbc.stream(getConnection(), SQL_LISTAR,
+                fetchSize, CategoriaRepositoryJdbcImplement::getCategoria);
+    }
+
     /**
      * Método para buscar una categoría por su ID.
      * @param id El ID de la categoría a buscar.
@@ -59,7 +138,7 @@ public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
     public Categoria porId(Long id) throws SQLException {
         Categoria categoria = null;
         // Usa PreparedStatement para evitar inyección SQL (parametrizando el ID)
-        try (PreparedStatement stm = conn.prepareStatement("select * from categoria where id = ?")) {
+        try (PreparedStatement stm = getConnection().prepareStatement(SQL_POR_ID)) {
             stm.setLong(1, id); // Establece el valor del primer parámetro (?)
             try (ResultSet rs = stm.executeQuery()) { // Ejecuta la consulta
                 if (rs.next()) { // Si encuentra un resultado
@@ -83,15 +162,14 @@ public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
         if(categoria.getId() != null && categoria.getId()>0){
             // Actualizamos una categoría existente
             // La sentencia SQL para UPDATE debe incluir el ID en la cláusula WHERE
-            sql = "UPDATE categoria SET nombreCategoria=?, descripción=?, estado=? WHERE id=?";
+            sql = SQL_ACTUALIZAR;
         } else {
             // Es una nueva categoría (INSERT)
             // Asume que el 'estado' por defecto para una nueva categoría es 1 (Activo)
-            sql = "INSERT INTO categoria (nombreCategoria, descripción, estado)" +
-                    "VALUES (?, ?, 1)";
+            sql = SQL_INSERTAR;
         }
 
-        try(PreparedStatement stm = conn.prepareStatement(sql)){
+        try(PreparedStatement stm = getConnection().prepareStatement(sql)){
             stm.setString(1, categoria.getNombre()); // Asigna el nombre
             stm.setString(2, categoria.getDescripcion()); // Asigna la descripción
 
@@ -104,6 +182,14 @@ public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
             // Ejecuta la sentencia SQL (INSERT o UPDATE)
             stm.executeUpdate();
         }
+        recargarCatalogo();
+
+        // Los productos de la categoría se buscan también por el nombre nuevo
+        if (categoria.getId() != null && categoria.getId() > 0 && categoria.getNombre() != null) {
+            Long id = categoria.getId();
+            String nombre = categoria.getNombre();
+            UnidadTrabajo.alConfirmar(() -> IndiceProductos.getInstancia().renombrarCategoria(id, nombre));
+        }
     }
 
     /**
@@ -113,11 +199,42 @@ public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
      */
     @Override
     public void eliminar(Long id) throws SQLException {
-        String sql;
-        try(PreparedStatement stm = conn.prepareStatement("DELETE FROM categoria WHERE id=?")){
+        try(PreparedStatement stm = getConnection().prepareStatement(SQL_ELIMINAR)){
             stm.setLong(1, id); // Asigna el ID
             stm.executeUpdate(); // Ejecuta la eliminación
         }
+        recargarCatalogo();
+    }
+
+    /**
+     * Metodo auxiliar privado que, cuando se confirme la transacción, vuelve a cargar la copia
+     * en memoria de las categorías; además invalida la caché de productos y registra el cambio
+     * en la versión del catálogo.
+     */
+    private void recargarCatalogo() {
+        if (cacheProductos != null) {
+            cacheProductos.invalidarAlTerminar();
+        }
+        VersionCatalogo.registrarCambio();
+        UnidadTrabajo.alConfirmar(this::recargarConfirmado);
+    }
+
+    /**
+     * Recarga CatalogoCategorias con los datos ya confirmados. Se ejecuta después del commit,
+     * cuando la conexión de la unidad anterior ya se liberó, por eso usa su propia unidad de
+     * trabajo. Si falla, el catálogo se marca como pendiente y se recarga en el siguiente uso
+     * (ProductoServiceJdbcImpl).
+     */
+    private void recargarConfirmado() {
+        try {
+            UnidadTrabajo.ejecutar(() -> {
+                CatalogoCategorias.getInstancia().recargar(this);
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            CatalogoCategorias.getInstancia().marcarPendiente();
+            LOG.log(Level.WARNING, "No se pudo recargar el catálogo de categorías", e);
+        }
     }
 
     /**
@@ -143,11 +260,11 @@ public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
      */
     @Override
     public void desactivar(int id) throws SQLException {
-        String sql = "UPDATE categoria SET estado = 0 WHERE id=?";
-        try(PreparedStatement stm = conn.prepareStatement(sql)){
+        try(PreparedStatement stm = getConnection().prepareStatement(SQL_DESACTIVAR)){
             stm.setInt(1, id); // Asigna el ID
             stm.executeUpdate(); // Ejecuta la actualización
         }
+        recargarCatalogo();
     }
 
     /**
@@ -157,10 +274,10 @@ public class CategoriaRepositoryJdbcImplement implements Repository<Categoria> {
      */
     @Override
     public void activar(int id) throws SQLException {
-        String sql = "UPDATE categoria SET estado = 1 WHERE id=?";
-        try(PreparedStatement stm = conn.prepareStatement(sql)){
+        try(PreparedStatement stm = getConnection().prepareStatement(SQL_ACTIVAR)){
             stm.setInt(1, id); // Asigna el ID
             stm.executeUpdate(); // Ejecuta la actualización
         }
+        recargarCatalogo();
     }
 }
\ No newline at end of file
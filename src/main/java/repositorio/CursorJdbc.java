@@ -0,0 +1,86 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción:
+ *  Clase utilitaria que convierte una consulta JDBC en un Stream de Java que se lee
+ *  fila por fila desde un cursor del servidor. Con la opción useCursorFetch=true de
+ *  MySQL Connector/J y un fetchSize mayor a 0, el driver trae las filas en bloques
+ *  de fetchSize en lugar de cargar todo el resultado en memoria.
+ *
+ *  El Stream mantiene abiertos el PreparedStatement y el ResultSet, por eso debe
+ *  usarse dentro de un try-with-resources para que se cierren al terminar.
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+class CursorJdbc {
+
+    /**
+     * Función que transforma la fila actual del ResultSet en un objeto.
+     */
+    @FunctionalInterface
+    interface Mapeador<T> {
+        T mapear(ResultSet rs) throws SQLException;
+    }
+
+    private CursorJdbc() {
+    }
+
+    /**
+     * Ejecuta la consulta y retorna un Stream perezoso sobre sus filas.
+     *
+     * @param conn      Conexión a utilizar.
+     * @param sql       Consulta SELECT sin parámetros.
+     * @param fetchSize Número de filas que el driver trae en cada viaje al servidor.
+     * @param mapeador  Función que convierte cada fila en un objeto.
+     * @return Stream que debe cerrarse para liberar el cursor.
+     * @throws SQLException si ocurre un error al ejecutar la consulta.
+     */
+    static <T> Stream<T> stream(Connection conn, String sql, int fetchSize, Mapeador<T> mapeador)
+            throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ResultSet rs;
+        try {
+            stmt.setFetchSize(fetchSize);
+            rs = stmt.executeQuery();
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+
+        Spliterator<T> filas = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    accion.accept(mapeador.mapear(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error al leer el cursor: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(filas, false).onClose(() -> {
+            try (stmt; rs) {
+                // try-with-resources cierra el ResultSet y luego el PreparedStatement
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error al cerrar el cursor: " + e.getMessage(), e);
+            }
+        });
+    }
+}
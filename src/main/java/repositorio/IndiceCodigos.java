@@ -0,0 +1,66 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción:
+ *  Índice hash en memoria código de barras -> ID de producto, para que las cajas que escanean
+ *  el código (/agregar-carro?codigo=) encuentren el producto sin consultar la base de datos:
+ *  con el ID se obtiene el producto de CacheProductos (ver ProductoRepositoryCacheImplement).
+ *
+ *  - Es un ConcurrentHashMap: las lecturas no usan candados aunque muchas cajas escaneen a
+ *    la vez y mientras se modifica el catálogo.
+ *  - Se carga con el mismo recorrido con cursor que IndiceProductos al iniciar la aplicación,
+ *    aprende los códigos que se consultan en la base de datos y se actualiza en cada guardar o
+ *    eliminar cuando se confirma la transacción (ProductoRepositoryIndiceImplement).
+ *  - Quien lo usa siempre compara el código del producto encontrado con el buscado: si una
+ *    entrada quedó vieja (por ejemplo el código se cambió en otra instancia de la aplicación)
+ *    se descarta y se busca en la base de datos con el índice único de producto.codigo.
+ */
+
+import models.Producto;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class IndiceCodigos {
+
+    private static final IndiceCodigos INSTANCIA = new IndiceCodigos();
+
+    private final ConcurrentHashMap<String, Long> idPorCodigo = new ConcurrentHashMap<>();
+
+    // Índice vacío e independiente
+    public IndiceCodigos() {
+    }
+
+    // Retorna el índice único de la aplicación
+    public static IndiceCodigos getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Retorna el ID del producto con ese código, o null si el código no está en el índice.
+     */
+    public Long id(String codigo) {
+        return codigo != null ? idPorCodigo.get(codigo) : null;
+    }
+
+    // Agrega o actualiza el código del producto
+    public void registrar(Producto producto) {
+        if (producto != null && producto.getCodigo() != null && producto.getId() != null) {
+            idPorCodigo.put(producto.getCodigo(), producto.getId());
+        }
+    }
+
+    // Quita el código solo si todavía apunta a ese producto
+    public void quitar(String codigo, Long id) {
+        if (codigo != null && id != null) {
+            idPorCodigo.remove(codigo, id);
+        }
+    }
+
+    // Número de códigos en el índice
+    public int tamanio() {
+        return idPorCodigo.size();
+    }
+}
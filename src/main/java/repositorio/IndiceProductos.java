@@ -0,0 +1,700 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción:
+ *  Índice invertido en memoria para buscar productos por texto (/productos/buscar).
+ *  Cada término (palabra) de nombreProducto, descripcion, codigo y del nombre de la categoría
+ *  apunta a la lista de productos que lo contienen, así una búsqueda solo revisa los productos
+ *  que tienen las palabras buscadas y nunca recorre todo el catálogo.
+ *
+ *  - Tokenización: se quitan las tildes y diéresis (descomposición NFD sin marcas, así
+ *    "Descripción" y "descripcion" son el mismo término y "ñ" se busca como "n"), se pasa a
+ *    minúsculas y se separa en letras/dígitos. Las palabras vacías del español ("de", "la",
+ *    "con", ...) no se indexan ni se buscan.
+ *  - Peso: el término vale más según el campo donde aparece (código 8, nombre 4, categoría 2,
+ *    descripción 1); si aparece en varios campos se suman (máximo 15, cabe en 4 bits).
+ *  - Búsqueda: todas las palabras deben aparecer (AND). La última palabra se busca también
+ *    como prefijo (búsqueda mientras se escribe), salvo que la consulta termine en espacio.
+ *    Los resultados se ordenan por puntaje y se retornan solo los "limite" mejores (top-K).
+ *  - Latencia acotada: un prefijo se expande a lo sumo en MAXIMO_EXPANSION términos (y hasta
+ *    PRESUPUESTO_PREFIJO apariciones por cruzar, en orden alfabético) y se
+ *    evalúan a lo sumo MAXIMO_CANDIDATOS productos de la lista guía (la más corta: la palabra
+ *    menos frecuente o los términos del prefijo). La guía se cruza con las demás listas
+ *    avanzando con saltos exponenciales (galloping) sobre los IDs ordenados, y los mejores se
+ *    eligen con un top-K de arreglos primitivos, sin crear objetos por candidato.
+ *
+ *  Cada lista de productos es un arreglo long[] ordenado con (id << 4 | peso) en cada
+ *  posición: 8 bytes por aparición, sin objetos por entrada, para que un catálogo de un
+ *  millón de productos quepa en memoria. Las modificaciones se serializan con synchronized y
+ *  reemplazan el arreglo completo (copia al escribir), así las búsquedas nunca usan candados
+ *  y siempre ven una lista completa, la anterior o la nueva. Solo se copian las listas de los
+ *  términos que cambiaron, y un lote de productos (importación) se fusiona en cada lista una
+ *  sola vez en lugar de copiarla por cada producto.
+ *
+ *  Solo se indexan los productos activos (condicion = 1). Se carga completo una vez al iniciar
+ *  la aplicación (AplicacionListener) y después se actualiza producto por producto desde
+ *  ProductoRepositoryIndiceImplement cuando se confirma cada modificación.
+ */
+
+import models.Categoria;
+import models.Producto;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+public final class IndiceProductos {
+
+    // Peso de un término según el campo donde aparece
+    private static final int PESO_CODIGO = 8;
+    private static final int PESO_NOMBRE = 4;
+    private static final int PESO_CATEGORIA = 2;
+    private static final int PESO_DESCRIPCION = 1;
+    // Bits de cada entrada reservados para el peso (la suma de los pesos es como máximo 15)
+    private static final int BITS_PESO = 4;
+    private static final long MASCARA_PESO = (1L << BITS_PESO) - 1;
+
+    // Largo mínimo de la última palabra para buscarla como prefijo
+    private static final int LARGO_MINIMO_PREFIJO = 2;
+    // Máximo de términos en los que se expande un prefijo
+    private static final int MAXIMO_EXPANSION = 64;
+    // Máximo de apariciones de los términos del prefijo que se cruzan con las demás palabras
+    private static final int PRESUPUESTO_PREFIJO = 20_000;
+    // Máximo de productos que se evalúan en una búsqueda
+    private static final int MAXIMO_CANDIDATOS = 10_000;
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of("a", "al", "con", "de", "del", "el", "en",
+            "la", "las", "lo", "los", "o", "para", "por", "sin", "su", "un", "una", "unas", "unos", "y");
+
+    /**
+     * Datos de un producto indexado: lo que se muestra en los resultados y sus términos
+     * con el peso de cada uno (en el mismo orden).
+     */
+    private record Documento(long id, String nombre, String codigo, Long categoriaId, String categoria,
+                             double precio, String[] terminos, byte[] pesos) {
+    }
+
+    /**
+     * Índice completo: término -> lista ordenada (id << 4 | peso), e ID -> documento.
+     * La carga completa construye uno nuevo y lo reemplaza de una vez.
+     */
+    private record Estado(ConcurrentSkipListMap<String, long[]> terminos,
+                          ConcurrentHashMap<Long, Documento> documentos, boolean cargado) {
+    }
+
+    private static final IndiceProductos INSTANCIA = new IndiceProductos();
+
+    private volatile Estado estado = new Estado(new ConcurrentSkipListMap<>(), new ConcurrentHashMap<>(), false);
+
+    // Índice vacío e independiente (por ejemplo para BenchmarkBusqueda)
+    public IndiceProductos() {
+    }
+
+    // Retorna el índice único de la aplicación
+    public static IndiceProductos getInstancia() {
+        return INSTANCIA;
+    }
+
+    // Indica si el índice ya se cargó completo al menos una vez
+    public boolean isCargado() {
+        return estado.cargado();
+    }
+
+    // Número de productos indexados
+    public int tamanio() {
+        return estado.documentos().size();
+    }
+
+    /**
+     * Construye el índice completo con los productos del Stream (normalmente el recorrido con
+     * cursor de ProductoRepository.stream) y reemplaza el anterior de una sola vez.
+     * Quien llama debe cerrar el Stream.
+     */
+    public synchronized void cargar(Stream<Producto> productos) {
+        Map<String, ListaLarga> listas = new HashMap<>();
+        Map<String, String> canonicos = new HashMap<>();
+        ConcurrentHashMap<Long, Documento> documentos = new ConcurrentHashMap<>();
+        productos.filter(IndiceProductos::indexable).forEach(producto -> {
+            Documento documento = documento(producto);
+            documentos.put(documento.id(), documento);
+            for (int i = 0; i < documento.terminos().length; i++) {
+                // Todos los documentos comparten el mismo objeto String de cada término
+                String termino = canonicos.computeIfAbsent(documento.terminos()[i], t -> t);
+                documento.terminos()[i] = termino;
+                listas.computeIfAbsent(termino, t -> new ListaLarga())
+                        .agregar(entrada(documento.id(), documento.pesos()[i]));
+            }
+        });
+
+        Map<String, long[]> terminos = new HashMap<>(listas.size() * 2);
+        listas.forEach((termino, lista) -> terminos.put(termino, lista.ordenada()));
+        estado = new Estado(new ConcurrentSkipListMap<>(terminos), documentos, true);
+    }
+
+    /**
+     * Agrega o actualiza un producto. Si el producto está inactivo se quita del índice.
+     */
+    public void indexar(Producto producto) {
+        if (producto != null) {
+            indexar(List.of(producto));
+        }
+    }
+
+    /**
+     * Agrega o actualiza varios productos (por ejemplo un lote importado). Los productos
+     * inactivos se quitan del índice.
+     */
+    public synchronized void indexar(Collection<Producto> productos) {
+        List<Documento> documentos = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            if (producto == null || producto.getId() == null) {
+                continue;
+            }
+            if (indexable(producto)) {
+                documentos.add(documento(producto));
+            } else {
+                quitar(producto.getId());
+            }
+        }
+        reemplazar(estado, documentos);
+    }
+
+    // Quita un producto del índice (eliminado o desactivado)
+    public synchronized void quitar(Long id) {
+        Estado actual = estado;
+        Documento anterior = actual.documentos().remove(id);
+        if (anterior != null) {
+            for (String termino : anterior.terminos()) {
+                actual.terminos().computeIfPresent(termino, (t, lista) -> quitar(lista, anterior.id()));
+            }
+        }
+    }
+
+    /**
+     * Actualiza el nombre de la categoría en todos sus productos indexados. Solo cambian los
+     * términos de la categoría; los demás campos no se vuelven a leer.
+     */
+    public synchronized void renombrarCategoria(Long categoriaId, String nombre) {
+        Estado actual = estado;
+        List<Documento> documentos = new ArrayList<>();
+        for (Documento documento : actual.documentos().values()) {
+            if (categoriaId.equals(documento.categoriaId()) && !nombre.equals(documento.categoria())) {
+                documentos.add(conCategoria(documento, nombre));
+            }
+        }
+        reemplazar(actual, documentos);
+    }
+
+    /**
+     * Busca los productos que contienen todas las palabras de la consulta (la última también
+     * como prefijo) y retorna los "limite" de mayor puntaje.
+     * Los productos retornados solo traen ID, nombre, código, categoría y precio.
+     * @param consulta Texto escrito por el usuario.
+     * @param limite Número máximo de resultados.
+     * @return Productos encontrados, del más al menos relevante.
+     */
+    public List<Producto> buscar(String consulta, int limite) {
+        if (consulta == null || limite <= 0) {
+            return List.of();
+        }
+        Estado actual = estado;
+        List<String> palabras = tokenizar(consulta);
+        if (palabras.isEmpty()) {
+            return List.of();
+        }
+
+        // La última palabra es un prefijo mientras el usuario sigue escribiéndola
+        String prefijo = null;
+        String ultima = palabras.get(palabras.size() - 1);
+        if (!Character.isWhitespace(consulta.charAt(consulta.length() - 1))
+                && ultima.length() >= LARGO_MINIMO_PREFIJO) {
+            prefijo = ultima;
+            palabras = palabras.subList(0, palabras.size() - 1);
+        }
+
+        // Palabras completas: si alguna no existe en el índice no hay resultados
+        List<long[]> exactas = new ArrayList<>();
+        for (String palabra : new LinkedHashSet<>(palabras)) {
+            if (PALABRAS_VACIAS.contains(palabra)) {
+                continue;
+            }
+            long[] lista = actual.terminos().get(palabra);
+            if (lista == null) {
+                return List.of();
+            }
+            exactas.add(lista);
+        }
+        exactas.sort(Comparator.comparingInt(lista -> lista.length));
+
+        /*
+         * Prefijo: términos que empiezan con él, en orden alfabético. El término igual al prefijo
+         * (si existe es el primero del rango) vale el doble. Cruzar una lista cuesta a lo sumo
+         * el largo de la guía, por eso el presupuesto cuenta el menor de los dos.
+         */
+        List<long[]> conPrefijo = new ArrayList<>();
+        int[] factores = new int[MAXIMO_EXPANSION];
+        long aparicionesPrefijo = 0;
+        long costoPrefijo = 0;
+        if (prefijo != null) {
+            int largoGuia = exactas.isEmpty() ? Integer.MAX_VALUE : exactas.get(0).length;
+            ConcurrentNavigableMap<String, long[]> rango =
+                    actual.terminos().subMap(prefijo, true, prefijo + Character.MAX_VALUE, false);
+            for (Map.Entry<String, long[]> termino : rango.entrySet()) {
+                if (conPrefijo.size() == MAXIMO_EXPANSION || costoPrefijo >= PRESUPUESTO_PREFIJO) {
+                    break;
+                }
+                factores[conPrefijo.size()] = termino.getKey().equals(prefijo) ? 2 : 1;
+                conPrefijo.add(termino.getValue());
+                aparicionesPrefijo += termino.getValue().length;
+                costoPrefijo += Math.min(termino.getValue().length, largoGuia);
+            }
+            if (conPrefijo.isEmpty()) {
+                return List.of();
+            }
+        }
+        if (exactas.isEmpty() && prefijo == null) {
+            // Solo había palabras vacías
+            return List.of();
+        }
+
+        MejoresK mejores = new MejoresK(limite);
+        if (prefijo != null && (exactas.isEmpty() || aparicionesPrefijo < exactas.get(0).length)) {
+            // Guía: las listas de los términos del prefijo, una por una
+            int restantes = MAXIMO_CANDIDATOS;
+            for (int j = 0; j < conPrefijo.size() && restantes > 0; j++) {
+                long[] guia = conPrefijo.get(j);
+                int n = Math.min(guia.length, restantes);
+                restantes -= n;
+                evaluar(guia, n, factores[j], exactas, 0, List.of(), factores, mejores);
+            }
+        } else {
+            // Guía: la palabra completa menos frecuente
+            long[] guia = exactas.get(0);
+            evaluar(guia, Math.min(guia.length, MAXIMO_CANDIDATOS), 2, exactas, 1, conPrefijo, factores, mejores);
+        }
+        return mejores.productos(actual);
+    }
+
+    /*
+     * Evalúa las primeras n entradas de la lista guía. La guía se cruza con cada lista y se
+     * acumula el puntaje de cada posición: las palabras completas valen el doble de su peso y
+     * el prefijo suma el mejor de sus términos. Se descartan las posiciones que no están en
+     * alguna palabra completa o en ningún término del prefijo.
+     */
+    private static void evaluar(long[] guia, int n, int factorGuia, List<long[]> exactas, int desde,
+                                List<long[]> conPrefijo, int[] factores, MejoresK mejores) {
+        int[] puntajes = new int[n];
+        for (int i = 0; i < n; i++) {
+            puntajes[i] = factorGuia * peso(guia[i]);
+        }
+        int[] pesos = new int[n];
+        for (int e = desde; e < exactas.size(); e++) {
+            Arrays.fill(pesos, 0);
+            cruzar(guia, n, exactas.get(e), 2, pesos);
+            for (int i = 0; i < n; i++) {
+                puntajes[i] = pesos[i] == 0 || puntajes[i] < 0 ? -1 : puntajes[i] + pesos[i];
+            }
+        }
+        if (!conPrefijo.isEmpty()) {
+            // Cada término del prefijo solo toca las posiciones donde aparece
+            int[] mejorPrefijo = pesos;
+            Arrays.fill(mejorPrefijo, 0);
+            for (int j = 0; j < conPrefijo.size(); j++) {
+                cruzar(guia, n, conPrefijo.get(j), factores[j], mejorPrefijo);
+            }
+            for (int i = 0; i < n; i++) {
+                puntajes[i] = mejorPrefijo[i] == 0 || puntajes[i] < 0 ? -1 : puntajes[i] + mejorPrefijo[i];
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (puntajes[i] > 0) {
+                mejores.ofrecer(id(guia[i]), puntajes[i]);
+            }
+        }
+    }
+
+    /*
+     * Cruza las primeras n entradas de la guía con otra lista (ambas ordenadas por ID): si el
+     * producto guia[i] está en la lista, deja en destino[i] el mayor entre su valor actual y
+     * factor * peso. Se recorre la más corta y se avanza en la otra con saltos exponenciales,
+     * así el costo depende de la lista corta.
+     */
+    private static void cruzar(long[] guia, int n, long[] lista, int factor, int[] destino) {
+        if (n <= lista.length) {
+            int j = 0;
+            for (int i = 0; i < n && j < lista.length; i++) {
+                j = avanzar(lista, j, lista.length, id(guia[i]));
+                if (j < lista.length && id(lista[j]) == id(guia[i])) {
+                    destino[i] = Math.max(destino[i], factor * peso(lista[j]));
+                }
+            }
+        } else {
+            int i = 0;
+            for (int j = 0; j < lista.length && i < n; j++) {
+                i = avanzar(guia, i, n, id(lista[j]));
+                if (i < n && id(guia[i]) == id(lista[j])) {
+                    destino[i] = Math.max(destino[i], factor * peso(lista[j]));
+                }
+            }
+        }
+    }
+
+    /*
+     * Primera posición entre "desde" y "hasta" con ID mayor o igual al buscado (o "hasta" si no
+     * hay): salta 1, 2, 4, ... posiciones y luego hace búsqueda binaria en el último salto.
+     */
+    private static int avanzar(long[] lista, int desde, int hasta, long id) {
+        if (desde >= hasta || id(lista[desde]) >= id) {
+            return desde;
+        }
+        int bajo = desde;
+        int paso = 1;
+        while (bajo + paso < hasta && id(lista[bajo + paso]) < id) {
+            bajo += paso;
+            paso <<= 1;
+        }
+        int alto = Math.min(bajo + paso, hasta);
+        bajo++;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (id(lista[medio]) < id) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Separa el texto en términos: sin tildes, en minúsculas y separado en letras y dígitos.
+     * Incluye las palabras vacías; quien la usa decide si las descarta.
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null || texto.isEmpty()) {
+            return terminos;
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder termino = new StringBuilder();
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                termino.append(Character.toLowerCase(c));
+            } else if (!termino.isEmpty()) {
+                terminos.add(termino.toString());
+                termino.setLength(0);
+            }
+        }
+        if (!termino.isEmpty()) {
+            terminos.add(termino.toString());
+        }
+        return terminos;
+    }
+
+    private static boolean indexable(Producto producto) {
+        return producto.getId() != null && producto.getCondicion() == 1;
+    }
+
+    /*
+     * Calcula los términos del producto con su peso. Si el producto no trae el nombre de la
+     * categoría (por ejemplo uno recién importado) se toma de CatalogoCategorias.
+     */
+    private static Documento documento(Producto producto) {
+        Long categoriaId = producto.getCategoria() != null ? producto.getCategoria().getId() : null;
+        String categoria = producto.getCategoria() != null ? producto.getCategoria().getNombre() : null;
+        if (categoria == null) {
+            Categoria enCatalogo = CatalogoCategorias.getInstancia().porId(categoriaId);
+            categoria = enCatalogo != null ? enCatalogo.getNombre() : null;
+        }
+
+        Map<String, Integer> pesos = new LinkedHashMap<>();
+        sumarPeso(pesos, producto.getCodigo(), PESO_CODIGO);
+        sumarPeso(pesos, producto.getNombre(), PESO_NOMBRE);
+        sumarPeso(pesos, categoria, PESO_CATEGORIA);
+        sumarPeso(pesos, producto.getDescripcion(), PESO_DESCRIPCION);
+        return documento(producto.getId(), producto.getNombre(), producto.getCodigo(), categoriaId, categoria,
+                producto.getPrecio(), pesos);
+    }
+
+    // Mismo documento con otra categoría: se resta el peso de la anterior y se suma el de la nueva
+    private static Documento conCategoria(Documento documento, String categoria) {
+        Map<String, Integer> pesos = new LinkedHashMap<>();
+        for (int i = 0; i < documento.terminos().length; i++) {
+            pesos.put(documento.terminos()[i], (int) documento.pesos()[i]);
+        }
+        sumarPeso(pesos, documento.categoria(), -PESO_CATEGORIA);
+        sumarPeso(pesos, categoria, PESO_CATEGORIA);
+        return documento(documento.id(), documento.nombre(), documento.codigo(), documento.categoriaId(), categoria,
+                documento.precio(), pesos);
+    }
+
+    private static Documento documento(long id, String nombre, String codigo, Long categoriaId, String categoria,
+                                       double precio, Map<String, Integer> pesos) {
+        pesos.values().removeIf(peso -> peso <= 0);
+        String[] terminos = new String[pesos.size()];
+        byte[] valores = new byte[pesos.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> peso : pesos.entrySet()) {
+            terminos[i] = peso.getKey();
+            valores[i++] = (byte) peso.getValue().intValue();
+        }
+        return new Documento(id, nombre, codigo, categoriaId, categoria, precio, terminos, valores);
+    }
+
+    // Suma el peso del campo a cada término distinto del texto (una vez por campo)
+    private static void sumarPeso(Map<String, Integer> pesos, String texto, int peso) {
+        for (String termino : new LinkedHashSet<>(tokenizar(texto))) {
+            if (!PALABRAS_VACIAS.contains(termino)) {
+                pesos.merge(termino, peso, Integer::sum);
+            }
+        }
+    }
+
+    // Producto de los resultados con los datos guardados en el índice
+    private static Producto producto(Documento documento) {
+        Producto producto = new Producto();
+        producto.setId(documento.id());
+        producto.setNombre(documento.nombre());
+        producto.setCodigo(documento.codigo());
+        producto.setPrecio(documento.precio());
+        producto.setCondicion(1);
+        producto.setCategoria(new Categoria(documento.categoriaId(), documento.categoria(), null, 1));
+        return producto;
+    }
+
+    /*
+     * Reemplaza los documentos: quita los términos anteriores que ya no tienen y fusiona las
+     * entradas nuevas (o con otro peso) de todos los documentos en cada lista una sola vez.
+     * Los términos que no cambian no se copian ni se quitan ni un instante, así una búsqueda
+     * concurrente siempre los encuentra.
+     */
+    private static void reemplazar(Estado actual, List<Documento> documentos) {
+        Map<String, ListaLarga> nuevas = new HashMap<>();
+        for (Documento documento : documentos) {
+            // Se reutiliza el String del término si ya está en el índice
+            for (int i = 0; i < documento.terminos().length; i++) {
+                String existente = actual.terminos().ceilingKey(documento.terminos()[i]);
+                if (documento.terminos()[i].equals(existente)) {
+                    documento.terminos()[i] = existente;
+                }
+            }
+            Documento anterior = actual.documentos().put(documento.id(), documento);
+            Map<String, Byte> pesosAnteriores = new HashMap<>();
+            if (anterior != null) {
+                for (int i = 0; i < anterior.terminos().length; i++) {
+                    pesosAnteriores.put(anterior.terminos()[i], anterior.pesos()[i]);
+                }
+            }
+            for (int i = 0; i < documento.terminos().length; i++) {
+                Byte pesoAnterior = pesosAnteriores.remove(documento.terminos()[i]);
+                if (pesoAnterior == null || pesoAnterior != documento.pesos()[i]) {
+                    nuevas.computeIfAbsent(documento.terminos()[i], t -> new ListaLarga())
+                            .agregar(entrada(documento.id(), documento.pesos()[i]));
+                }
+            }
+            // Los que quedan son términos que el producto ya no tiene
+            for (String termino : pesosAnteriores.keySet()) {
+                actual.terminos().computeIfPresent(termino, (t, lista) -> quitar(lista, documento.id()));
+            }
+        }
+        nuevas.forEach((termino, entradas) -> {
+            long[] ordenadas = entradas.ordenada();
+            actual.terminos().compute(termino, (t, lista) -> fusionar(lista, ordenadas));
+        });
+    }
+
+    /*
+     * Fusiona dos listas ordenadas por ID en una nueva; si un producto está en ambas se
+     * conserva la entrada nueva.
+     */
+    private static long[] fusionar(long[] lista, long[] nuevas) {
+        if (lista == null) {
+            return nuevas;
+        }
+        long[] resultado = new long[lista.length + nuevas.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < lista.length || j < nuevas.length) {
+            if (j == nuevas.length || (i < lista.length && id(lista[i]) < id(nuevas[j]))) {
+                resultado[k++] = lista[i++];
+            } else {
+                if (i < lista.length && id(lista[i]) == id(nuevas[j])) {
+                    i++;
+                }
+                resultado[k++] = nuevas[j++];
+            }
+        }
+        return k == resultado.length ? resultado : Arrays.copyOf(resultado, k);
+    }
+
+    // Copia de la lista sin el producto; null (se borra el término) si queda vacía
+    private static long[] quitar(long[] lista, long id) {
+        int posicion = posicion(lista, id);
+        if (posicion < 0) {
+            return lista;
+        }
+        if (lista.length == 1) {
+            return null;
+        }
+        long[] copia = new long[lista.length - 1];
+        System.arraycopy(lista, 0, copia, 0, posicion);
+        System.arraycopy(lista, posicion + 1, copia, posicion, lista.length - posicion - 1);
+        return copia;
+    }
+
+    /*
+     * Búsqueda binaria del producto en una lista ordenada. Retorna su posición o, si no está,
+     * (-(posición de inserción) - 1), como Arrays.binarySearch.
+     */
+    private static int posicion(long[] lista, long id) {
+        int bajo = 0;
+        int alto = lista.length - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            long actual = lista[medio] >>> BITS_PESO;
+            if (actual < id) {
+                bajo = medio + 1;
+            } else if (actual > id) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    private static long entrada(long id, int peso) {
+        return id << BITS_PESO | peso;
+    }
+
+    private static long id(long entrada) {
+        return entrada >>> BITS_PESO;
+    }
+
+    private static int peso(long entrada) {
+        return (int) (entrada & MASCARA_PESO);
+    }
+
+    /*
+     * Arreglo de long que crece al agregar, para la carga completa.
+     */
+    private static final class ListaLarga {
+        private long[] valores = new long[4];
+        private int tamanio;
+
+        void agregar(long valor) {
+            if (tamanio == valores.length) {
+                valores = Arrays.copyOf(valores, tamanio * 2);
+            }
+            valores[tamanio++] = valor;
+        }
+
+        // Arreglo ordenado por ID (el peso está en los bits bajos), una entrada por producto
+        long[] ordenada() {
+            long[] lista = Arrays.copyOf(valores, tamanio);
+            Arrays.sort(lista);
+            int unicos = 0;
+            for (long entrada : lista) {
+                if (unicos > 0 && id(lista[unicos - 1]) == id(entrada)) {
+                    lista[unicos - 1] = entrada;
+                } else {
+                    lista[unicos++] = entrada;
+                }
+            }
+            return unicos == lista.length ? lista : Arrays.copyOf(lista, unicos);
+        }
+    }
+
+    /*
+     * Los "limite" mejores candidatos en arreglos primitivos. Un candidato solo se compara con
+     * el peor guardado; la búsqueda lineal (limite es pequeño) ocurre solo cuando entra.
+     * Un producto puede llegar varias veces (un término distinto del prefijo en cada lista
+     * guía): se conserva una vez, con su mejor puntaje.
+     */
+    private static final class MejoresK {
+        private final long[] ids;
+        private final int[] puntajes;
+        private int tamanio;
+        // Posición del peor candidato cuando el arreglo está lleno
+        private int peor;
+
+        MejoresK(int limite) {
+            ids = new long[limite];
+            puntajes = new int[limite];
+        }
+
+        void ofrecer(long id, int puntaje) {
+            if (tamanio == ids.length && !esMejor(puntaje, id, puntajes[peor], ids[peor])) {
+                return;
+            }
+            for (int i = 0; i < tamanio; i++) {
+                if (ids[i] == id) {
+                    if (puntaje > puntajes[i]) {
+                        puntajes[i] = puntaje;
+                        buscarPeor();
+                    }
+                    return;
+                }
+            }
+            int posicion = tamanio < ids.length ? tamanio++ : peor;
+            ids[posicion] = id;
+            puntajes[posicion] = puntaje;
+            buscarPeor();
+        }
+
+        private void buscarPeor() {
+            if (tamanio < ids.length) {
+                return;
+            }
+            peor = 0;
+            for (int i = 1; i < tamanio; i++) {
+                if (esMejor(puntajes[peor], ids[peor], puntajes[i], ids[i])) {
+                    peor = i;
+                }
+            }
+        }
+
+        // Mayor puntaje primero y, si empatan, el ID menor
+        private static boolean esMejor(int puntaje, long id, int otroPuntaje, long otroId) {
+            return puntaje > otroPuntaje || (puntaje == otroPuntaje && id < otroId);
+        }
+
+        // Productos de los candidatos, del mejor al peor
+        List<Producto> productos(Estado actual) {
+            Integer[] orden = new Integer[tamanio];
+            for (int i = 0; i < tamanio; i++) {
+                orden[i] = i;
+            }
+            Arrays.sort(orden, (a, b) -> esMejor(puntajes[a], ids[a], puntajes[b], ids[b]) ? -1
+                    : esMejor(puntajes[b], ids[b], puntajes[a], ids[a]) ? 1 : 0);
+            List<Producto> productos = new ArrayList<>(tamanio);
+            for (int i : orden) {
+                Documento documento = actual.documentos().get(ids[i]);
+                if (documento != null) {
+                    productos.add(producto(documento));
+                }
+            }
+            return productos;
+        }
+    }
+}
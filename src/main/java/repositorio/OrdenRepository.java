@@ -0,0 +1,30 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción:
+ *  Interfaz del repositorio de órdenes de compra. Una orden es la versión guardada
+ *  en la base de datos del carrito (DetalleCarro) que el usuario tenía en su sesión:
+ *  una cabecera en la tabla "orden" y una línea en "detalle_orden" por cada ItemCarro.
+ */
+
+import models.DetalleCarro;
+
+import java.sql.SQLException;
+
+public interface OrdenRepository {
+
+    /**
+     * Guarda la orden y descuenta el stock de cada producto del carrito, todo dentro de
+     * la transacción de la conexión actual.
+     * @param usuario Usuario que realiza la compra.
+     * @param carro Carrito con los productos y cantidades a comprar.
+     * @return ID generado para la orden.
+     * @throws SinStockException Si algún producto no tiene stock suficiente; en ese caso
+     *                           no se guarda nada de la orden.
+     * @throws SQLException Si ocurre un error al ejecutar las sentencias.
+     */
+    Long guardar(String usuario, DetalleCarro carro) throws SQLException;
+}
@@ -0,0 +1,155 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.2
+ * Descripción:
+ *  Implementación JDBC del repositorio de órdenes. Guarda en una sola transacción
+ *  la cabecera de la orden, todas sus líneas y el descuento del stock de los productos.
+ *
+ *  Tablas utilizadas (MySQL, InnoDB):
+ *
+ *  CREATE TABLE orden (
+ *      id       BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *      usuario  VARCHAR(50)    NOT NULL,
+ *      fecha    DATETIME       NOT NULL,
+ *      subtotal DECIMAL(12, 2) NOT NULL,
+ *      iva      DECIMAL(12, 2) NOT NULL,
+ *      total    DECIMAL(12, 2) NOT NULL
+ *  ) ENGINE = InnoDB;
+ *
+ *  CREATE TABLE detalle_orden (
+ *      id         BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *      idOrden    BIGINT         NOT NULL,
+ *      idProducto INT            NOT NULL,
+ *      cantidad   INT            NOT NULL,
+ *      precio     DECIMAL(10, 2) NOT NULL,
+ *      subtotal   DECIMAL(12, 2) NOT NULL,
+ *      FOREIGN KEY (idOrden) REFERENCES orden (id),
+ *      FOREIGN KEY (idProducto) REFERENCES producto (id)
+ *  ) ENGINE = InnoDB;
+ *
+ *  Control de stock sin sobreventa:
+ *  - El stock no se lee y luego se escribe (leer-modificar-escribir), porque dos compras
+ *    simultáneas leerían el mismo valor. Se descuenta directamente en MySQL con
+ *    "UPDATE producto SET stock = stock - ? WHERE id = ? AND stock >= ?": la fila queda
+ *    bloqueada por el UPDATE y si el stock no alcanza el UPDATE no modifica ninguna fila.
+ *  - Las líneas se procesan siempre ordenadas por ID de producto. Así todas las compras
+ *    bloquean las filas de producto en el mismo orden y dos compras con los mismos
+ *    productos nunca se bloquean mutuamente (deadlock); la segunda solo espera a la primera.
+ *  - Los UPDATE y los INSERT de las líneas se envían en lotes JDBC (addBatch/executeBatch).
+ *
+ *  La conexión se toma de ConexionContexto y la transacción la confirma quien maneja la
+ *  conexión; si falta stock se vuelve al punto de guardado tomado al inicio, de modo que
+ *  no queda ningún cambio de la orden.
+ *
+ *  Versión 1.1: una orden guardada registra un cambio en VersionCatalogo, porque el
+ *  listado de productos muestra el stock.
+ *  Versión 1.2: el descuento de stock solo se acepta si cada UPDATE del lote informa
+ *  exactamente una fila. Antes solo se rechazaba 0, y un conteo desconocido
+ *  (Statement.SUCCESS_NO_INFO, que el driver puede informar con rewriteBatchedStatements)
+ *  se tomaba como descuento hecho.
+ */
+
+import models.DetalleCarro;
+import models.ItemCarro;
+import util.ConexionContexto;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class OrdenRepositoryJdbcImplement implements OrdenRepository {
+
+    private static final String SQL_DESCONTAR_STOCK =
+            "UPDATE producto SET stock = stock - ? WHERE id = ? AND stock >= ? AND condicion = 1";
+    private static final String SQL_INSERTAR_ORDEN =
+            "INSERT INTO orden (usuario, fecha, subtotal, iva, total) VALUES (?,?,?,?,?)";
+    private static final String SQL_INSERTAR_DETALLE =
+            "INSERT INTO detalle_orden (idOrden, idProducto, cantidad, precio, subtotal) VALUES (?,?,?,?,?)";
+
+    /**
+     * Retorna la conexión de la petición actual.
+     */
+    private Connection getConnection() throws SQLException {
+        return ConexionContexto.get();
+    }
+
+    @Override
+    public Long guardar(String usuario, DetalleCarro carro) throws SQLException {
+        // Orden fijo de bloqueo: por ID de producto
+        List<ItemCarro> items = new ArrayList<>(carro.getItem());
+        items.sort(Comparator.comparing(i -> i.getProducto().getId()));
+
+        Connection conn = getConnection();
+        Savepoint inicio = conn.setSavepoint();
+        try {
+            descontarStock(conn, items);
+            Long ordenId = insertarOrden(conn, usuario, carro);
+            insertarDetalle(conn, ordenId, items);
+            conn.releaseSavepoint(inicio);
+            VersionCatalogo.registrarCambio();
+            return ordenId;
+        } catch (SinStockException e) {
+            conn.rollback(inicio);
+            throw e;
+        }
+    }
+
+    /*
+     * Descuenta el stock de todos los productos en un lote. Cada UPDATE debe modificar
+     * exactamente una fila; si alguno modificó cero filas el producto no tiene stock. Cualquier
+     * otro conteo (por ejemplo SUCCESS_NO_INFO) tampoco garantiza el descuento y se rechaza
+     * igual: la orden se deshace antes que arriesgar una sobreventa.
+     */
+    private void descontarStock(Connection conn, List<ItemCarro> items) throws SQLException {
+        int[] filas;
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_DESCONTAR_STOCK)) {
+            for (ItemCarro item : items) {
+                stmt.setInt(1, item.getCantidad());
+                stmt.setLong(2, item.getProducto().getId());
+                stmt.setInt(3, item.getCantidad());
+                stmt.addBatch();
+            }
+            filas = stmt.executeBatch();
+        }
+        for (int i = 0; i < filas.length; i++) {
+            if (filas[i] != 1) {
+                throw new SinStockException(items.get(i).getProducto().getId());
+            }
+        }
+    }
+
+    private Long insertarOrden(Connection conn, String usuario, DetalleCarro carro) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR_ORDEN, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, usuario);
+            stmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            stmt.setDouble(3, carro.getSubtotal());
+            stmt.setDouble(4, carro.getSubtotalIva());
+            stmt.setDouble(5, carro.getTotal());
+            stmt.executeUpdate();
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No se obtuvo el ID generado para la orden");
+                }
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void insertarDetalle(Connection conn, Long ordenId, List<ItemCarro> items) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR_DETALLE)) {
+            for (ItemCarro item : items) {
+                stmt.setLong(1, ordenId);
+                stmt.setLong(2, item.getProducto().getId());
+                stmt.setInt(3, item.getCantidad());
+                stmt.setDouble(4, item.getProducto().getPrecio());
+                stmt.setDouble(5, item.getSubtotal());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.1
+ * Descripción:
+ *  Interfaz del repositorio de productos. Extiende el contrato genérico Repository<Producto>
+ *  con las operaciones que solo tienen sentido para los productos, por ejemplo la
+ *  inserción masiva utilizada por la importación de catálogos de proveedores.
+ *  Versión 1.1: porCodigo busca un producto por su código de barras (índice único).
+ */
+
+import models.Producto;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+public interface ProductoRepository extends Repository<Producto> {
+
+    /**
+     * Inserta varios productos nuevos con un lote JDBC (addBatch/executeBatch), es decir,
+     * en un solo viaje a la base de datos en lugar de un INSERT por producto.
+     * Si alguna fila del lote falla (por ejemplo un código duplicado), las demás filas
+     * se insertan igualmente y la fila fallida se reporta en el mapa retornado.
+     * @param productos Productos nuevos (sin ID) a insertar.
+     * @return Mapa (posición en la lista, mensaje de error) de los productos que no se
+     *         pudieron insertar; vacío si se insertaron todos.
+     * @throws SQLException Si ocurre un error que no corresponde a una fila en particular.
+     */
+    Map<Integer, String> guardarLote(List<Producto> productos) throws SQLException;
+
+    /**
+     * Busca un producto por su código de barras. La columna producto.codigo tiene un índice
+     * único, así la búsqueda nunca recorre la tabla.
+     * @param codigo Código de barras del producto.
+     * @return El producto, o null si no existe.
+     * @throws SQLException Si ocurre un error al consultar la base de datos.
+     */
+    Producto porCodigo(String codigo) throws SQLException;
+}
@@ -0,0 +1,222 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.4
+ * Descripción:
+ *  Decorador de lectura (read-through) para el repositorio de productos.
+ *  Implementa la misma interfaz ProductoRepository y envuelve a otro repositorio
+ *  (normalmente ProductoRepositoryJdbcImplement): las lecturas se responden desde
+ *  CacheProductos y solo cuando no existen en caché se consulta la base de datos.
+ *
+ *  Cualquier modificación (guardar, guardarLote, eliminar, activar o desactivar) se delega al
+ *  repositorio real y luego invalida la caché, para que la siguiente lectura
+ *  obtenga los datos actualizados. La caché se vuelve a invalidar después del commit, igual
+ *  que VersionCatalogo cambia de versión al terminar la unidad de trabajo.
+ *
+ *  Versión 1.1: porCodigo (código de barras) busca el ID en IndiceCodigos y el producto en la
+ *  caché por ID, sin SQL en un acierto. Si el código no está en el índice, o el producto
+ *  encontrado ya tiene otro código, se consulta la base de datos por el índice único y el
+ *  resultado se guarda en la caché y en IndiceCodigos.
+ *
+ *  Versión 1.2: porIds responde desde la caché los productos que están y trae todos los
+ *  faltantes con una sola llamada a porIds del repositorio real.
+ *
+ *  Versión 1.3: las modificaciones invalidan la caché también cuando termina la unidad de
+ *  trabajo (CacheProductos.invalidarAlTerminar), no solo antes del commit.
+ *
+ *  Versión 1.4: la generación de cada lectura se pide con generacionLectura(...), que no
+ *  guarda en la caché lo leído de la réplica justo después de un cambio.
+ */
+
+import models.Producto;
+import util.ConexionPerezosa;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class ProductoRepositoryCacheImplement implements ProductoRepository {
+
+    // Repositorio real que accede a la base de datos
+    private final ProductoRepository delegado;
+    // Caché compartida entre todas las peticiones
+    private final CacheProductos cache;
+    // Índice código de barras -> ID compartido por toda la aplicación
+    private final IndiceCodigos codigos;
+
+    public ProductoRepositoryCacheImplement(ProductoRepository delegado, CacheProductos cache) {
+        this(delegado, cache, IndiceCodigos.getInstancia());
+    }
+
+    public ProductoRepositoryCacheImplement(ProductoRepository delegado, CacheProductos cache, IndiceCodigos codigos) {
+        this.delegado = delegado;
+        this.cache = cache;
+        this.codigos = codigos;
+    }
+
+    /**
+     * Retorna el listado desde la caché; si no existe o expiró, lo consulta y lo guarda.
+     */
+    @Override
+    public List<Producto> listar() throws SQLException {
+        List<Producto> productos = cache.getListado();
+        if (productos == null) {
+            long generacion = generacionLectura();
+            productos = delegado.listar();
+            cache.putListado(productos, generacion);
+        }
+        return productos;
+    }
+
+    /**
+     * Retorna una página del listado desde la caché; si no existe o expiró, la consulta y la guarda.
+     */
+    @Override
+    public List<Producto> listar(Long despuesDe, int limite) throws SQLException {
+        List<Producto> productos = cache.getPagina(despuesDe, limite);
+        if (productos == null) {
+            long generacion = generacionLectura();
+            productos = delegado.listar(despuesDe, limite);
+            cache.putPagina(despuesDe, limite, productos, generacion);
+        }
+        return productos;
+    }
+
+    /**
+     * El recorrido con cursor no se guarda en caché: su objetivo es justamente
+     * no mantener todo el catálogo en memoria.
+     */
+    @Override
+    public Stream<Producto> stream(int fetchSize) throws SQLException {
+        return delegado.stream(fetchSize);
+    }
+
+    /**
+     * Retorna el producto desde la caché LRU; si no existe o expiró, lo consulta y lo guarda.
+     * Los productos inexistentes (null) no se guardan en caché.
+     */
+    @Override
+    public Producto porId(Long id) throws SQLException {
+        Producto producto = cache.getPorId(id);
+        if (producto == null) {
+            long generacion = generacionLectura();
+            producto = delegado.porId(id);
+            if (producto != null) {
+                cache.putPorId(producto, generacion);
+            }
+        }
+        return producto;
+    }
+
+    /**
+     * Retorna los productos que están en la caché y consulta todos los faltantes juntos.
+     */
+    @Override
+    public Map<Long, Producto> porIds(Collection<Long> ids) throws SQLException {
+        Map<Long, Producto> productos = new HashMap<>();
+        Set<Long> faltantes = new HashSet<>();
+        for (Long id : ids) {
+            if (id == null || productos.containsKey(id)) {
+                continue;
+            }
+            Producto producto = cache.getPorId(id);
+            if (producto != null) {
+                productos.put(id, producto);
+            } else {
+                faltantes.add(id);
+            }
+        }
+        if (!faltantes.isEmpty()) {
+            long generacion = generacionLectura();
+            Map<Long, Producto> leidos = delegado.porIds(faltantes);
+            for (Producto producto : leidos.values()) {
+                cache.putPorId(producto, generacion);
+            }
+            productos.putAll(leidos);
+        }
+        return productos;
+    }
+
+    /**
+     * Retorna el producto con ese código: código -> ID en IndiceCodigos y luego porId desde la
+     * caché. Solo si no está (o la entrada quedó vieja) se consulta la base de datos.
+     */
+    @Override
+    public Producto porCodigo(String codigo) throws SQLException {
+        Long id = codigos.id(codigo);
+        if (id != null) {
+            Producto producto = porId(id);
+            if (producto != null && codigo.equals(producto.getCodigo())) {
+                return producto;
+            }
+            codigos.quitar(codigo, id);
+        }
+
+        long generacion = generacionLectura();
+        Producto producto = delegado.porCodigo(codigo);
+        if (producto != null) {
+            cache.putPorId(producto, generacion);
+            codigos.registrar(producto);
+        }
+        return producto;
+    }
+
+    /*
+     * Generación con la que se guarda lo que se va a leer (ver CacheProductos.generacionLectura).
+     */
+    private long generacionLectura() {
+        return cache.generacionLectura(ConexionPerezosa.leeDeReplica());
+    }
+
+    @Override
+    public void guardar(Producto producto) throws SQLException {
+        try {
+            delegado.guardar(producto);
+        } finally {
+            cache.invalidarAlTerminar();
+        }
+    }
+
+    @Override
+    public Map<Integer, String> guardarLote(List<Producto> productos) throws SQLException {
+        try {
+            return delegado.guardarLote(productos);
+        } finally {
+            cache.invalidarAlTerminar();
+        }
+    }
+
+    @Override
+    public void eliminar(Long id) throws SQLException {
+        try {
+            delegado.eliminar(id);
+        } finally {
+            cache.invalidarAlTerminar();
+        }
+    }
+
+    @Override
+    public void desactivar(int id) throws SQLException {
+        try {
+            delegado.desactivar(id);
+        } finally {
+            cache.invalidarAlTerminar();
+        }
+    }
+
+    @Override
+    public void activar(int id) throws SQLException {
+        try {
+            delegado.activar(id);
+        } finally {
+            cache.invalidarAlTerminar();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.1
+ * Descripción:
+ *  Decorador del repositorio de productos que mantiene actualizado IndiceProductos (búsqueda
+ *  por texto). Las lecturas se delegan sin cambios; cada modificación se delega al repositorio
+ *  real y el índice se actualiza solo para el producto modificado, sin volver a construirlo.
+ *
+ *  El índice se actualiza con UnidadTrabajo.alConfirmar, es decir, después del commit: si la
+ *  transacción se deshace el índice no cambia, y una búsqueda nunca muestra un producto que
+ *  todavía no existe en la base de datos.
+ *
+ *  Se ubica entre la caché y el repositorio JDBC (Cache -> Indice -> Jdbc): cuando necesita
+ *  volver a leer un producto modificado lo hace directamente en la base de datos, sin guardar
+ *  en la caché datos que todavía no están confirmados.
+ *
+ *  Versión 1.1: también mantiene IndiceCodigos (código de barras -> ID). Para quitar el código
+ *  anterior de un producto que se actualiza o elimina, se lee el producto antes de modificarlo.
+ */
+
+import models.Producto;
+import util.UnidadTrabajo;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ProductoRepositoryIndiceImplement implements ProductoRepository {
+
+    // Repositorio real que accede a la base de datos
+    private final ProductoRepository delegado;
+    // Índice de búsqueda compartido por toda la aplicación
+    private final IndiceProductos indice;
+    // Índice código de barras -> ID compartido por toda la aplicación
+    private final IndiceCodigos codigos;
+
+    public ProductoRepositoryIndiceImplement(ProductoRepository delegado, IndiceProductos indice,
+                                             IndiceCodigos codigos) {
+        this.delegado = delegado;
+        this.indice = indice;
+        this.codigos = codigos;
+    }
+
+    @Override
+    public List<Producto> listar() throws SQLException {
+        return delegado.listar();
+    }
+
+    @Override
+    public List<Producto> listar(Long despuesDe, int limite) throws SQLException {
+        return delegado.listar(despuesDe, limite);
+    }
+
+    @Override
+    public Stream<Producto> stream(int fetchSize) throws SQLException {
+        return delegado.stream(fetchSize);
+    }
+
+    @Override
+    public Producto porId(Long id) throws SQLException {
+        return delegado.porId(id);
+    }
+
+    @Override
+    public Map<Long, Producto> porIds(Collection<Long> ids) throws SQLException {
+        return delegado.porIds(ids);
+    }
+
+    @Override
+    public Producto porCodigo(String codigo) throws SQLException {
+        return delegado.porCodigo(codigo);
+    }
+
+    /**
+     * Guarda el producto y lo vuelve a leer (con el nombre de la categoría y la condición
+     * actuales) para indexarlo tal como quedó en la base de datos.
+     */
+    @Override
+    public void guardar(Producto producto) throws SQLException {
+        Producto anterior = producto.getId() != null && producto.getId() > 0 ? delegado.porId(producto.getId()) : null;
+        delegado.guardar(producto);
+        Long id = producto.getId();
+        Producto guardado = delegado.porId(id);
+        UnidadTrabajo.alConfirmar(() -> {
+            if (anterior != null) {
+                codigos.quitar(anterior.getCodigo(), id);
+            }
+            if (guardado != null) {
+                indice.indexar(guardado);
+                codigos.registrar(guardado);
+            } else {
+                indice.quitar(id);
+            }
+        });
+    }
+
+    /**
+     * Indexa los productos insertados del lote sin volver a leerlos: el INSERT los crea
+     * activos y el repositorio JDBC ya les asignó el ID generado.
+     */
+    @Override
+    public Map<Integer, String> guardarLote(List<Producto> productos) throws SQLException {
+        Map<Integer, String> errores = delegado.guardarLote(productos);
+        List<Producto> insertados = new ArrayList<>(productos.size() - errores.size());
+        for (int i = 0; i < productos.size(); i++) {
+            Producto producto = productos.get(i);
+            if (!errores.containsKey(i) && producto.getId() != null) {
+                producto.setCondicion(1);
+                insertados.add(producto);
+            }
+        }
+        UnidadTrabajo.alConfirmar(() -> {
+            indice.indexar(insertados);
+            insertados.forEach(codigos::registrar);
+        });
+        return errores;
+    }
+
+    @Override
+    public void eliminar(Long id) throws SQLException {
+        Producto anterior = delegado.porId(id);
+        delegado.eliminar(id);
+        UnidadTrabajo.alConfirmar(() -> {
+            indice.quitar(id);
+            if (anterior != null) {
+                codigos.quitar(anterior.getCodigo(), id);
+            }
+        });
+    }
+
+    @Override
+    public void desactivar(int id) throws SQLException {
+        delegado.desactivar(id);
+        UnidadTrabajo.alConfirmar(() -> indice.quitar((long) id));
+    }
+
+    // El producto vuelve a estar activo: se lee completo para indexarlo
+    @Override
+    public void activar(int id) throws SQLException {
+        delegado.activar(id);
+        Producto activado = delegado.porId((long) id);
+        UnidadTrabajo.alConfirmar(() -> indice.indexar(activado));
+    }
+}
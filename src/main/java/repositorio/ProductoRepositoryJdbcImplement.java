@@ -3,7 +3,7 @@ package repositorio;
 /*
  * Autor: Byron Melo
  * Fecha: 19/11/2025
- * Versión: 1.0
+ * Versión: 1.7
  * Descripción:
  *  Esta clase implementa la interfaz Repository para gestionar operaciones
  *  CRUD (Crear, Leer, Actualizar, Eliminar) sobre la tabla "producto" de la
@@ -12,30 +12,85 @@ package repositorio;
  *
  *  Además, incluye métodos adicionales para activar y desactivar productos,
  *  modificando el campo "condicion" (1=activo, 0=inactivo).
+ *
+ *  Versión 1.1: el repositorio es un objeto único (singleton) sin estado; la conexión
+ *  se toma en cada operación desde ConexionContexto, donde la asocia ConexionFilter.
+ *  Versión 1.2: todas las sentencias SQL se definen una sola vez como constantes con nombre
+ *  y se ejecutan siempre con PreparedStatement, así el texto SQL es idéntico en cada llamada
+ *  y la caché de sentencias preparadas del driver (cachePrepStmts/useServerPrepStmts,
+ *  ver ConexionBDD) reutiliza la sentencia ya analizada por MySQL en cada conexión del pool.
+ *  Versión 1.3: se agrega guardarLote para la importación masiva de productos con lotes JDBC.
+ *  Versión 1.4: cada modificación registra un cambio en VersionCatalogo (ETag del listado).
+ *  Versión 1.5: guardar y guardarLote asignan a cada producto nuevo el ID generado por MySQL
+ *  (getGeneratedKeys), que necesita IndiceProductos para indexarlo sin volver a consultarlo.
+ *  Versión 1.6: porCodigo busca por el código de barras. Requiere el índice único
+ *  (si ya existen códigos repetidos hay que corregirlos antes de crearlo):
+ *
+ *  ALTER TABLE producto ADD CONSTRAINT uk_producto_codigo UNIQUE (codigo);
+ *
+ *  Con el índice, "WHERE p.codigo = ?" lee una sola fila del índice (como la clave primaria)
+ *  en lugar de recorrer la tabla, y MySQL rechaza un código repetido al guardar o importar.
+ *  Versión 1.7: porIds trae varios productos con "WHERE p.id IN (...)" en bloques. Cada bloque
+ *  se rellena hasta una potencia de dos (repitiendo el último ID), así solo existen unas pocas
+ *  sentencias distintas que la caché de sentencias del driver reutiliza, en lugar de un texto
+ *  SQL nuevo por cada cantidad de IDs.
  */
 
 import models.Categoria;
 import models.Producto;
+import util.ConexionContexto;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
-public class ProductoRepositoryJdbcImplement implements Repository<Producto> {
+public class ProductoRepositoryJdbcImplement implements ProductoRepository {
 
-    /**
-     * Conexión activa hacia la base de datos.
-     * Esta conexión es inyectada mediante el constructor y es utilizada
-     * por todos los métodos para ejecutar consultas SQL.
+    /*
+     * Sentencias SQL con nombre. Se declaran como constantes para que todas las llamadas
+     * usen exactamente el mismo texto (la clave de la caché de sentencias del driver).
+     */
+    private static final String SQL_SELECT_BASE = "SELECT p.*, c.nombreCategoria AS categoria " +
+            "FROM producto AS p " +
+            "INNER JOIN categoria AS c ON (p.idCategoria = c.id) ";
+    private static final String SQL_LISTAR = SQL_SELECT_BASE + "ORDER BY p.id ASC";
+    private static final String SQL_LISTAR_PAGINA = SQL_SELECT_BASE + "WHERE p.id > ? ORDER BY p.id ASC LIMIT ?";
+    private static final String SQL_POR_ID = SQL_SELECT_BASE + "WHERE p.id = ?";
+    private static final String SQL_POR_CODIGO = SQL_SELECT_BASE + "WHERE p.codigo = ?";
+    private static final String SQL_INSERTAR = "INSERT INTO producto (nombreProducto, idCategoria, stock, precio, " +
+            "descripcion, codigo, fecha_elaboracion, fecha_caducidad, condicion) VALUES (?,?,?,?,?,?,?,?,1)";
+    private static final String SQL_ACTUALIZAR = "UPDATE producto SET nombreProducto=?, idCategoria=?, stock=?, " +
+            "precio=?, descripcion=?, codigo=?, fecha_elaboracion=?, fecha_caducidad=? WHERE id=?";
+    private static final String SQL_ELIMINAR = "DELETE FROM producto WHERE id = ?";
+    private static final String SQL_DESACTIVAR = "UPDATE producto SET condicion = 0 WHERE id = ?";
+    private static final String SQL_ACTIVAR = "UPDATE producto SET condicion = 1 WHERE id = ?";
+
+    /*
+     * Tamaños de bloque de porIds (1, 2, 4, ... 128 IDs) y la sentencia "IN (?,...)" de cada uno.
+     * Una lista más larga se consulta en bloques de 128 con la misma sentencia.
      */
-    private Connection conn;
+    private static final int[] TAMANIOS_BLOQUE = {1, 2, 4, 8, 16, 32, 64, 128};
+    private static final String[] SQL_POR_IDS = new String[TAMANIOS_BLOQUE.length];
+
+    static {
+        for (int i = 0; i < TAMANIOS_BLOQUE.length; i++) {
+            SQL_POR_IDS[i] = SQL_SELECT_BASE + "WHERE p.id IN (?" + ",?".repeat(TAMANIOS_BLOQUE[i] - 1) + ")";
+        }
+    }
 
     /**
-     * Constructor que recibe una conexión JDBC ya inicializada.
-     * Esta conexión permitirá ejecutar todas las operaciones del repositorio.
+     * Retorna la conexión de la petición actual.
+     * La conexión ya no se guarda como atributo, así una misma instancia del
+     * repositorio puede ser usada al mismo tiempo por varias peticiones.
      */
-    public ProductoRepositoryJdbcImplement(Connection conn) {
-        this.conn = conn;
+    private Connection getConnection() throws SQLException {
+        return ConexionContexto.get();
     }
 
     /**
@@ -51,12 +106,8 @@ public class ProductoRepositoryJdbcImplement implements Repository<Producto> {
     @Override
     public List<Producto> listar() throws SQLException {
         List<Producto> productos = new ArrayList<>();
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(
-                     "SELECT p.*, c.nombreCategoria AS categoria " +
-                             "FROM producto AS p " +
-                             "INNER JOIN categoria AS c ON (p.idCategoria = c.id) " +
-                             "ORDER BY p.id ASC")) {
+        try (PreparedStatement stmt = getConnection().prepareStatement(SQL_LISTAR);
+             ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
                 Producto p = getProducto(rs);
@@ -66,6 +117,46 @@ public class ProductoRepositoryJdbcImplement implements Repository<Producto> {
         return productos;
     }
 
+    /**
+     * Lista una página de productos usando paginación por clave sobre p.id.
+     * La consulta usa el índice de la clave primaria para saltar directamente al
+     * primer ID mayor a despuesDe, por eso no se degrada en páginas lejanas como OFFSET.
+     *
+     * @param despuesDe ID del último producto de la página anterior (null o 0 para empezar).
+     * @param limite Número máximo de productos de la página.
+     * @return Lista de productos de la página solicitada.
+     * @throws SQLException si existe un problema al ejecutar la consulta.
+     */
+    @Override
+    public List<Producto> listar(Long despuesDe, int limite) throws SQLException {
+        List<Producto> productos = new ArrayList<>(limite);
+        try (PreparedStatement stmt = getConnection().prepareStatement(SQL_LISTAR_PAGINA)) {
+
+            stmt.setLong(1, despuesDe != null ? despuesDe : 0L);
+            stmt.setInt(2, limite);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productos.add(getProducto(rs));
+                }
+            }
+        }
+        return productos;
+    }
+
+    /**
+     * Recorre todos los productos con un cursor del servidor (useCursorFetch),
+     * trayendo "fetchSize" filas por viaje. El Stream debe cerrarse al terminar.
+     *
+     * @param fetchSize Número de filas por bloque.
+     * @return Stream perezoso de productos ordenados por ID.
+     * @throws SQLException si existe un problema al ejecutar la consulta.
+     */
+    @Override
+    public Stream<Producto> stream(int fetchSize) throws SQLException {
+        return CursorJdbc.stream(getConnection(), SQL_LISTAR, fetchSize, ProductoRepositoryJdbcImplement::getProducto);
+    }
+
     /**
      * Busca un producto por su ID.
      * Utiliza PreparedStatement para evitar inyección SQL.
@@ -79,11 +170,7 @@ public class ProductoRepositoryJdbcImplement implements Repository<Producto> {
     @Override
     public Producto porId(Long id) throws SQLException {
         Producto producto = null;
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "SELECT p.*, c.nombreCategoria AS categoria " +
-                        "FROM producto AS p " +
-                        "INNER JOIN categoria AS c ON (p.idCategoria = c.id) " +
-                        "WHERE p.id = ?")) {
+        try (PreparedStatement stmt = getConnection().prepareStatement(SQL_POR_ID)) {
 
             stmt.setLong(1, id);
 
@@ -96,49 +183,205 @@ public class ProductoRepositoryJdbcImplement implements Repository<Producto> {
         return producto;
     }
 
+    /**
+     * Busca varios productos por su ID con consultas "IN (...)" de como máximo 128 IDs.
+     * Los bloques completos reutilizan una misma sentencia preparada; el último bloque se
+     * rellena repitiendo su último ID hasta el tamaño de bloque inmediato superior.
+     *
+     * @param ids Identificadores de los productos (se ignoran los null y los repetidos).
+     * @return Mapa ID -> producto de los productos encontrados.
+     * @throws SQLException si ocurre un error en la consulta.
+     */
+    @Override
+    public Map<Long, Producto> porIds(Collection<Long> ids) throws SQLException {
+        long[] unicos = ids.stream().filter(Objects::nonNull).mapToLong(Long::longValue).distinct().toArray();
+        Map<Long, Producto> productos = new HashMap<>();
+        int maximo = TAMANIOS_BLOQUE.length - 1;
+        int completos = unicos.length - unicos.length % TAMANIOS_BLOQUE[maximo];
+
+        if (completos > 0) {
+            try (PreparedStatement stmt = getConnection().prepareStatement(SQL_POR_IDS[maximo])) {
+                for (int inicio = 0; inicio < completos; inicio += TAMANIOS_BLOQUE[maximo]) {
+                    consultarBloque(stmt, unicos, inicio, TAMANIOS_BLOQUE[maximo], TAMANIOS_BLOQUE[maximo], productos);
+                }
+            }
+        }
+        int resto = unicos.length - completos;
+        if (resto > 0) {
+            int tamanio = 0;
+            while (TAMANIOS_BLOQUE[tamanio] < resto) {
+                tamanio++;
+            }
+            try (PreparedStatement stmt = getConnection().prepareStatement(SQL_POR_IDS[tamanio])) {
+                consultarBloque(stmt, unicos, completos, resto, TAMANIOS_BLOQUE[tamanio], productos);
+            }
+        }
+        return productos;
+    }
+
+    /*
+     * Ejecuta la sentencia "IN (...)" con los IDs [inicio, inicio + cantidad) rellenando hasta
+     * "parametros" con el último ID, y agrega los productos encontrados al mapa.
+     */
+    private static void consultarBloque(PreparedStatement stmt, long[] ids, int inicio, int cantidad, int parametros,
+                                        Map<Long, Producto> productos) throws SQLException {
+        for (int i = 0; i < parametros; i++) {
+            stmt.setLong(i + 1, ids[inicio + Math.min(i, cantidad - 1)]);
+        }
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Producto producto = getProducto(rs);
+                productos.put(producto.getId(), producto);
+            }
+        }
+    }
+
+    /**
+     * Busca un producto por su código de barras usando el índice único uk_producto_codigo.
+     *
+     * @param codigo Código de barras del producto.
+     * @return El objeto Producto si existe, o null si no se encuentra.
+     * @throws SQLException si ocurre un error en la consulta.
+     */
+    @Override
+    public Producto porCodigo(String codigo) throws SQLException {
+        Producto producto = null;
+        try (PreparedStatement stmt = getConnection().prepareStatement(SQL_POR_CODIGO)) {
+
+            stmt.setString(1, codigo);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    producto = getProducto(rs);
+                }
+            }
+        }
+        return producto;
+    }
+
     /**
      * Guarda un producto en la base de datos (CREATE y UPDATE)
      *  Si el producto tiene ID, se ejecuta un UPDATE.
      *  Si no tiene ID (producto nuevo), se ejecuta un INSERT.
      *  Se registran datos como nombre, categoría, precio, stock, fechas, etc.
      *  El campo "condicion" se coloca en 1 para productos nuevos (activo por defecto).
+     *  Al producto nuevo se le asigna el ID generado por MySQL.
      *
      * @param producto Objeto Producto que se va a insertar o actualizar.
      * @throws SQLException si ocurre un error en la operación.
      */
     @Override
     public void guardar(Producto producto) throws SQLException {
-        String sql;
+        boolean nuevo = producto.getId() == null || producto.getId() <= 0;
 
-        if (producto.getId() != null && producto.getId() > 0) {
+        if (!nuevo) {
             // Actualizar producto existente
-            sql = "UPDATE producto SET  idCategoria=?, stock=?, precio=?, descripcion=?, codigo=?, " +
-                    "fecha_elaboracion=?, fecha_caducidad=? WHERE id=?";
+            try (PreparedStatement stmt = getConnection().prepareStatement(SQL_ACTUALIZAR)) {
+                asignarParametros(stmt, producto);
+                stmt.setLong(9, producto.getId());
+                stmt.executeUpdate();
+            }
         } else {
             // Insertar nuevo producto
-            sql = "INSERT INTO producto (nombreProducto, idCategoria, stock, precio, descripcion, codigo, fecha_elaboracion, fecha_caducidad, condicion) " +
-                    "VALUES (?,?,?,?,?,?,?,?,1)";
+            try (PreparedStatement stmt = getConnection().prepareStatement(SQL_INSERTAR,
+                    Statement.RETURN_GENERATED_KEYS)) {
+                asignarParametros(stmt, producto);
+                stmt.executeUpdate();
+                asignarIdsGenerados(stmt, List.of(producto));
+            }
         }
+        VersionCatalogo.registrarCambio();
+    }
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, producto.getNombre());
-            stmt.setLong(2, producto.getCategoria().getId());
-            stmt.setInt(3, producto.getStock());
-            stmt.setDouble(4, producto.getPrecio());
-            stmt.setString(5, producto.getDescripcion());
-            stmt.setString(6, producto.getCodigo());
+    /**
+     * Inserta varios productos nuevos con un lote JDBC (INSERT masivo).
+     *  Todas las filas se agregan al lote con addBatch y se envían juntas con executeBatch;
+     *  con rewriteBatchedStatements (ver ConexionBDD) el driver las reescribe como un único
+     *  "INSERT ... VALUES (...),(...),..." en lugar de un viaje a MySQL por producto.
+     *
+     *  Antes del lote se marca un punto de guardado (savepoint). Si alguna fila falla,
+     *  MySQL puede haber insertado una parte del lote, por eso se vuelve al punto de
+     *  guardado y se reintenta el mismo lote fila por fila, cada una con su propio punto
+     *  de guardado: las filas válidas se insertan y las fallidas se reportan con su mensaje.
+     *  Las transacciones no se confirman aquí, el commit lo hace quien maneja la conexión.
+     *  A cada producto insertado se le asigna el ID generado; los rechazados quedan sin ID.
+     *
+     * @param productos Productos nuevos a insertar.
+     * @return Mapa (posición en la lista, mensaje de error) con las filas rechazadas por MySQL.
+     * @throws SQLException si ocurre un error que no corresponde a una fila en particular.
+     */
+    @Override
+    public Map<Integer, String> guardarLote(List<Producto> productos) throws SQLException {
+        Map<Integer, String> errores = new LinkedHashMap<>();
+        if (productos.isEmpty()) {
+            return errores;
+        }
 
-            if (producto.getId() != null && producto.getId() > 0) {
-                stmt.setDate(7, Date.valueOf(producto.getFechaElaboracion()));
-                stmt.setDate(8, Date.valueOf(producto.getFechaCaducidad()));
-                stmt.setLong(9, producto.getId());
-            } else {
-                stmt.setDate(7, Date.valueOf(producto.getFechaElaboracion()));
-                stmt.setDate(8, Date.valueOf(producto.getFechaCaducidad()));
+        Connection conn = getConnection();
+        Savepoint inicioLote = conn.setSavepoint();
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+            for (Producto producto : productos) {
+                asignarParametros(stmt, producto);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            asignarIdsGenerados(stmt, productos);
+            conn.releaseSavepoint(inicioLote);
+            VersionCatalogo.registrarCambio();
+            return errores;
+        } catch (BatchUpdateException e) {
+            // Se descarta lo que el lote alcanzó a insertar y se reintenta fila por fila
+            conn.rollback(inicioLote);
+        }
 
+        // Los IDs que alcanzó a asignar el lote fallido ya no son válidos
+        productos.forEach(producto -> producto.setId(null));
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < productos.size(); i++) {
+                Savepoint fila = conn.setSavepoint();
+                try {
+                    asignarParametros(stmt, productos.get(i));
+                    stmt.executeUpdate();
+                    asignarIdsGenerados(stmt, List.of(productos.get(i)));
+                    conn.releaseSavepoint(fila);
+                } catch (SQLException e) {
+                    conn.rollback(fila);
+                    errores.put(i, e.getMessage());
+                }
             }
-            stmt.executeUpdate();
         }
+        if (errores.size() < productos.size()) {
+            VersionCatalogo.registrarCambio();
+        }
+        return errores;
+    }
+
+    /*
+     * Asigna a los productos, en orden, los IDs generados por el último INSERT de la sentencia.
+     */
+    private static void asignarIdsGenerados(PreparedStatement stmt, List<Producto> productos) throws SQLException {
+        try (ResultSet claves = stmt.getGeneratedKeys()) {
+            for (Producto producto : productos) {
+                if (!claves.next()) {
+                    break;
+                }
+                producto.setId(claves.getLong(1));
+            }
+        }
+    }
+
+    /*
+     * Asigna los parámetros 1 a 8 comunes al INSERT y al UPDATE de un producto.
+     */
+    private static void asignarParametros(PreparedStatement stmt, Producto producto) throws SQLException {
+        stmt.setString(1, producto.getNombre());
+        stmt.setLong(2, producto.getCategoria().getId());
+        stmt.setInt(3, producto.getStock());
+        stmt.setDouble(4, producto.getPrecio());
+        stmt.setString(5, producto.getDescripcion());
+        stmt.setString(6, producto.getCodigo());
+        stmt.setDate(7, Date.valueOf(producto.getFechaElaboracion()));
+        stmt.setDate(8, Date.valueOf(producto.getFechaCaducidad()));
     }
 
     /**
@@ -151,18 +394,18 @@ public class ProductoRepositoryJdbcImplement implements Repository<Producto> {
      */
     @Override
     public void eliminar(Long id) throws SQLException {
-        String sql = "DELETE FROM producto WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = getConnection().prepareStatement(SQL_ELIMINAR)) {
             stmt.setLong(1, id);
             stmt.executeUpdate();
         }
+        VersionCatalogo.registrarCambio();
     }
 
     /**
      * Convierte un registro del ResultSet en un objeto Producto.
      * Extrae todos los datos del producto.
      * Crea también la instancia de Categoria asociada.
-     * Se usa internamente en listar() y porId().
+     * Se usa internamente en listar(), porId() y porIds().
      *
      * @param rs ResultSet con los datos de un producto.
      * @return Objeto Producto completamente construido.
@@ -198,11 +441,11 @@ public class ProductoRepositoryJdbcImplement implements Repository<Producto> {
      */
     @Override
     public void desactivar(int id) throws SQLException {
-        String sql = "UPDATE producto SET condicion = 0 WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = getConnection().prepareStatement(SQL_DESACTIVAR)) {
             stmt.setInt(1, id);
             stmt.executeUpdate();
         }
+        VersionCatalogo.registrarCambio();
     }
 
     /**
@@ -215,11 +458,11 @@ public class ProductoRepositoryJdbcImplement implements Repository<Producto> {
      */
     @Override
     public void activar(int id) throws SQLException {
-        String sql = "UPDATE producto SET condicion = 1 WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = getConnection().prepareStatement(SQL_ACTIVAR)) {
             stmt.setInt(1, id);
             stmt.executeUpdate();
         }
+        VersionCatalogo.registrarCambio();
     }
 
 }
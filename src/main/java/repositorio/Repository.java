@@ -3,17 +3,25 @@ package repositorio;
 /*
  * Autor: Byron Melo
  * Fecha: 19/11/2025
- * Versión: 1.1
+ * Versión: 1.3
  * Descripción:
  *  Esta interfaz genérica define el contrato base para un repositorio que
  *  interactúa con la base de datos. Proporciona los métodos CRUD esenciales
  *  (crear, leer, actualizar y eliminar) y, adicionalmente, métodos para
  *  activar y desactivar un producto según su ID. La interfaz utiliza un
  *  tipo genérico <T> para permitir su uso con diferentes entidades.
+ *  Versión 1.2: se agregan el listado paginado por clave (keyset) y el recorrido
+ *  con cursor (stream) para no cargar todos los registros en memoria.
+ *  Versión 1.3: porIds busca varios registros a la vez. Por defecto llama a porId por cada
+ *  ID; las implementaciones con tablas grandes lo reemplazan por una sola consulta.
  */
 
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface Repository<T> {
 
@@ -24,6 +32,26 @@ public interface Repository<T> {
      */
     List<T> listar() throws SQLException;
 
+    /**
+     * Obtiene una página de registros ordenados por ID usando paginación por clave (keyset):
+     * en lugar de OFFSET se filtra por "id > despuesDe", así el costo de cada página es
+     * el mismo sin importar en qué posición del listado se encuentre.
+     * @param despuesDe ID del último registro de la página anterior (null o 0 para la primera página).
+     * @param limite Número máximo de registros a retornar.
+     * @return Lista con como máximo "limite" registros con ID mayor a despuesDe.
+     * @throws SQLException Si ocurre un error al ejecutar la consulta.
+     */
+    List<T> listar(Long despuesDe, int limite) throws SQLException;
+
+    /**
+     * Recorre todos los registros ordenados por ID con un cursor del servidor, sin cargarlos
+     * todos en memoria. El Stream retornado debe cerrarse (try-with-resources).
+     * @param fetchSize Número de filas que se traen del servidor en cada bloque.
+     * @return Stream perezoso de registros.
+     * @throws SQLException Si ocurre un error al ejecutar la consulta.
+     */
+    Stream<T> stream(int fetchSize) throws SQLException;
+
     /**
      * Busca un registro por su identificador único.
      * @param id Identificador del registro.
@@ -32,6 +60,25 @@ public interface Repository<T> {
      */
     T porId(Long id) throws SQLException;
 
+    /**
+     * Busca varios registros por su identificador.
+     * @param ids Identificadores de los registros (se ignoran los null).
+     * @return Mapa ID -> registro con los registros encontrados; los que no existen no aparecen.
+     * @throws SQLException Si ocurre un error en la consulta.
+     */
+    default Map<Long, T> porIds(Collection<Long> ids) throws SQLException {
+        Map<Long, T> registros = new HashMap<>();
+        for (Long id : ids) {
+            if (id != null && !registros.containsKey(id)) {
+                T registro = porId(id);
+                if (registro != null) {
+                    registros.put(id, registro);
+                }
+            }
+        }
+        return registros;
+    }
+
     /**
      * Guarda un objeto en la base de datos.
      * Si el objeto no existe, lo inserta; si existe, lo actualiza.
@@ -0,0 +1,28 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción:
+ *  Excepción que lanza OrdenRepositoryJdbcImplement cuando un producto del carrito
+ *  no tiene stock suficiente (el UPDATE con la condición "stock >= cantidad" no
+ *  modificó ninguna fila). Guarda el ID del producto para informar al usuario.
+ */
+
+import java.sql.SQLException;
+
+public class SinStockException extends SQLException {
+
+    private final Long productoId;
+
+    public SinStockException(Long productoId) {
+        super("Stock insuficiente para el producto " + productoId);
+        this.productoId = productoId;
+    }
+
+    // Retorna el ID del producto que no tiene stock suficiente
+    public Long getProductoId() {
+        return productoId;
+    }
+}
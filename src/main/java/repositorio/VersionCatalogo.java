@@ -0,0 +1,71 @@
+package repositorio;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción:
+ *  Sello de versión del catálogo (productos y categorías) compartido por toda la aplicación.
+ *  Cada modificación hecha por ProductoRepositoryJdbcImplement, CategoriaRepositoryJdbcImplement
+ *  u OrdenRepositoryJdbcImplement (descuento de stock) incrementa el número de versión y
+ *  registra el instante del cambio. ProductoServlet lo usa para las cabeceras ETag y
+ *  Last-Modified y responde 304 (sin consultar la base de datos ni generar el JSP) cuando
+ *  el cliente ya tiene la versión actual.
+ *
+ *  - El incremento se hace cuando termina la unidad de trabajo (UnidadTrabajo.alTerminar),
+ *    es decir, después del commit. Si se incrementara antes, una petición podría leer la
+ *    versión nueva junto con los datos anteriores y el cliente guardaría datos viejos con
+ *    el ETag nuevo.
+ *  - El ETag incluye el instante en que inició la aplicación: el número vuelve a 0 al
+ *    reiniciar, y sin ese instante un ETag anterior al reinicio podría coincidir.
+ *  - Solo se mantiene en memoria: con varios servidores cada uno tiene su propia versión
+ *    (en el peor caso el cliente recibe la página completa en lugar de 304).
+ */
+
+import util.UnidadTrabajo;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class VersionCatalogo {
+
+    /**
+     * Versión del catálogo: número de cambios desde el inicio e instante (epoch ms) del último.
+     */
+    public record Version(long numero, long modificado) {
+
+        /**
+         * ETag de una representación del catálogo.
+         * @param variante Distingue respuestas distintas para la misma versión (por ejemplo,
+         *                 con o sin sesión iniciada).
+         */
+        public String etag(String variante) {
+            return "\"" + Long.toHexString(INICIO) + "-" + numero + "-" + variante + "\"";
+        }
+    }
+
+    private static final long INICIO = System.currentTimeMillis();
+    private static final AtomicReference<Version> ACTUAL = new AtomicReference<>(new Version(0, INICIO));
+
+    private VersionCatalogo() {
+    }
+
+    /**
+     * Retorna la versión actual del catálogo.
+     */
+    public static Version actual() {
+        return ACTUAL.get();
+    }
+
+    /**
+     * Registra una modificación del catálogo. La versión cambia al terminar la unidad de
+     * trabajo actual (o de inmediato si no hay una).
+     */
+    public static void registrarCambio() {
+        UnidadTrabajo.alTerminar(VersionCatalogo::incrementar);
+    }
+
+    private static void incrementar() {
+        long ahora = System.currentTimeMillis();
+        ACTUAL.updateAndGet(v -> new Version(v.numero() + 1, Math.max(ahora, v.modificado())));
+    }
+}
@@ -0,0 +1,18 @@
+package services;
+import models.DetalleCarro;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Interfaz de servicio para confirmar las compras (checkout). Convierte el
+ * carrito de la sesión en una orden guardada en la base de datos.
+ * */
+
+public interface OrdenService {
+
+    /*Declaramos un metodo que guarda el carrito como una orden, descuenta el stock
+     * de los productos y retorna el ID de la orden creada.
+     * Lanza StockInsuficienteException si algún producto no tiene stock suficiente.
+     * */
+    Long confirmar(String usuario, DetalleCarro carro);
+}
@@ -0,0 +1,61 @@
+package services;
+
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción:
+ * Implementación del servicio de órdenes con JDBC. Delega en OrdenRepository el guardado
+ * de la orden y el descuento del stock, y convierte las SQLException en excepciones de
+ * servicio. Como la compra cambia el stock de los productos, al terminar se invalida la
+ * caché del catálogo para que el listado muestre el stock actualizado.
+ *
+ * Igual que ProductoServiceJdbcImpl, se crea una sola vez en AplicacionListener y la
+ * compra completa se ejecuta en una UnidadTrabajo: al retornar ya está confirmada.
+ */
+
+import models.DetalleCarro;
+import repositorio.CacheProductos;
+import repositorio.OrdenRepository;
+import repositorio.SinStockException;
+import util.UnidadTrabajo;
+
+import java.sql.SQLException;
+
+public class OrdenServiceJdbcImpl implements OrdenService {
+
+    private final OrdenRepository repositoryJdbc;
+    private final CacheProductos cacheProductos;
+
+    /**
+     * @param repositoryJdbc Repositorio de órdenes.
+     * @param cacheProductos Caché del catálogo que se invalida después de cada compra.
+     */
+    public OrdenServiceJdbcImpl(OrdenRepository repositoryJdbc, CacheProductos cacheProductos) {
+        this.repositoryJdbc = repositoryJdbc;
+        this.cacheProductos = cacheProductos;
+    }
+
+    /**
+     * Guarda el carrito como una orden y descuenta el stock en una sola transacción.
+     *
+     * @param usuario Usuario que realiza la compra.
+     * @param carro Carrito de la sesión.
+     * @return ID de la orden creada.
+     * @throws StockInsuficienteException Si algún producto no tiene stock suficiente.
+     * @throws ServiceJbdcException Si ocurre un error al guardar la orden.
+     */
+    @Override
+    public Long confirmar(String usuario, DetalleCarro carro) {
+        try {
+            return UnidadTrabajo.ejecutar(() -> repositoryJdbc.guardar(usuario, carro));
+        } catch (SinStockException e) {
+            throw new StockInsuficienteException(e.getMessage(), e.getProductoId());
+        } catch (SQLException throwables) {
+            // Convierte la excepción SQL a una excepción de servicio.
+            throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
+        } finally {
+            cacheProductos.invalidar();
+        }
+    }
+}
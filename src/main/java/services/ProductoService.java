@@ -1,7 +1,9 @@
 package services;
 import models.Categoria;
 import models.Producto;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 /*
  * Autor: Byron Melo
@@ -19,12 +21,33 @@ public interface ProductoService {
     //declaramos un metodo que retorna una lista de elementos tipo Producto (sin implementar)
     List<Producto> listar();
 
+    /*Declaramos un metodo que retorna una página de productos ordenados por ID,
+     * empezando después del ID indicado (paginación por clave).
+     * */
+    List<Producto> listar(Long despuesDe, int limite);
+
     /*Declaramos un metodo que retorna un contenedor que puede o no tener un objeto Producto
      * que se busca por su ID.
      * */
     Optional<Producto> porId(Long id);
 
+    /*Declaramos un metodo que retorna un contenedor que puede o no tener un objeto Producto
+     * que se busca por su código de barras.
+     * */
+    Optional<Producto> porCodigo(String codigo);
+
+    /*Declaramos un metodo que retorna los productos encontrados para varios IDs a la vez
+     * (mapa ID -> producto), por ejemplo para revisar los precios y el stock de un carrito.
+     * */
+    Map<Long, Producto> porIds(Collection<Long> ids);
+
     void guardar(Producto producto);
+
+    /*Declaramos un metodo que inserta varios productos nuevos en un solo lote y retorna
+     * las filas rechazadas (posición en la lista, mensaje de error).
+     * */
+    Map<Integer, String> guardarLote(List<Producto> productos);
+
     void eliminar(Long id);
 
     //Mostrar una lista de categorias
@@ -33,4 +56,9 @@ public interface ProductoService {
     //Obtenemos una categoria por su id
     Optional<Categoria> porIdCategoria(Long id);
 
+    /*Declaramos un metodo que busca productos activos por texto (nombre, descripción, código y
+     * categoría) y retorna los "limite" más relevantes, del más al menos relevante.
+     * */
+    List<Producto> buscar(String consulta, int limite);
+
 }
@@ -3,7 +3,7 @@ package services;
 /*
  * Autor: Byron Melo
  * Fecha: 19/11/2025
- * Versión: 1.0
+ * Versión: 1.3
  * Descripción:
  * Esta clase implementa la interfaz ProductoService y actúa como una capa de
  * servicio dentro de la arquitectura del sistema. Su función principal es
@@ -15,21 +15,47 @@ package services;
  *
  * El servicio utiliza un objeto ProductoRepositoryJdbcImplement para ejecutar
  * las operaciones CRUD y de consulta asociadas a la entidad Producto.
+ * Ese repositorio se envuelve con ProductoRepositoryCacheImplement para que las
+ * lecturas del catálogo se respondan desde una caché compartida por todas las peticiones.
+ *
+ * El servicio no tiene estado propio de la petición: se crea una sola vez en
+ * AplicacionListener y se comparte entre todos los servlets y peticiones.
+ *
+ * Cada metodo ejecuta su acceso a datos en una UnidadTrabajo: la transacción se confirma
+ * y la conexión vuelve al pool antes de que el servlet genere la vista.
+ *
+ * Versión 1.1: buscar(...) responde la búsqueda por texto desde IndiceProductos, en memoria y
+ * sin consultar la base de datos. El repositorio se envuelve además con
+ * ProductoRepositoryIndiceImplement, que mantiene el índice al día con cada modificación.
+ *
+ * Versión 1.2: porCodigo(...) busca un producto por su código de barras (cajas con lector).
+ * En un acierto de IndiceCodigos y de la caché no se consulta la base de datos.
+ *
+ * Versión 1.3: porIds(...) obtiene varios productos a la vez: los que no están en la caché se
+ * consultan juntos con "IN (...)" en lugar de una consulta por producto.
  */
 
 import models.Categoria;
 import models.Producto;
-import repositorio.CategoriaRepositoryJdbcImplement;
-import repositorio.ProductoRepositoryJdbcImplement;
+import repositorio.CatalogoCategorias;
+import repositorio.IndiceCodigos;
+import repositorio.IndiceProductos;
+import repositorio.ProductoRepository;
 import repositorio.Repository;
+import util.UnidadTrabajo;
 
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class ProductoServiceJdbcImpl implements ProductoService {
 
+    // Filas por viaje al cargar el índice de búsqueda con el cursor
+    private static final int FILAS_CARGA_INDICE = 1000;
+
     /**
      * Repositorio encargado de ejecutar las operaciones CRUD
      * directamente en la base de datos mediante JDBC.
@@ -37,20 +63,20 @@ public class ProductoServiceJdbcImpl implements ProductoService {
      * Este atributo permite que la clase de servicio se mantenga separada
      * de la implementación concreta del acceso a datos.
      */
-    private Repository<Producto> repositoryJdbc;
-    private Repository<Categoria> repositoryCategoriaJdbc;
+    private final ProductoRepository repositoryJdbc;
+    private final Repository<Categoria> repositoryCategoriaJdbc;
 
     /**
-     * Constructor que recibe la conexión a la base de datos.
-     * La conexión se utiliza para inicializar la instancia del repositorio.
-     * Esto asegura que tanto el servicio como el repositorio compartan la
-     * misma conexión dentro del flujo de ejecución.
+     * Constructor que recibe los repositorios que utilizará el servicio.
+     * Los repositorios no guardan una conexión: la toman de ConexionContexto en cada
+     * operación, por eso el servicio puede ser compartido por todas las peticiones.
      *
-     * @param connection Conexión activa hacia la base de datos.
+     * @param repositoryJdbc Repositorio de productos (normalmente con caché).
+     * @param repositoryCategoriaJdbc Repositorio de categorías.
      */
-    public ProductoServiceJdbcImpl(Connection connection) {
-        this.repositoryJdbc = new ProductoRepositoryJdbcImplement(connection);
-        this.repositoryCategoriaJdbc = new CategoriaRepositoryJdbcImplement(connection);
+    public ProductoServiceJdbcImpl(ProductoRepository repositoryJdbc, Repository<Categoria> repositoryCategoriaJdbc) {
+        this.repositoryJdbc = repositoryJdbc;
+        this.repositoryCategoriaJdbc = repositoryCategoriaJdbc;
     }
 
     /**
@@ -65,7 +91,25 @@ public class ProductoServiceJdbcImpl implements ProductoService {
     @Override
     public List<Producto> listar() {
         try {
-            return repositoryJdbc.listar();
+            return UnidadTrabajo.ejecutar(repositoryJdbc::listar);
+        } catch (SQLException throwables) {
+            // Convierte la excepción SQL a una excepción de servicio.
+            throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
+        }
+    }
+
+    /**
+     * Obtiene una página de productos ordenados por ID, empezando después de "despuesDe".
+     * Permite mostrar el catálogo por partes sin cargar todos los productos en memoria.
+     *
+     * @param despuesDe ID del último producto de la página anterior (null para la primera página).
+     * @param limite Número máximo de productos de la página.
+     * @return Lista de productos de la página.
+     */
+    @Override
+    public List<Producto> listar(Long despuesDe, int limite) {
+        try {
+            return UnidadTrabajo.ejecutar(() -> repositoryJdbc.listar(despuesDe, limite));
         } catch (SQLException throwables) {
             // Convierte la excepción SQL a una excepción de servicio.
             throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
@@ -84,7 +128,7 @@ public class ProductoServiceJdbcImpl implements ProductoService {
     @Override
     public Optional<Producto> porId(Long id) {
         try {
-            return Optional.ofNullable(repositoryJdbc.porId(id));
+            return Optional.ofNullable(UnidadTrabajo.ejecutar(() -> repositoryJdbc.porId(id)));
         } catch (SQLException throwables) {
             // Convierte la excepción SQL a una excepción de servicio.
             throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
@@ -103,7 +147,29 @@ public class ProductoServiceJdbcImpl implements ProductoService {
     @Override
     public void guardar(Producto producto) {
         try{
-            repositoryJdbc.guardar(producto);
+            UnidadTrabajo.ejecutar(() -> {
+                repositoryJdbc.guardar(producto);
+                return null;
+            });
+        } catch (SQLException throwables) {
+            // Convierte la excepción SQL a una excepción de servicio.
+            throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
+        }
+    }
+
+    /**
+     * Inserta varios productos nuevos con un lote JDBC.
+     * Las filas que MySQL rechaza no detienen el lote: se retornan con su mensaje
+     * para que el controlador las incluya en el reporte de la importación.
+     *
+     * @param productos Productos nuevos ya validados.
+     * @return Mapa (posición en la lista, mensaje de error) de las filas rechazadas.
+     * @throws ServiceJbdcException Si ocurre un error que impide procesar el lote.
+     */
+    @Override
+    public Map<Integer, String> guardarLote(List<Producto> productos) {
+        try {
+            return UnidadTrabajo.ejecutar(() -> repositoryJdbc.guardarLote(productos));
         } catch (SQLException throwables) {
             // Convierte la excepción SQL a una excepción de servicio.
             throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
@@ -120,7 +186,10 @@ public class ProductoServiceJdbcImpl implements ProductoService {
     @Override
     public void eliminar(Long id) {
         try{
-            repositoryJdbc.eliminar(id);
+            UnidadTrabajo.ejecutar(() -> {
+                repositoryJdbc.eliminar(id);
+                return null;
+            });
         }catch (SQLException throwables){
             // Convierte la excepción SQL a una excepción de servicio.
             throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
@@ -129,15 +198,17 @@ public class ProductoServiceJdbcImpl implements ProductoService {
 
     /**
      * Obtiene la lista completa de todas las categorías disponibles.
-     * Utiliza el repositorio de Categoría para acceder a la base de datos.
+     * Las categorías se leen de la copia en memoria CatalogoCategorias; solo si todavía
+     * no se cargaron (por ejemplo si la BD no estaba disponible al iniciar) se utiliza
+     * el repositorio de Categoría para cargarlas.
      *
-     * @return Lista de objetos Categoria.
+     * @return Lista inmutable de objetos Categoria.
      * @throws ServiceJbdcException Si ocurre un error al obtener las categorías.
      */
     @Override
     public List<Categoria> ListaCategoria() {
         try{
-            return repositoryCategoriaJdbc.listar();
+            return catalogoCategorias().listar();
         }catch (SQLException throwables){
             // Convierte la excepción SQL a una excepción de servicio.
             throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
@@ -147,7 +218,8 @@ public class ProductoServiceJdbcImpl implements ProductoService {
     /**
      * Busca una categoría por su ID y la devuelve como Optional.
      * Permite obtener una categoría específica para ser utilizada, por ejemplo,
-     * al crear o actualizar un Producto.
+     * al crear o actualizar un Producto. La búsqueda se hace en el mapa por ID de
+     * CatalogoCategorias, sin viajar a la base de datos.
      *
      * @param id Identificador de la categoría a consultar.
      * @return Optional que contiene la Categoría si existe o vacío si no se encuentra.
@@ -156,10 +228,100 @@ public class ProductoServiceJdbcImpl implements ProductoService {
     @Override
     public Optional<Categoria> porIdCategoria(Long id) {
         try{
-            return Optional.ofNullable(repositoryCategoriaJdbc.porId(id));
+            return Optional.ofNullable(catalogoCategorias().porId(id));
         }catch(SQLException throwables){
             // Convierte la excepción SQL a una excepción de servicio.
             throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Busca un producto por su código de barras y lo devuelve como Optional.
+     * El repositorio con caché resuelve el código con IndiceCodigos y la caché por ID; solo
+     * si el código no se conoce consulta la base de datos por el índice único de producto.codigo.
+     *
+     * @param codigo Código de barras del producto.
+     * @return Optional que contiene el producto si existe o vacío si no se encuentra.
+     */
+    @Override
+    public Optional<Producto> porCodigo(String codigo) {
+        try {
+            return Optional.ofNullable(UnidadTrabajo.ejecutar(() -> repositoryJdbc.porCodigo(codigo)));
+        } catch (SQLException throwables) {
+            // Convierte la excepción SQL a una excepción de servicio.
+            throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
+        }
+    }
+
+    /**
+     * Busca varios productos por su ID en una sola unidad de trabajo. Los que están en la caché
+     * no se consultan y los demás se traen en bloques "IN (...)".
+     *
+     * @param ids Identificadores de los productos.
+     * @return Mapa ID -> producto de los productos encontrados (los inexistentes no aparecen).
+     */
+    @Override
+    public Map<Long, Producto> porIds(Collection<Long> ids) {
+        try {
+            return UnidadTrabajo.ejecutar(() -> repositoryJdbc.porIds(ids));
+        } catch (SQLException throwables) {
+            // Convierte la excepción SQL a una excepción de servicio.
+            throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
+        }
+    }
+
+    /**
+     * Busca productos activos por texto en el índice invertido en memoria (IndiceProductos).
+     * Las palabras se comparan sin tildes ni mayúsculas y la última también como prefijo,
+     * para sugerir productos mientras el usuario escribe.
+     *
+     * @param consulta Texto a buscar.
+     * @param limite Número máximo de resultados.
+     * @return Productos encontrados (ID, nombre, código, categoría y precio), del más al menos relevante.
+     * @throws ServiceJbdcException Si el índice no estaba cargado y no se pudo cargar.
+     */
+    @Override
+    public List<Producto> buscar(String consulta, int limite) {
+        try {
+            return indiceProductos().buscar(consulta, limite);
+        } catch (SQLException throwables) {
+            // Convierte la excepción SQL a una excepción de servicio.
+            throw new ServiceJbdcException(throwables.getMessage(), throwables.getCause());
+        }
+    }
+
+    /*
+     * Retorna el índice de búsqueda, cargándolo con un recorrido con cursor si aún no existe
+     * (por ejemplo si la BD no estaba disponible al iniciar).
+     */
+    private IndiceProductos indiceProductos() throws SQLException {
+        IndiceProductos indice = IndiceProductos.getInstancia();
+        if (!indice.isCargado()) {
+            synchronized (indice) {
+                if (!indice.isCargado()) {
+                    UnidadTrabajo.ejecutar(() -> {
+                        try (Stream<Producto> productos = repositoryJdbc.stream(FILAS_CARGA_INDICE)) {
+                            indice.cargar(productos.peek(IndiceCodigos.getInstancia()::registrar));
+                        }
+                        return null;
+                    });
+                }
+            }
+        }
+        return indice;
+    }
+
+    /*
+     * Retorna la copia en memoria de las categorías, cargándola si aún no existe.
+     */
+    private CatalogoCategorias catalogoCategorias() throws SQLException {
+        CatalogoCategorias catalogo = CatalogoCategorias.getInstancia();
+        if (!catalogo.isCargado()) {
+            UnidadTrabajo.ejecutar(() -> {
+                catalogo.recargar(repositoryCategoriaJdbc);
+                return null;
+            });
+        }
+        return catalogo;
+    }
+}
@@ -0,0 +1,164 @@
+package services;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Clase que contiene las reglas de validación de un producto. Antes estas
+ * reglas estaban dentro de ProductoFormServlet; ahora se comparten entre el formulario
+ * (un producto a la vez) y la importación masiva (una fila de CSV o JSON a la vez).
+ *
+ * Los datos se reciben como texto a través de una función que, dado el nombre de un campo
+ * ("nombre", "categoria", "stock", ...), retorna su valor: en el formulario es
+ * req::getParameter y en la importación es el mapa de columnas de la fila.
+ * */
+import models.Categoria;
+import models.Producto;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+public class ProductoValidador {
+
+    // Formato de las fechas de elaboración y caducidad
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private ProductoValidador() {
+    }
+
+    /**
+     * Valida los campos recibidos y los copia en el producto indicado.
+     *
+     * @param campo    Función que retorna el valor (texto) de un campo dado su nombre.
+     * @param producto Producto donde se guardan los valores convertidos.
+     * @return Mapa de errores (campo, mensaje); vacío si todos los campos son válidos.
+     */
+    public static Map<String, String> validar(Function<String, String> campo, Producto producto) {
+        // 1. Captura de los campos
+        String nombre = campo.apply("nombre");
+
+        // Captura y parseo del ID de la categoría, manejando errores de formato.
+        Long categoriaId;
+        try {
+            categoriaId = Long.parseLong(campo.apply("categoria"));
+        } catch (NumberFormatException | NullPointerException e) {
+            // Si es nulo o no es número, se asigna 0L para la validación.
+            categoriaId = 0L;
+        }
+
+        // Captura y parseo del stock, manejando errores de formato.
+        Integer stock;
+        try {
+            stock = Integer.valueOf(campo.apply("stock"));
+        } catch (NumberFormatException | NullPointerException e) {
+            // Si es nulo o no es número, se asigna 0 para la validación.
+            stock = 0;
+        }
+
+        // El precio se captura como String inicialmente para manejo de decimales y validación.
+        String precioParam = campo.apply("precio");
+        Double precio = null; // Inicializado a null para validación.
+
+        String descripcion = campo.apply("descripcion");
+        String codigo = campo.apply("codigo");
+        // Las fechas también se capturan como String.
+        String fecha_elaboracion = campo.apply("fecha_elaboracion");
+        String fecha_caducidad = campo.apply("fecha_caducidad");
+
+        // 2. Validación de Datos (Almacenamiento de Errores)
+        // Se crea un mapa para almacenar los errores de validación.
+        Map<String, String> errores = new HashMap<>();
+
+        // Validación: Nombre no puede ser nulo o vacío.
+        if (nombre == null || nombre.isBlank()) {
+            errores.put("nombre", "El nombre no puede estar vacío");
+        }
+
+        // Validación: Categoría debe ser seleccionada (ID > 0).
+        if (categoriaId == 0L) {
+            errores.put("categoria", "La categoría no puede estar vacía");
+        }
+
+        // Validación: Stock debe ser mayor a 0 (asumiendo que 0 significa que no se ingresó un valor válido).
+        if (stock == 0) {
+            errores.put("stock", "El stock no puede estar vacío");
+        }
+
+        // Validación compleja para Precio.
+        if (precioParam == null || precioParam.trim().isEmpty()) {
+            errores.put("precio", "El precio no puede estar vacío");
+        } else {
+            try {
+                // Manejo de decimales: reemplaza comas por puntos antes de parsear.
+                precioParam = precioParam.trim().replace(",", ".");
+                precio = Double.valueOf(precioParam);
+                // Validación: Precio debe ser positivo.
+                if (precio <= 0) {
+                    errores.put("precio", "El precio debe ser mayor que 0");
+                }
+            } catch (Exception e) {
+                // Si falla la conversión a Double.
+                errores.put("precio", "El precio es un número inválido");
+            }
+        }
+
+        // Validación: Código no puede ser nulo o vacío.
+        if (codigo == null || codigo.isBlank()) {
+            errores.put("codigo", "El código no puede estar vacío");
+        }
+
+        // Validación: Fecha de Elaboración no puede ser nula o vacía.
+        if (fecha_elaboracion == null || fecha_elaboracion.isBlank()) {
+            errores.put("fecha_elaboracion", "La fecha de elaboración no puede estar vacía");
+        }
+
+        // Validación: Fecha de Caducidad no puede ser nula o vacía.
+        if (fecha_caducidad == null || fecha_caducidad.isBlank()) {
+            errores.put("fecha_caducidad", "La fecha de caducidad no puede estar vacía");
+        }
+
+        // 3. Conversión de Fechas y ID
+        LocalDate fechaElaboracion, fechaCaducidad;
+        try {
+            // Intenta convertir las fechas de String a LocalDate con el formato esperado.
+            fechaElaboracion = LocalDate.parse(fecha_elaboracion, FORMATO_FECHA);
+            fechaCaducidad = LocalDate.parse(fecha_caducidad, FORMATO_FECHA);
+        } catch (DateTimeParseException | NullPointerException e) {
+            // Si el formato es incorrecto, se asignan nulos (la validación de campos vacíos ya se hizo).
+            fechaElaboracion = null;
+            fechaCaducidad = null;
+            errores.putIfAbsent("fecha_elaboracion", "Las fechas deben tener el formato yyyy-MM-dd");
+        }
+
+        // Captura del ID (si es una edición), o 0L si es nuevo.
+        Long id;
+        try {
+            id = Long.parseLong(campo.apply("id"));
+        } catch (NumberFormatException | NullPointerException e) {
+            id = 0L;
+        }
+
+        // 4. Copia de los valores al Producto
+        producto.setId(id);
+        producto.setNombre(nombre);
+
+        // Se crea el objeto Categoria solo con el ID capturado.
+        Categoria categoria = new Categoria();
+        categoria.setId(categoriaId);
+
+        producto.setCategoria(categoria);
+        producto.setStock(stock);
+        producto.setDescripcion(descripcion);
+        producto.setCodigo(codigo);
+        producto.setFechaElaboracion(fechaElaboracion);
+        producto.setFechaCaducidad(fechaCaducidad);
+        if (precio != null) {
+            producto.setPrecio(precio);
+        }
+
+        return errores;
+    }
+}
@@ -0,0 +1,24 @@
+package services;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Excepción de servicio que indica que una compra no se pudo confirmar
+ * porque un producto del carrito no tiene stock suficiente. Guarda el ID del producto
+ * para que el controlador pueda informar al usuario cuál es.
+ * */
+
+public class StockInsuficienteException extends ServiceJbdcException {
+
+    private final Long productoId;
+
+    public StockInsuficienteException(String message, Long productoId) {
+        super(message);
+        this.productoId = productoId;
+    }
+
+    // Retorna el ID del producto sin stock suficiente
+    public Long getProductoId() {
+        return productoId;
+    }
+}
@@ -0,0 +1,209 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Archivo local de facturas PDF direccionado por contenido. Cada factura se guarda
+ * en disco con el nombre de su clave: el hash SHA-256 de las líneas y totales del carrito.
+ * Dos carritos con el mismo contenido tienen la misma clave, así una factura que se vuelve a
+ * descargar se envía directamente desde el disco en lugar de generar otra vez el PDF.
+ * La clave también se usa como ETag de la respuesta.
+ *
+ * El tamaño total del archivo está acotado: al superar el máximo se eliminan las facturas
+ * usadas hace más tiempo (LRU). Al iniciar se cargan las facturas que ya existían en el
+ * directorio, ordenadas por su fecha de modificación.
+ * */
+import models.DetalleCarro;
+import models.ItemCarro;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+public class ArchivoFacturas {
+
+    private static final Logger LOG = Logger.getLogger(ArchivoFacturas.class.getName());
+
+    /*
+     * Versión del formato de la factura. Se incluye en la clave: si cambia el diseño del PDF
+     * (FacturaRenderer) se incrementa y las facturas anteriores dejan de usarse.
+     */
+    private static final String VERSION_FORMATO = "1";
+    private static final String EXTENSION = ".pdf";
+
+    private final Path directorio;
+    private final long maximoBytes;
+    // Índice clave -> tamaño en bytes, en orden de acceso (el primero es el menos usado)
+    private final LinkedHashMap<String, Long> indice = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * @param directorio Directorio donde se guardan las facturas (se crea si no existe).
+     * @param maximoBytes Tamaño máximo total de las facturas guardadas.
+     */
+    public ArchivoFacturas(Path directorio, long maximoBytes) throws IOException {
+        this.directorio = Files.createDirectories(directorio);
+        this.maximoBytes = maximoBytes;
+        try (Stream<Path> archivos = Files.list(this.directorio)) {
+            archivos.filter(p -> p.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(ArchivoFacturas::fechaModificacion))
+                    .forEach(p -> {
+                        String nombre = p.getFileName().toString();
+                        long tamanio = tamanio(p);
+                        indice.put(nombre.substring(0, nombre.length() - EXTENSION.length()), tamanio);
+                        totalBytes += tamanio;
+                    });
+        }
+        desalojar();
+    }
+
+    /**
+     * Calcula la clave de la factura de un carrito: SHA-256 (en hexadecimal) de cada línea
+     * (ID, nombre, precio y cantidad del producto) y de los totales.
+     */
+    public static String clave(DetalleCarro carro) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder linea = new StringBuilder(128).append(VERSION_FORMATO).append('\n');
+        sha.update(linea.toString().getBytes(StandardCharsets.UTF_8));
+        for (ItemCarro item : carro.getItem()) {
+            linea.setLength(0);
+            linea.append(item.getProducto().getId()).append('|')
+                    .append(item.getProducto().getNombre()).append('|')
+                    .append(item.getProducto().getPrecio()).append('|')
+                    .append(item.getCantidad()).append('\n');
+            sha.update(linea.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        linea.setLength(0);
+        linea.append(carro.getSubtotal()).append('|').append(carro.getSubtotalIva()).append('|')
+                .append(carro.getTotal());
+        sha.update(linea.toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    /**
+     * Busca la factura con la clave indicada y la marca como usada recientemente.
+     * @return Ruta del archivo, o null si no está en el archivo.
+     */
+    public Path buscar(String clave) {
+        synchronized (indice) {
+            if (indice.get(clave) == null) {
+                return null;
+            }
+        }
+        Path archivo = ruta(clave);
+        if (!Files.exists(archivo)) {
+            // Alguien eliminó el archivo del disco: se quita del índice
+            quitar(clave);
+            return null;
+        }
+        return archivo;
+    }
+
+    /**
+     * Guarda una factura. Se escribe primero en un archivo temporal y luego se renombra,
+     * así otra petición nunca lee un archivo a medio escribir.
+     * @return Ruta del archivo guardado.
+     */
+    public Path guardar(String clave, byte[] pdf) throws IOException {
+        Path archivo = ruta(clave);
+        Path temporal = Files.createTempFile(directorio, clave, ".tmp");
+        try {
+            Files.write(temporal, pdf);
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        synchronized (indice) {
+            Long anterior = indice.put(clave, (long) pdf.length);
+            totalBytes += pdf.length - (anterior != null ? anterior : 0);
+        }
+        desalojar();
+        return archivo;
+    }
+
+    // Tamaño total (bytes) de las facturas guardadas
+    public long getTotalBytes() {
+        synchronized (indice) {
+            return totalBytes;
+        }
+    }
+
+    // Número de facturas guardadas
+    public int getCantidad() {
+        synchronized (indice) {
+            return indice.size();
+        }
+    }
+
+    /*
+     * Elimina las facturas menos usadas hasta que el total no supere el máximo.
+     */
+    private void desalojar() {
+        while (true) {
+            String clave;
+            synchronized (indice) {
+                if (totalBytes <= maximoBytes || indice.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<String, Long>> it = indice.entrySet().iterator();
+                Map.Entry<String, Long> masAntigua = it.next();
+                clave = masAntigua.getKey();
+                totalBytes -= masAntigua.getValue();
+                it.remove();
+            }
+            try {
+                Files.deleteIfExists(ruta(clave));
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "No se pudo eliminar la factura " + clave, e);
+            }
+        }
+    }
+
+    private void quitar(String clave) {
+        synchronized (indice) {
+            Long tamanio = indice.remove(clave);
+            if (tamanio != null) {
+                totalBytes -= tamanio;
+            }
+        }
+    }
+
+    private Path ruta(String clave) {
+        return directorio.resolve(clave + EXTENSION);
+    }
+
+    private static FileTime fechaModificacion(Path archivo) {
+        try {
+            return Files.getLastModifiedTime(archivo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long tamanio(Path archivo) {
+        try {
+            return Files.size(archivo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Clase principal que mide la búsqueda por texto de IndiceProductos con un catálogo
+ * sintético (por defecto un millón de productos, sin base de datos). Los nombres combinan
+ * palabras en español con tildes, las descripciones usan un vocabulario de varios miles de
+ * palabras y cada producto tiene un código único. Se miden varios tipos de consulta:
+ * - palabra: una palabra completa ("leche ").
+ * - dos palabras: dos palabras completas ("leche entera ").
+ * - prefijo: lo que se escribe en el buscador, la última palabra incompleta ("leche en").
+ * - código: el código completo de un producto.
+ * Para cada tipo se reportan p50, p99 y la latencia máxima en microsegundos, además del
+ * tiempo de carga del índice y de las actualizaciones incrementales.
+ *
+ * Uso: java -Xmx2g -cp ... util.BenchmarkBusqueda [productos] [consultas]
+ * */
+import models.Categoria;
+import models.Producto;
+import repositorio.IndiceProductos;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.stream.LongStream;
+
+public class BenchmarkBusqueda {
+
+    private static final String[] CATEGORIAS = {"Lácteos", "Bebidas", "Panadería", "Limpieza", "Higiene",
+            "Carnes", "Frutas", "Verduras", "Congelados", "Snacks", "Cereales", "Enlatados", "Condimentos",
+            "Mascotas", "Bebés", "Papelería", "Electrónica", "Ferretería", "Jardín", "Farmacia"};
+    private static final String[] PRODUCTOS = {"leche", "yogur", "queso", "mantequilla", "jugo", "agua",
+            "gaseosa", "café", "té", "pan", "galletas", "detergente", "jabón", "champú", "pasta", "arroz",
+            "azúcar", "sal", "aceite", "atún", "sardinas", "maíz", "fréjol", "lenteja", "avena", "harina",
+            "salsa", "mayonesa", "mostaza", "vinagre", "chocolate", "caramelos", "papas", "plátano", "manzana",
+            "piña", "limón", "tomate", "cebolla", "pimiento", "pollo", "res", "cerdo", "jamón", "salchicha",
+            "pañales", "toallas", "servilletas", "cuaderno", "lápiz", "pilas", "foco", "cable", "tornillo"};
+    private static final String[] ADJETIVOS = {"entera", "descremada", "deslactosada", "natural", "orgánico",
+            "integral", "light", "clásico", "familiar", "económico", "premium", "tradicional", "líquido",
+            "en polvo", "extra", "suave", "fuerte", "dulce", "picante", "ahumado", "fresco", "congelado",
+            "tropical", "andino", "artesanal", "clásica", "especial", "mediano", "grande", "pequeño"};
+    private static final String[] SILABAS = {"ma", "pe", "ri", "lo", "su", "ta", "ne", "ci", "do", "ra",
+            "vo", "gu", "li", "be", "to", "ca", "mi", "sa", "pa", "co", "ña", "ló", "ré", "tí", "nú"};
+
+    public static void main(String[] args) {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int consultas = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        Random random = new Random(42);
+        String[] vocabulario = vocabulario(random, 5000);
+
+        System.out.println("==============================================");
+        System.out.println("Benchmark búsqueda: " + total + " productos, " + consultas + " consultas por tipo");
+        System.out.println("==============================================\n");
+
+        IndiceProductos indice = new IndiceProductos();
+        long inicio = System.nanoTime();
+        indice.cargar(LongStream.rangeClosed(1, total).mapToObj(id -> producto(id, vocabulario)));
+        System.out.printf("Carga del índice: %.1f s (%d productos)%n", (System.nanoTime() - inicio) / 1e9,
+                indice.tamanio());
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.printf("Memoria usada: %d MB%n%n", (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+
+        medir("palabra", indice, consultas, i -> PRODUCTOS[random.nextInt(PRODUCTOS.length)] + " ");
+        medir("dos palabras", indice, consultas, i -> PRODUCTOS[random.nextInt(PRODUCTOS.length)] + " "
+                + ADJETIVOS[random.nextInt(ADJETIVOS.length)] + " ");
+        medir("prefijo", indice, consultas, i -> {
+            String adjetivo = ADJETIVOS[random.nextInt(ADJETIVOS.length)];
+            return PRODUCTOS[random.nextInt(PRODUCTOS.length)] + " "
+                    + adjetivo.substring(0, Math.min(adjetivo.length(), 2 + random.nextInt(3)));
+        });
+        medir("prefijo solo", indice, consultas, i -> {
+            String palabra = vocabulario[random.nextInt(vocabulario.length)];
+            return palabra.substring(0, Math.min(palabra.length(), 3));
+        });
+        medir("código", indice, consultas, i -> "SKU-" + (1 + random.nextInt(total)));
+
+        // Actualizaciones incrementales (copia al escribir de las listas afectadas)
+        int actualizaciones = 2000;
+        long[] tiempos = new long[actualizaciones];
+        for (int i = 0; i < actualizaciones; i++) {
+            Producto producto = producto(1 + random.nextInt(total), vocabulario);
+            producto.setNombre(producto.getNombre() + " edición especial");
+            long antes = System.nanoTime();
+            indice.indexar(producto);
+            tiempos[i] = System.nanoTime() - antes;
+        }
+        reportar("actualizar", tiempos);
+    }
+
+    private static void medir(String nombre, IndiceProductos indice, int consultas, IntFunction<String> generador) {
+        List<String> textos = new ArrayList<>(consultas);
+        for (int i = 0; i < consultas; i++) {
+            textos.add(generador.apply(i));
+        }
+        // Calentamiento del compilador JIT
+        for (int i = 0; i < Math.min(consultas, 5000); i++) {
+            indice.buscar(textos.get(i), 10);
+        }
+        long[] latencias = new long[consultas];
+        long resultados = 0;
+        for (int i = 0; i < consultas; i++) {
+            long inicio = System.nanoTime();
+            resultados += indice.buscar(textos.get(i), 10).size();
+            latencias[i] = System.nanoTime() - inicio;
+        }
+        reportar(nombre + " (" + String.format("%.1f", (double) resultados / consultas) + " res.)", latencias);
+    }
+
+    private static void reportar(String nombre, long[] latencias) {
+        Arrays.sort(latencias);
+        System.out.printf("%-28s p50=%8.1f us  p99=%8.1f us  máx=%9.1f us%n", nombre,
+                latencias[latencias.length / 2] / 1000.0, latencias[(int) (latencias.length * 0.99)] / 1000.0,
+                latencias[latencias.length - 1] / 1000.0);
+    }
+
+    // Producto sintético, siempre el mismo para el mismo ID
+    private static Producto producto(long id, String[] vocabulario) {
+        Random random = new Random(id);
+        Producto producto = new Producto();
+        producto.setId(id);
+        producto.setNombre(PRODUCTOS[random.nextInt(PRODUCTOS.length)] + " "
+                + ADJETIVOS[random.nextInt(ADJETIVOS.length)] + " " + vocabulario[random.nextInt(vocabulario.length)]);
+        StringBuilder descripcion = new StringBuilder("Descripción:");
+        for (int i = 0; i < 8; i++) {
+            descripcion.append(' ').append(vocabulario[random.nextInt(vocabulario.length)]);
+        }
+        producto.setDescripcion(descripcion.toString());
+        producto.setCodigo("SKU-" + id);
+        int categoria = random.nextInt(CATEGORIAS.length);
+        producto.setCategoria(new Categoria((long) categoria + 1, CATEGORIAS[categoria], null, 1));
+        producto.setPrecio(0.25 + random.nextInt(5000) / 100.0);
+        producto.setStock(random.nextInt(500));
+        producto.setFechaElaboracion(LocalDate.of(2026, 1, 1));
+        producto.setFechaCaducidad(LocalDate.of(2027, 1, 1));
+        producto.setCondicion(1);
+        return producto;
+    }
+
+    // Palabras inventadas de 2 a 4 sílabas (con tildes y eñes)
+    private static String[] vocabulario(Random random, int tamanio) {
+        String[] palabras = new String[tamanio];
+        for (int i = 0; i < tamanio; i++) {
+            StringBuilder palabra = new StringBuilder();
+            int silabas = 2 + random.nextInt(3);
+            for (int s = 0; s < silabas; s++) {
+                palabra.append(SILABAS[random.nextInt(SILABAS.length)]);
+            }
+            palabras[i] = palabra.toString();
+        }
+        return palabras;
+    }
+}
@@ -0,0 +1,139 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Clase principal (microbenchmark) que mide el costo de las operaciones del
+ * carrito de compras con carritos grandes, como los de clientes mayoristas (B2B) con
+ * miles de líneas. Compara DetalleCarro (mapa por ID de producto con subtotal acumulado)
+ * con la implementación anterior basada en una lista (contains() + stream().filter() al
+ * agregar y un recorrido completo en cada cálculo de totales), reproducida aquí como referencia.
+ *
+ * Para cada tamaño de carrito se mide:
+ * - llenar el carrito agregando cada producto dos veces (la segunda vez suma la cantidad),
+ * - mostrar el carrito: getSubtotal() + getSubtotalIva() + getTotal(), como carro.jsp y la factura.
+ *
+ * No necesita base de datos.
+ * Uso: java -cp ... util.BenchmarkCarro [repeticiones]
+ * */
+import models.DetalleCarro;
+import models.ItemCarro;
+import models.Producto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class BenchmarkCarro {
+
+    private static final int[] TAMANIOS = {100, 1000, 5000, 10000};
+
+    public static void main(String[] args) {
+        int repeticiones = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        System.out.println("==============================================");
+        System.out.println("Benchmark del carrito de compras (" + repeticiones + " repeticiones, mejor tiempo)");
+        System.out.println("==============================================\n");
+
+        for (int tamanio : TAMANIOS) {
+            Producto[] productos = productos(tamanio);
+            // Calentamiento del JIT
+            for (int i = 0; i < 3; i++) {
+                llenarMapa(productos);
+                llenarLista(productos);
+            }
+
+            long mapa = Long.MAX_VALUE, lista = Long.MAX_VALUE;
+            long totalesMapa = Long.MAX_VALUE, totalesLista = Long.MAX_VALUE;
+            double control = 0;
+            for (int r = 0; r < repeticiones; r++) {
+                long inicio = System.nanoTime();
+                DetalleCarro carro = llenarMapa(productos);
+                mapa = Math.min(mapa, System.nanoTime() - inicio);
+
+                inicio = System.nanoTime();
+                CarroLista carroLista = llenarLista(productos);
+                lista = Math.min(lista, System.nanoTime() - inicio);
+
+                inicio = System.nanoTime();
+                for (int i = 0; i < 1000; i++) {
+                    control += carro.getSubtotal() + carro.getSubtotalIva() + carro.getTotal();
+                }
+                totalesMapa = Math.min(totalesMapa, (System.nanoTime() - inicio) / 1000);
+
+                inicio = System.nanoTime();
+                for (int i = 0; i < 1000; i++) {
+                    control += carroLista.getSubtotal() + carroLista.getSubtotalIva() + carroLista.getTotal();
+                }
+                totalesLista = Math.min(totalesLista, (System.nanoTime() - inicio) / 1000);
+            }
+
+            System.out.printf("%6d líneas | llenar: mapa=%9.2f ms  lista=%9.2f ms | totales: mapa=%8.2f us  lista=%8.2f us%n",
+                    tamanio, mapa / 1e6, lista / 1e6, totalesMapa / 1e3, totalesLista / 1e3);
+            if (control == 42) {
+                System.out.println();
+            }
+        }
+    }
+
+    private static Producto[] productos(int cantidad) {
+        Producto[] productos = new Producto[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            Producto producto = new Producto();
+            producto.setId((long) i + 1);
+            producto.setPrecio(1 + (i % 100) * 0.25);
+            productos[i] = producto;
+        }
+        return productos;
+    }
+
+    private static DetalleCarro llenarMapa(Producto[] productos) {
+        DetalleCarro carro = new DetalleCarro();
+        for (int vuelta = 0; vuelta < 2; vuelta++) {
+            for (Producto producto : productos) {
+                carro.addItemCarro(new ItemCarro(1, producto));
+            }
+        }
+        return carro;
+    }
+
+    private static CarroLista llenarLista(Producto[] productos) {
+        CarroLista carro = new CarroLista();
+        for (int vuelta = 0; vuelta < 2; vuelta++) {
+            for (Producto producto : productos) {
+                carro.addItemCarro(new ItemCarro(1, producto));
+            }
+        }
+        return carro;
+    }
+
+    /*
+     * Implementación anterior de DetalleCarro (versión 1.0), solo como referencia de comparación.
+     */
+    private static class CarroLista {
+        private final List<ItemCarro> items = new ArrayList<>();
+
+        void addItemCarro(ItemCarro itemCarro) {
+            if (items.contains(itemCarro)) {
+                Optional<ItemCarro> optionalItemCarro = items.stream()
+                        .filter(i -> i.equals(itemCarro))
+                        .findAny();
+                optionalItemCarro.ifPresent(i -> i.setCantidad(i.getCantidad() + 1));
+            } else {
+                items.add(itemCarro);
+            }
+        }
+
+        double getSubtotal() {
+            return items.stream().mapToDouble(ItemCarro::getSubtotal).sum();
+        }
+
+        double getSubtotalIva() {
+            return getSubtotal() * 0.15;
+        }
+
+        double getTotal() {
+            return getSubtotal() + getSubtotalIva();
+        }
+    }
+}
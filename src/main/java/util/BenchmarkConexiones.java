@@ -0,0 +1,86 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Clase principal que compara el rendimiento de obtener una conexión con
+ * DriverManager en cada operación (comportamiento anterior de ConexionBDD) contra
+ * pedirla prestada al pool de conexiones. Cada operación simula una petición HTTP:
+ * obtiene una conexión, ejecuta "SELECT 1" y la cierra.
+ *
+ * Uso (con el servidor MySQL local levantado):
+ *   java -cp ... util.BenchmarkConexiones [hilos] [segundosPorEscenario]
+ * */
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BenchmarkConexiones {
+
+    // Operación que entrega una conexión (con o sin pool)
+    @FunctionalInterface
+    interface FuenteConexion {
+        Connection obtener() throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        System.out.println("==============================================");
+        System.out.println("Benchmark de conexiones: " + hilos + " hilos, " + segundos + " s por escenario");
+        System.out.println("==============================================\n");
+
+        // Calentamiento del driver y del pool antes de medir
+        ejecutar("calentamiento", ConexionBDD::abrirSinPool, hilos, 1);
+        ejecutar("calentamiento", ConexionBDD::getConnection, hilos, 1);
+
+        double sinPool = ejecutar("DriverManager (antes)", ConexionBDD::abrirSinPool, hilos, segundos);
+        double conPool = ejecutar("PoolConexiones (después)", ConexionBDD::getConnection, hilos, segundos);
+
+        System.out.printf("%nMejora: %.1fx peticiones por segundo%n", conPool / sinPool);
+        ConexionBDD.cerrar();
+    }
+
+    /*
+     * Ejecuta la operación en varios hilos durante el tiempo indicado y
+     * retorna las operaciones por segundo alcanzadas.
+     * */
+    private static double ejecutar(String nombre, FuenteConexion fuente, int hilos, int segundos)
+            throws InterruptedException {
+        LongAdder operaciones = new LongAdder();
+        LongAdder errores = new LongAdder();
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+
+        List<Thread> trabajadores = new ArrayList<>();
+        for (int i = 0; i < hilos; i++) {
+            Thread t = new Thread(() -> {
+                while (System.nanoTime() < fin) {
+                    try (Connection conn = fuente.obtener();
+                         Statement stmt = conn.createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                        rs.next();
+                        operaciones.increment();
+                    } catch (SQLException e) {
+                        errores.increment();
+                    }
+                }
+            });
+            trabajadores.add(t);
+            t.start();
+        }
+        for (Thread t : trabajadores) {
+            t.join();
+        }
+
+        double porSegundo = operaciones.sum() / (double) segundos;
+        if (!"calentamiento".equals(nombre)) {
+            System.out.printf("%-26s %10.0f peticiones/s  (errores: %d)%n", nombre, porSegundo, errores.sum());
+        }
+        return porSegundo;
+    }
+}
@@ -0,0 +1,93 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Clase principal que mide cuántas facturas PDF por segundo genera FacturaRenderer
+ * para carritos de 10, 100 y 10000 líneas, y la memoria retenida durante la generación.
+ * Cada factura se escribe en un OutputStream que descarta los bytes, para medir solo iText y
+ * no la red ni el disco. Para cada tamaño se hace un calentamiento y luego se generan facturas
+ * durante un tiempo fijo.
+ *
+ * No necesita base de datos.
+ * Uso: java -cp ... util.BenchmarkFactura [segundosPorEscenario]
+ * */
+import com.itextpdf.text.DocumentException;
+import models.DetalleCarro;
+import models.ItemCarro;
+import models.Producto;
+
+import java.io.OutputStream;
+
+public class BenchmarkFactura {
+
+    private static final int[] LINEAS = {10, 100, 10000};
+
+    public static void main(String[] args) throws DocumentException {
+        double segundos = args.length > 0 ? Double.parseDouble(args[0]) : 5;
+
+        System.out.println("==============================================");
+        System.out.println("Benchmark de facturas PDF (" + segundos + " s por escenario)");
+        System.out.println("==============================================\n");
+
+        for (int lineas : LINEAS) {
+            DetalleCarro carro = carro(lineas);
+            ContadorBytes salida = new ContadorBytes();
+
+            // Calentamiento del JIT
+            long finCalentamiento = System.nanoTime() + (long) (segundos * 0.2e9);
+            while (System.nanoTime() < finCalentamiento) {
+                FacturaRenderer.escribir(carro, salida);
+            }
+
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long memoriaInicial = runtime.totalMemory() - runtime.freeMemory();
+            long memoriaMaxima = memoriaInicial;
+
+            int facturas = 0;
+            salida.bytes = 0;
+            long inicio = System.nanoTime();
+            long fin = inicio + (long) (segundos * 1e9);
+            while (System.nanoTime() < fin) {
+                FacturaRenderer.escribir(carro, salida);
+                facturas++;
+                memoriaMaxima = Math.max(memoriaMaxima, runtime.totalMemory() - runtime.freeMemory());
+            }
+            double transcurrido = (System.nanoTime() - inicio) / 1e9;
+
+            System.out.printf("%6d líneas: %10.1f facturas/s  %8.1f KB por factura  heap máx. +%.1f MB%n",
+                    lineas, facturas / transcurrido, salida.bytes / 1024.0 / facturas,
+                    (memoriaMaxima - memoriaInicial) / 1048576.0);
+        }
+    }
+
+    private static DetalleCarro carro(int lineas) {
+        DetalleCarro carro = new DetalleCarro();
+        for (int i = 0; i < lineas; i++) {
+            Producto producto = new Producto();
+            producto.setId((long) i + 1);
+            producto.setNombre("Producto de prueba " + (i + 1));
+            producto.setPrecio(1 + (i % 100) * 0.35);
+            carro.addItemCarro(new ItemCarro(1 + i % 5, producto));
+        }
+        return carro;
+    }
+
+    /*
+     * OutputStream que solo cuenta los bytes recibidos.
+     */
+    private static class ContadorBytes extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
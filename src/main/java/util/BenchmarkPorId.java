@@ -0,0 +1,59 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Clase principal que compara la latencia de ProductoRepositoryJdbcImplement.porId()
+ * con y sin la caché de sentencias preparadas del driver (cachePrepStmts/useServerPrepStmts).
+ * Para cada escenario se abre una conexión, se ejecuta porId muchas veces sobre IDs existentes
+ * y se muestran la latencia promedio, p50 y p99 en microsegundos.
+ *
+ * Uso (con el servidor MySQL local levantado y productos cargados):
+ *   java -cp ... util.BenchmarkPorId [iteraciones] [idMaximo]
+ * */
+import repositorio.ProductoRepositoryJdbcImplement;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class BenchmarkPorId {
+
+    public static void main(String[] args) throws SQLException {
+        int iteraciones = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long idMaximo = args.length > 1 ? Long.parseLong(args[1]) : 10;
+
+        System.out.println("==============================================");
+        System.out.println("Benchmark porId: " + iteraciones + " consultas por escenario");
+        System.out.println("==============================================\n");
+
+        medir("Sin caché de sentencias", false, iteraciones, idMaximo);
+        medir("Con caché de sentencias", true, iteraciones, idMaximo);
+    }
+
+    private static void medir(String nombre, boolean cacheSentencias, int iteraciones, long idMaximo)
+            throws SQLException {
+        ProductoRepositoryJdbcImplement repository = new ProductoRepositoryJdbcImplement();
+        long[] latencias = new long[iteraciones];
+
+        try (Connection conn = ConexionBDD.abrirSinPool(cacheSentencias)) {
+            ConexionContexto.asociar(conn);
+            // Calentamiento: el primer prepareStatement de cada SQL siempre se analiza en el servidor
+            for (int i = 0; i < 1000; i++) {
+                repository.porId(1 + (i % idMaximo));
+            }
+            for (int i = 0; i < iteraciones; i++) {
+                long inicio = System.nanoTime();
+                repository.porId(1 + (i % idMaximo));
+                latencias[i] = System.nanoTime() - inicio;
+            }
+        } finally {
+            ConexionContexto.desasociar();
+        }
+
+        Arrays.sort(latencias);
+        double promedio = Arrays.stream(latencias).average().orElse(0) / 1000.0;
+        System.out.printf("%-26s promedio=%8.1f us  p50=%8.1f us  p99=%8.1f us%n", nombre, promedio,
+                latencias[iteraciones / 2] / 1000.0, latencias[(int) (iteraciones * 0.99)] / 1000.0);
+    }
+}
@@ -0,0 +1,118 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Bitácora asíncrona y acotada. Los hilos que atienden peticiones solo dejan el
+ * evento en un búfer circular (ring buffer) de tamaño fijo y siguen; un único hilo demonio lo
+ * escribe en el Logger. Así un log lento (disco, consola) nunca retrasa una petición.
+ *
+ * - Varios productores y un consumidor: cada productor reserva una posición con un CAS sobre
+ *   el contador de escritura y publica el evento en esa ranura; no hay candados.
+ * - Si el búfer está lleno el evento se descarta (y se cuenta) en lugar de bloquear o crecer.
+ * - El evento se convierte a texto (toString) en el hilo consumidor, no en el de la petición.
+ * */
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class BitacoraAsincrona implements AutoCloseable {
+
+    // Tiempo máximo que el consumidor duerme si no hay eventos
+    private static final long ESPERA_NANOS = 100_000_000L;
+
+    private final Logger logger;
+    private final Level nivel;
+    private final int capacidad;
+    private final int mascara;
+    private final AtomicReferenceArray<Object> ranuras;
+    // Siguiente posición a reservar por los productores
+    private final AtomicLong escritura = new AtomicLong();
+    // Siguiente posición a leer (solo la modifica el consumidor)
+    private volatile long lectura;
+    private final LongAdder descartados = new LongAdder();
+    private final Thread consumidor;
+    private volatile boolean cerrada;
+
+    /**
+     * @param nombre Nombre del hilo consumidor.
+     * @param logger Logger donde se escriben los eventos.
+     * @param nivel Nivel con el que se escriben.
+     * @param capacidad Número máximo de eventos pendientes (se redondea a potencia de dos).
+     */
+    public BitacoraAsincrona(String nombre, Logger logger, Level nivel, int capacidad) {
+        this.logger = logger;
+        this.nivel = nivel;
+        this.capacidad = Integer.highestOneBit(Math.max(capacidad - 1, 1)) << 1;
+        this.mascara = this.capacidad - 1;
+        this.ranuras = new AtomicReferenceArray<>(this.capacidad);
+        this.consumidor = new Thread(this::consumir, nombre);
+        this.consumidor.setDaemon(true);
+        this.consumidor.start();
+    }
+
+    /**
+     * Deja el evento para que el hilo consumidor lo escriba. No bloquea.
+     * @return false si el búfer estaba lleno y el evento se descartó.
+     */
+    public boolean registrar(Object evento) {
+        long posicion;
+        do {
+            posicion = escritura.get();
+            if (cerrada || posicion - lectura >= capacidad) {
+                descartados.increment();
+                return false;
+            }
+        } while (!escritura.compareAndSet(posicion, posicion + 1));
+        ranuras.set((int) (posicion & mascara), evento);
+        LockSupport.unpark(consumidor);
+        return true;
+    }
+
+    // Eventos descartados porque el búfer estaba lleno
+    public long getDescartados() {
+        return descartados.sum();
+    }
+
+    private void consumir() {
+        while (!cerrada || lectura < escritura.get()) {
+            long posicion = lectura;
+            int ranura = (int) (posicion & mascara);
+            Object evento = ranuras.get(ranura);
+            if (evento == null) {
+                if (posicion < escritura.get()) {
+                    // Un productor reservó la posición pero todavía no publica el evento
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(this, ESPERA_NANOS);
+                }
+                continue;
+            }
+            ranuras.set(ranura, null);
+            lectura = posicion + 1;
+            try {
+                // Se registra a nombre del logger, no del hilo consumidor
+                logger.logp(nivel, logger.getName(), null, evento.toString());
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "No se pudo escribir un evento de la bitácora", e);
+            }
+        }
+    }
+
+    /**
+     * Escribe los eventos pendientes y detiene el hilo consumidor (espera como máximo un segundo).
+     */
+    @Override
+    public void close() {
+        cerrada = true;
+        LockSupport.unpark(consumidor);
+        try {
+            consumidor.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
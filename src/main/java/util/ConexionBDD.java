@@ -2,19 +2,35 @@ package util;
 /*
  * Autor: Byron Melo
  * Fecha: 14/11/2025
- * Versión: 1.0
+ * Versión: 1.5
  * Descripción: Clase que permite crear una conexión centralizada y global a la base de datos
  * "sistemaventas" en MySQL.
+ * Versión 1.1: las conexiones ya no se abren con DriverManager en cada petición, sino que se
+ * prestan desde un pool acotado (PoolConexiones) expuesto como javax.sql.DataSource.
+ * Versión 1.2: se activa la caché de sentencias preparadas del lado del servidor.
+ * Versión 1.3: se agrega un segundo pool opcional para una réplica de lectura de MySQL,
+ * utilizado por las peticiones GET/HEAD (ver ConexionFilter).
+ * Versión 1.4: con -Dsistemaventas.sql.instrumentar=true las conexiones de los pools se
+ * envuelven con SqlInstrumentado (log de consultas lentas y totales por sentencia).
+ * Versión 1.5: esReplica(...) indica si un DataSource es el pool de la réplica.
  * */
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.function.UnaryOperator;
 
 public class ConexionBDD {
     /*Esta es la cadena de dirección, que es la dirección de en donde se encuentra
      el driver de la base de datos
     */
-    private static String url = "jdbc:mysql://localhost:3306/siscompraventa?serverTimezone=UTC";
+    /*useCursorFetch=true permite que las consultas con setFetchSize lean las filas por bloques
+     desde un cursor del servidor en lugar de cargar todo el resultado en memoria
+     rewriteBatchedStatements=true hace que un lote de INSERT (addBatch/executeBatch) se envíe
+     como un solo "INSERT ... VALUES (...),(...)" en lugar de una sentencia por fila
+    */
+    private static String url = "jdbc:mysql://localhost:3306/siscompraventa?serverTimezone=UTC&useCursorFetch=true" +
+            "&rewriteBatchedStatements=true";
     /*
      * Definimos variables privadas y estáticas (permiten utilizar directamente las variables sin crear instancias
      * pero como son private solo se pueden usar en esta clase.
@@ -24,11 +40,149 @@ public class ConexionBDD {
     private static String password="misifu";
 
     /*
-     *metodo de la clase que retorna un objeto de tipo connection, lanza excepciones SQL y
-     * necesita 3 parámetros para establecer la conexión (url, username, password).
+     * Caché de sentencias preparadas de MySQL Connector/J:
+     * - useServerPrepStmts: MySQL analiza (parsea) y planifica cada sentencia una sola vez.
+     * - cachePrepStmts: al cerrar un PreparedStatement el driver lo guarda en una caché LRU
+     *   por conexión, y el siguiente prepareStatement con el mismo SQL lo reutiliza.
+     * Como el pool mantiene abiertas las conexiones físicas, la caché sobrevive entre peticiones.
+     * Se puede desactivar con -Dsistemaventas.jdbc.cacheSentencias=false
+     * */
+    private static final String PARAMETROS_CACHE_SENTENCIAS =
+            "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048";
+    private static final boolean CACHE_SENTENCIAS =
+            Boolean.parseBoolean(System.getProperty("sistemaventas.jdbc.cacheSentencias", "true"));
+
+    /*
+     * Instrumentación de las consultas (desactivada por defecto): mide cada sentencia, escribe
+     * en el log las que superan -Dsistemaventas.sql.lentaMs y publica los totales por
+     * sentencia en /metrics/sql. Ver SqlInstrumentado.
+     * */
+    private static final boolean INSTRUMENTAR_SQL = Boolean.getBoolean("sistemaventas.sql.instrumentar");
+
+    // Envoltura de cada conexión física del pool según la configuración
+    private static UnaryOperator<Connection> envoltura() {
+        return INSTRUMENTAR_SQL ? SqlInstrumentado::envolver : UnaryOperator.identity();
+    }
+
+    // Indica si las consultas se están midiendo con SqlInstrumentado
+    public static boolean isSqlInstrumentado() {
+        return INSTRUMENTAR_SQL;
+    }
+
+    /*
+     * Retorna la cadena de conexión con o sin los parámetros de la caché de sentencias.
+     * */
+    private static String url(boolean cacheSentencias) {
+        return url(url, cacheSentencias);
+    }
+
+    private static String url(String base, boolean cacheSentencias) {
+        return cacheSentencias ? base + PARAMETROS_CACHE_SENTENCIAS : base;
+    }
+
+    /*
+     * Réplica de lectura (opcional). Si se define la propiedad del sistema
+     * -Dsistemaventas.replica.url=jdbc:mysql://replica:3306/siscompraventa?serverTimezone=UTC&useCursorFetch=true
+     * las peticiones de solo lectura (GET/HEAD) leen desde la réplica con un pool propio del
+     * mismo tamaño que el principal; las escrituras siempre van al servidor principal.
+     * Si no se define, las lecturas también usan el servidor principal.
+     * El usuario y la contraseña son los mismos del servidor principal.
+     * */
+    private static final String REPLICA_URL = System.getProperty("sistemaventas.replica.url");
+
+    /*
+     * Parámetros del pool de conexiones. Se pueden modificar al arrancar el servidor con
+     * propiedades del sistema, por ejemplo: -Dsistemaventas.pool.maximo=20
+     * - minimo: conexiones que se mantienen abiertas aunque no haya tráfico.
+     * - maximo: límite de conexiones prestadas al mismo tiempo.
+     * - esperaMs: tiempo máximo que una petición espera por una conexión libre.
+     * - inactividadMs: tiempo tras el cual una conexión ociosa se cierra (sobre el mínimo).
+     * - fugaMs: tiempo tras el cual una conexión prestada se reporta como posible fuga.
+     * */
+    private static final int POOL_MINIMO = Integer.getInteger("sistemaventas.pool.minimo", 2);
+    private static final int POOL_MAXIMO = Integer.getInteger("sistemaventas.pool.maximo", 10);
+    private static final long POOL_ESPERA_MS = Long.getLong("sistemaventas.pool.esperaMs", 5000L);
+    private static final long POOL_INACTIVIDAD_MS = Long.getLong("sistemaventas.pool.inactividadMs", 300000L);
+    private static final long POOL_FUGA_MS = Long.getLong("sistemaventas.pool.fugaMs", 60000L);
+
+    /*
+     * Pool único para toda la aplicación. Se crea de forma perezosa la primera vez
+     * que se pide una conexión (patrón holder), así la clase se puede cargar sin
+     * que exista todavía el servidor MySQL.
+     * */
+    private static class Holder {
+        private static final PoolConexiones POOL = new PoolConexiones(url(CACHE_SENTENCIAS), username, password,
+                POOL_MINIMO, POOL_MAXIMO, POOL_ESPERA_MS, POOL_INACTIVIDAD_MS, POOL_FUGA_MS, envoltura());
+    }
+
+    /*
+     * Pool de la réplica de lectura, también creado de forma perezosa.
+     * */
+    private static class HolderReplica {
+        private static final PoolConexiones POOL = new PoolConexiones(url(REPLICA_URL, CACHE_SENTENCIAS), username,
+                password, POOL_MINIMO, POOL_MAXIMO, POOL_ESPERA_MS, POOL_INACTIVIDAD_MS, POOL_FUGA_MS, envoltura());
+    }
+
+    /*
+     * Retorna el DataSource (pool de conexiones) de la aplicación.
+     * */
+    public static DataSource getDataSource() {
+        return Holder.POOL;
+    }
+
+    /*
+     * Retorna el DataSource para las lecturas: el pool de la réplica si está configurada,
+     * o el pool principal si no lo está.
+     * */
+    public static DataSource getDataSourceLectura() {
+        return REPLICA_URL != null ? HolderReplica.POOL : Holder.POOL;
+    }
+
+    // Indica si se configuró una réplica de lectura
+    public static boolean hayReplica() {
+        return REPLICA_URL != null;
+    }
+
+    // Indica si el DataSource es el pool de la réplica (y no el servidor principal)
+    public static boolean esReplica(DataSource dataSource) {
+        return REPLICA_URL != null && dataSource == HolderReplica.POOL;
+    }
+
+    /*
+     *metodo de la clase que retorna un objeto de tipo connection prestado por el pool, lanza
+     * excepciones SQL. Al cerrar la conexión (close) esta regresa al pool en lugar de cerrarse.
      * */
     public static Connection getConnection() throws SQLException{
-        return DriverManager.getConnection(url, username, password);
+        return Holder.POOL.getConnection();
+    }
+
+    /*
+     * Abre una conexión directa con DriverManager, sin pasar por el pool.
+     * Solo se usa para comparar el rendimiento contra el pool (BenchmarkConexiones).
+     * */
+    static Connection abrirSinPool() throws SQLException {
+        return abrirSinPool(CACHE_SENTENCIAS);
+    }
+
+    /*
+     * Abre una conexión directa indicando si se usa la caché de sentencias preparadas.
+     * Solo se usa en las pruebas de rendimiento (BenchmarkPorId).
+     * */
+    static Connection abrirSinPool(boolean cacheSentencias) throws SQLException {
+        return DriverManager.getConnection(url(cacheSentencias), username, password);
+    }
+
+    /*
+     * Cierra las conexiones del pool, se invoca al detener la aplicación.
+     * */
+    public static void cerrar() {
+        Holder.POOL.close();
+        if (REPLICA_URL != null) {
+            HolderReplica.POOL.close();
+        }
+        if (INSTRUMENTAR_SQL) {
+            SqlInstrumentado.cerrar();
+        }
     }
     //Para el día lunes crear una clase de java para comprobar si la conexión fue exitosa o no
     //utilizando una clase main.
@@ -0,0 +1,59 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Contexto de la conexión de la petición actual. El filtro ConexionFilter
+ * asocia la conexión (perezosa) al hilo que atiende la petición y los repositorios la
+ * obtienen desde aquí, de esta manera los servicios y repositorios pueden ser objetos
+ * únicos (singleton) compartidos por todas las peticiones, sin guardar una conexión
+ * propia ni crearse de nuevo en cada petición.
+ *
+ * Se utiliza ThreadLocal porque cada petición se atiende completa en un mismo hilo del
+ * contenedor. La asociación siempre debe eliminarse al terminar la petición (finally),
+ * porque los hilos del contenedor se reutilizan.
+ * */
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public final class ConexionContexto {
+
+    private static final ThreadLocal<Connection> ACTUAL = new ThreadLocal<>();
+
+    private ConexionContexto() {
+    }
+
+    /**
+     * Asocia la conexión al hilo actual.
+     */
+    public static void asociar(Connection conn) {
+        ACTUAL.set(conn);
+    }
+
+    /**
+     * Elimina la conexión asociada al hilo actual.
+     */
+    public static void desasociar() {
+        ACTUAL.remove();
+    }
+
+    /**
+     * Retorna la conexión asociada al hilo actual, o null si no hay ninguna.
+     */
+    public static Connection getActual() {
+        return ACTUAL.get();
+    }
+
+    /**
+     * Retorna la conexión asociada al hilo actual.
+     * @throws SQLException si la petición actual no tiene una conexión asociada
+     *                      (por ejemplo, una ruta excluida en ConexionFilter).
+     */
+    public static Connection get() throws SQLException {
+        Connection conn = ACTUAL.get();
+        if (conn == null) {
+            throw new SQLException("No hay una conexión asociada a la petición actual");
+        }
+        return conn;
+    }
+}
@@ -0,0 +1,243 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.6
+ * Descripción: Conexión "perezosa" (lazy) a la base de datos. Entrega un proxy de
+ * java.sql.Connection que no pide una conexión real al pool hasta que alguien la usa
+ * de verdad (por ejemplo al invocar prepareStatement o createStatement).
+ * De esta manera las peticiones que nunca ejecutan SQL no hacen ningún trabajo JDBC.
+ *
+ * La conexión real se obtiene con el autocommit desactivado, para que el filtro
+ * ConexionFilter pueda confirmar (commit) o deshacer (rollback) la transacción.
+ *
+ * Versión 1.1: una misma petición puede pedir y liberar la conexión real varias veces
+ * (una por cada unidad de trabajo, ver UnidadTrabajo). Se mide el tiempo total que la
+ * petición retuvo una conexión del pool y el tiempo que pasó realmente accediendo a datos.
+ * Versión 1.2: la conexión puede ser de solo lectura (setReadOnly(true)); el driver inicia
+ * las transacciones como "READ ONLY" y MySQL rechaza cualquier escritura.
+ * Versión 1.3: nuevaDelMismoOrigen() crea otra conexión perezosa con el mismo pool y modo,
+ * para las tareas que una petición ejecuta en paralelo en otros hilos (TareasParalelas).
+ * Versión 1.4: se registra en Metricas cuánto tarda el pool en entregar la conexión real y
+ * cuánto tardan el commit y el rollback.
+ * Versión 1.5: isReplica() y leeDeReplica() indican si las lecturas del hilo actual van a la
+ * réplica, que puede estar atrasada (ver CacheProductos.generacionLectura).
+ * Versión 1.6: se quita nuevaDelMismoOrigen(); ninguna petición ejecuta consultas en paralelo.
+ * */
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class ConexionPerezosa implements InvocationHandler {
+
+    // Histogramas compartidos por todas las conexiones perezosas
+    private static final Metricas.Histograma OBTENER = Metricas.histograma("sistemaventas_conexion_obtener_segundos",
+            "Tiempo que espera una petición para obtener una conexión real del pool");
+    private static final Metricas.Familia<Metricas.Histograma> TRANSACCIONES = Metricas.histogramas(
+            "sistemaventas_transaccion_segundos", "Duración del commit o rollback de una transacción", "operacion");
+    private static final Metricas.Histograma COMMIT = TRANSACCIONES.de("commit");
+    private static final Metricas.Histograma ROLLBACK = TRANSACCIONES.de("rollback");
+
+    // Origen de las conexiones reales (el pool de la aplicación)
+    private final DataSource dataSource;
+    // Proxy que se entrega a servlets y repositorios
+    private final Connection proxy;
+    // Indica si la conexión real se marca como de solo lectura
+    private final boolean soloLectura;
+    // Conexión real, es null mientras nadie haya ejecutado SQL
+    private Connection real;
+    // Número de veces que se pidió una conexión real al pool
+    private int prestamos;
+    // Momento (System.nanoTime) en que se pidió la conexión real actual
+    private long inicioPrestamo;
+    // Tiempo total que se retuvo una conexión real, en nanosegundos
+    private long retenidaNanos;
+    // Tiempo total dentro de unidades de trabajo (acceso a datos), en nanosegundos
+    private long operacionesNanos;
+
+    public ConexionPerezosa(DataSource dataSource) {
+        this(dataSource, false);
+    }
+
+    /**
+     * @param dataSource Pool del que se pide la conexión real.
+     * @param soloLectura true para que la conexión real sea de solo lectura.
+     */
+    public ConexionPerezosa(DataSource dataSource, boolean soloLectura) {
+        this.dataSource = dataSource;
+        this.soloLectura = soloLectura;
+        this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, this);
+    }
+
+    // Retorna el proxy que se coloca como atributo "conn" del request
+    public Connection getConexion() {
+        return proxy;
+    }
+
+    /**
+     * Retorna el manejador de la conexión si "conn" es un proxy creado por esta clase,
+     * o null si es una conexión normal.
+     */
+    public static ConexionPerezosa de(Connection conn) {
+        if (conn != null && Proxy.isProxyClass(conn.getClass())
+                && Proxy.getInvocationHandler(conn) instanceof ConexionPerezosa perezosa) {
+            return perezosa;
+        }
+        return null;
+    }
+
+    // Indica si durante la petición se llegó a pedir una conexión real
+    public boolean isUsada() {
+        return prestamos > 0;
+    }
+
+    // Indica si la conexión es de solo lectura
+    public boolean isSoloLectura() {
+        return soloLectura;
+    }
+
+    // Indica si la conexión se pide al pool de la réplica de lectura
+    public boolean isReplica() {
+        return ConexionBDD.esReplica(dataSource);
+    }
+
+    /**
+     * Indica si la conexión asociada al hilo actual (ConexionContexto) lee de la réplica.
+     */
+    public static boolean leeDeReplica() {
+        ConexionPerezosa perezosa = de(ConexionContexto.getActual());
+        return perezosa != null && perezosa.isReplica();
+    }
+
+    // Indica si en este momento se retiene una conexión real del pool
+    public boolean isAbierta() {
+        return real != null;
+    }
+
+    // Tiempo total que la petición retuvo una conexión del pool, en nanosegundos
+    public long getRetenidaNanos() {
+        return retenidaNanos + (real != null ? System.nanoTime() - inicioPrestamo : 0);
+    }
+
+    // Tiempo total que la petición pasó dentro de unidades de trabajo, en nanosegundos
+    public long getOperacionesNanos() {
+        return operacionesNanos;
+    }
+
+    // Suma la duración de una unidad de trabajo (la registra UnidadTrabajo)
+    void registrarOperacion(long nanos) {
+        operacionesNanos += nanos;
+    }
+
+    /**
+     * Confirma la transacción solo si se llegó a abrir una conexión real.
+     */
+    public void commit() throws SQLException {
+        if (real != null) {
+            long inicio = System.nanoTime();
+            try {
+                real.commit();
+            } finally {
+                COMMIT.registrarDesde(inicio);
+            }
+        }
+    }
+
+    /**
+     * Deshace la transacción solo si se llegó a abrir una conexión real.
+     */
+    public void rollback() throws SQLException {
+        if (real != null) {
+            long inicio = System.nanoTime();
+            try {
+                real.rollback();
+            } finally {
+                ROLLBACK.registrarDesde(inicio);
+            }
+        }
+    }
+
+    /**
+     * Devuelve la conexión real al pool (si existe). Después de liberar, un nuevo uso
+     * del proxy vuelve a pedir una conexión al pool.
+     */
+    public void liberar() throws SQLException {
+        if (real != null) {
+            Connection c = real;
+            real = null;
+            retenidaNanos += System.nanoTime() - inicioPrestamo;
+            c.close();
+        }
+    }
+
+    /*
+     * Pide la conexión real al pool la primera vez que se necesita.
+     */
+    private Connection real() throws SQLException {
+        if (real == null) {
+            long inicio = System.nanoTime();
+            Connection c = dataSource.getConnection();
+            OBTENER.registrarDesde(inicio);
+            try {
+                if (soloLectura) {
+                    c.setReadOnly(true);
+                }
+                c.setAutoCommit(false);
+            } catch (SQLException e) {
+                c.close();
+                throw e;
+            }
+            real = c;
+            prestamos++;
+            inicioPrestamo = System.nanoTime();
+        }
+        return real;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        /*
+         * Métodos que se pueden responder sin abrir una conexión real.
+         * El resto de métodos (prepareStatement, createStatement, etc.) sí la necesitan.
+         */
+        switch (method.getName()) {
+            case "close":
+                liberar();
+                return null;
+            case "isClosed":
+                return false;
+            case "getAutoCommit":
+                if (real == null) {
+                    return false;
+                }
+                break;
+            case "commit":
+                commit();
+                return null;
+            case "rollback":
+                if (args == null) {
+                    rollback();
+                    return null;
+                }
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "ConexionPerezosa[" + (real != null ? real : "sin abrir") + "]";
+            default:
+                break;
+        }
+        try {
+            return method.invoke(real(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.1
+ * Descripción: Eventos propios de Java Flight Recorder (JFR) de la aplicación. Quedan en la
+ * misma grabación que los eventos de la JVM (GC, muestras de CPU, bloqueos de monitores, E/S),
+ * así en JDK Mission Control se ve qué operación del negocio estaba en curso durante una pausa
+ * de GC o un pico de CPU:
+ * - sistemaventas.Repositorio: cada metodo de un repositorio (entidad, implementación, metodo,
+ *   filas retornadas, error y duración). Se agrega con medir(...), igual que Metricas.medir.
+ * - sistemaventas.Transaccion: la conexión de cada petición en ConexionFilter (solo lectura,
+ *   commit o rollback, tiempo que se retuvo la conexión y tiempo de acceso a datos).
+ * - sistemaventas.Carro: cada cambio del carrito (DetalleCarro): agregar, actualizar, eliminar.
+ * - sistemaventas.Factura: la generación de cada factura PDF en DescargarFacturaServlet.
+ *
+ * Si el evento no está activo en la grabación (o no hay grabación), isEnabled() retorna false
+ * y no se mide nada: solo se crea el objeto del evento, sin tomar tiempos ni llenar campos.
+ * Los campos solo se llenan si el evento supera el umbral (shouldCommit), así las operaciones
+ * rápidas no pagan el cálculo de las filas ni de los textos.
+ *
+ * La activación y los umbrales de cada evento están en src/main/resources/sistemaventas.jfc.
+ * Para grabar en producción:
+ * - -Dsistemaventas.jfr.archivo=/var/log/sistemaventas.jfr: al iniciar la aplicación se abre
+ *   una grabación con la configuración "default" de la JVM más sistemaventas.jfc, que guarda
+ *   las últimas -Dsistemaventas.jfr.maxMinutos=60 minutos y se escribe en el archivo al detener
+ *   la aplicación (o en cualquier momento con jcmd <pid> JFR.dump name=SistemaVentas).
+ * - O desde la JVM: -XX:StartFlightRecording:settings=default,settings=/ruta/sistemaventas.jfc
+ *   (el archivo queda en WEB-INF/classes/sistemaventas.jfc del WAR).
+ * Versión 1.1: desregistrar() quita los eventos de FlightRecorder al detener la aplicación;
+ * si no, FlightRecorder mantiene las clases de los eventos y, con ellas, el classloader del
+ * WAR después de un redespliegue.
+ * */
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class EventosJfr {
+
+    // Configuración de los eventos de la aplicación (en el classpath: WEB-INF/classes)
+    public static final String CONFIGURACION = "/sistemaventas.jfc";
+
+    private static final Logger LOG = Logger.getLogger(EventosJfr.class.getName());
+    private static final String ARCHIVO = System.getProperty("sistemaventas.jfr.archivo");
+    private static final long MAXIMO_MINUTOS = Long.getLong("sistemaventas.jfr.maxMinutos", 60L);
+
+    // Grabación abierta con iniciarGrabacion (null si no se pidió)
+    private static Recording grabacion;
+
+    static {
+        // Se registran al cargar la clase para que aparezcan en la grabación antes de su primer uso
+        FlightRecorder.register(Repositorio.class);
+        FlightRecorder.register(Transaccion.class);
+        FlightRecorder.register(Carro.class);
+        FlightRecorder.register(Factura.class);
+    }
+
+    private EventosJfr() {
+    }
+
+    @Name("sistemaventas.Repositorio")
+    @Label("Operación de repositorio")
+    @Description("Llamada a un metodo de un repositorio (caché, índice o JDBC)")
+    @Category({"SistemaVentas", "Datos"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static final class Repositorio extends Event {
+        @Label("Entidad")
+        public String entidad;
+        @Label("Implementación")
+        @Description("Clase del repositorio: muestra en qué capa (caché, índice, JDBC) se resolvió")
+        public String implementacion;
+        @Label("Metodo")
+        public String metodo;
+        @Label("Filas")
+        @Description("Registros retornados (-1 si el resultado es un Stream perezoso)")
+        public int filas;
+        @Label("Error")
+        public String error;
+    }
+
+    @Name("sistemaventas.Transaccion")
+    @Label("Transacción de la petición")
+    @Description("Conexión de una petición en ConexionFilter, desde que entra al filtro hasta que se libera")
+    @Category({"SistemaVentas", "Datos"})
+    @StackTrace(false)
+    @Threshold("10 ms")
+    public static final class Transaccion extends Event {
+        @Label("Metodo HTTP")
+        public String metodo;
+        @Label("URI")
+        public String uri;
+        @Label("Solo lectura")
+        public boolean soloLectura;
+        @Label("Resultado")
+        @Description("commit, rollback (error de base de datos) o excepcion (otro error del servlet)")
+        public String resultado;
+        @Label("Conexión retenida")
+        @Timespan(Timespan.NANOSECONDS)
+        public long retenida;
+        @Label("Acceso a datos")
+        @Timespan(Timespan.NANOSECONDS)
+        public long accesoDatos;
+    }
+
+    @Name("sistemaventas.Carro")
+    @Label("Cambio del carrito")
+    @Category({"SistemaVentas", "Carrito"})
+    @StackTrace(false)
+    public static final class Carro extends Event {
+        @Label("Operación")
+        @Description("agregar, actualizar o eliminar")
+        public String operacion;
+        @Label("ID del producto")
+        public long productoId;
+        @Label("Cantidad")
+        public int cantidad;
+        @Label("Líneas del carrito")
+        @Description("Productos distintos en el carrito después del cambio")
+        public int lineas;
+        @Label("Subtotal")
+        public double subtotal;
+    }
+
+    @Name("sistemaventas.Factura")
+    @Label("Generación de factura")
+    @Description("Generación de una factura PDF (DescargarFacturaServlet)")
+    @Category({"SistemaVentas", "Facturas"})
+    @StackTrace(false)
+    public static final class Factura extends Event {
+        @Label("Clave")
+        public String clave;
+        @Label("Líneas")
+        public int lineas;
+        @Label("Tamaño")
+        @DataAmount
+        public long bytes;
+        @Label("Error")
+        public String error;
+    }
+
+    /**
+     * Envuelve "objeto" con un proxy de la interfaz que emite un evento sistemaventas.Repositorio
+     * por cada metodo. "implementacion" es el nombre de la clase real (si objeto ya es un proxy,
+     * por ejemplo de Metricas.medir, su clase no dice nada).
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T medir(Class<T> interfaz, T objeto, String entidad, String implementacion) {
+        Map<Method, String> nombres = new HashMap<>();
+        for (Method metodo : interfaz.getMethods()) {
+            nombres.put(metodo, metodo.getName());
+        }
+
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            String nombre = nombres.get(metodo);
+            Repositorio evento = new Repositorio();
+            if (nombre == null || !evento.isEnabled()) {
+                // toString, equals, hashCode o evento inactivo: sin medir
+                return invocar(objeto, metodo, args);
+            }
+            Object resultado = null;
+            String error = null;
+            evento.begin();
+            try {
+                resultado = invocar(objeto, metodo, args);
+                return resultado;
+            } catch (Throwable e) {
+                error = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                evento.end();
+                if (evento.shouldCommit()) {
+                    evento.entidad = entidad;
+                    evento.implementacion = implementacion;
+                    evento.metodo = nombre;
+                    evento.filas = filas(resultado);
+                    evento.error = error;
+                    evento.commit();
+                }
+            }
+        };
+        return (T) Proxy.newProxyInstance(interfaz.getClassLoader(), new Class<?>[]{interfaz}, manejador);
+    }
+
+    /**
+     * Si se definió -Dsistemaventas.jfr.archivo, inicia una grabación continua con la
+     * configuración "default" de la JVM y los ajustes de sistemaventas.jfc.
+     * Un error al iniciarla se registra y la aplicación continúa sin grabar.
+     */
+    public static synchronized void iniciarGrabacion() {
+        if (ARCHIVO == null || grabacion != null) {
+            return;
+        }
+        try {
+            Map<String, String> ajustes = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+            ajustes.putAll(configuracion().getSettings());
+            Recording nueva = new Recording(ajustes);
+            nueva.setName("SistemaVentas");
+            nueva.setToDisk(true);
+            nueva.setMaxAge(Duration.ofMinutes(MAXIMO_MINUTOS));
+            nueva.setDestination(Path.of(ARCHIVO));
+            nueva.start();
+            grabacion = nueva;
+            LOG.info("Grabación JFR iniciada, se escribirá en " + ARCHIVO);
+        } catch (IOException | ParseException | RuntimeException e) {
+            LOG.log(Level.WARNING, "No se pudo iniciar la grabación JFR", e);
+        }
+    }
+
+    /**
+     * Detiene la grabación iniciada con iniciarGrabacion; al detenerse se escribe en el archivo.
+     */
+    public static synchronized void detenerGrabacion() {
+        if (grabacion == null) {
+            return;
+        }
+        try {
+            grabacion.stop();
+            LOG.info("Grabación JFR escrita en " + ARCHIVO);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "No se pudo escribir la grabación JFR", e);
+        } finally {
+            grabacion.close();
+            grabacion = null;
+        }
+    }
+
+    /**
+     * Quita los eventos de la aplicación de FlightRecorder. Se llama al detener la aplicación,
+     * después de detenerGrabacion.
+     */
+    public static void desregistrar() {
+        FlightRecorder.unregister(Repositorio.class);
+        FlightRecorder.unregister(Transaccion.class);
+        FlightRecorder.unregister(Carro.class);
+        FlightRecorder.unregister(Factura.class);
+    }
+
+    // Lee sistemaventas.jfc del classpath
+    private static Configuration configuracion() throws IOException, ParseException {
+        InputStream entrada = EventosJfr.class.getResourceAsStream(CONFIGURACION);
+        if (entrada == null) {
+            throw new IOException("No se encontró " + CONFIGURACION + " en el classpath");
+        }
+        try (Reader lector = new InputStreamReader(entrada, StandardCharsets.UTF_8)) {
+            return Configuration.create(lector);
+        }
+    }
+
+    // Número de registros de un resultado de repositorio
+    private static int filas(Object resultado) {
+        if (resultado == null) {
+            return 0;
+        }
+        if (resultado instanceof Collection<?> coleccion) {
+            return coleccion.size();
+        }
+        if (resultado instanceof Map<?, ?> mapa) {
+            return mapa.size();
+        }
+        if (resultado instanceof Optional<?> opcional) {
+            return opcional.isPresent() ? 1 : 0;
+        }
+        if (resultado instanceof AutoCloseable) {
+            // Stream: las filas se leen después, fuera de la llamada
+            return -1;
+        }
+        // Un registro o el ID generado de una inserción
+        return 1;
+    }
+
+    private static Object invocar(Object objeto, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(objeto, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
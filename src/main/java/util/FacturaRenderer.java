@@ -0,0 +1,165 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.1
+ * Descripción: Generador de la factura de compra en PDF (iText 5) a partir de un DetalleCarro.
+ * Antes el PDF se armaba dentro de DescargarFacturaServlet; ahora se reutiliza desde
+ * cualquier parte (servlet, archivo de facturas, pruebas de rendimiento).
+ *
+ * Optimizaciones:
+ * - Las fuentes y las celdas de encabezado se crean una sola vez (constantes) y se comparten
+ *   entre todas las facturas, en lugar de llamar a FontFactory.getFont() en cada celda.
+ *   Solo se leen, nunca se modifican, por eso se pueden usar desde varios hilos a la vez.
+ * - Los montos se formatean con formatearDinero(), que trabaja con centavos (enteros) en
+ *   lugar de String.format("%.2f"), mucho más costoso.
+ * - La tabla de productos se marca como incompleta (setComplete(false)) y se agrega al
+ *   documento cada FILAS_POR_BLOQUE filas: iText escribe esas filas en la salida y las
+ *   libera de memoria, así una factura de miles de líneas no mantiene toda la tabla en memoria.
+ *   El encabezado de la tabla se repite en cada página.
+ * Versión 1.1: la duración de cada factura se registra en Metricas (sistemaventas_factura_pdf_segundos).
+ * */
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+import models.DetalleCarro;
+import models.ItemCarro;
+
+import java.io.OutputStream;
+
+public final class FacturaRenderer {
+
+    // Número de filas que se acumulan antes de escribirlas en el documento
+    private static final int FILAS_POR_BLOQUE = 200;
+
+    // Fuentes compartidas por todas las facturas
+    private static final Font FUENTE_TITULO = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, BaseColor.BLUE);
+    private static final Font FUENTE_ENCABEZADO = FontFactory.getFont(FontFactory.HELVETICA_BOLD);
+    private static final Font FUENTE_CELDA = FontFactory.getFont(FontFactory.HELVETICA);
+    private static final Font FUENTE_TOTAL = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14);
+
+    // Duración de la generación de cada factura
+    private static final Metricas.Histograma DURACION = Metricas.histograma("sistemaventas_factura_pdf_segundos",
+            "Tiempo de generación de una factura PDF");
+
+    // Celdas de encabezado ya configuradas (PdfPTable.addCell copia la celda)
+    private static final String[] ENCABEZADOS = {"ID", "Producto", "Precio", "Cant.", "Subtotal"};
+    private static final PdfPCell[] CELDAS_ENCABEZADO = new PdfPCell[ENCABEZADOS.length];
+
+    static {
+        for (int i = 0; i < ENCABEZADOS.length; i++) {
+            PdfPCell celda = new PdfPCell(new Phrase(ENCABEZADOS[i], FUENTE_ENCABEZADO));
+            // Color de fondo gris para distinguir los encabezados
+            celda.setBackgroundColor(BaseColor.LIGHT_GRAY);
+            // Alinear texto al centro
+            celda.setHorizontalAlignment(Element.ALIGN_CENTER);
+            CELDAS_ENCABEZADO[i] = celda;
+        }
+    }
+
+    private FacturaRenderer() {
+    }
+
+    /**
+     * Genera la factura del carrito y la escribe en la salida indicada.
+     * La salida no se cierra si es la de la respuesta HTTP, el contenedor lo hace.
+     * @param carro Carrito con los productos de la compra.
+     * @param salida Destino del PDF (respuesta HTTP, archivo, memoria).
+     * @throws DocumentException Si iText no puede generar el documento.
+     */
+    public static void escribir(DetalleCarro carro, OutputStream salida) throws DocumentException {
+        long inicio = System.nanoTime();
+        try {
+            escribirDocumento(carro, salida);
+        } finally {
+            DURACION.registrarDesde(inicio);
+        }
+    }
+
+    private static void escribirDocumento(DetalleCarro carro, OutputStream salida) throws DocumentException {
+        Document documento = new Document();
+        PdfWriter writer = PdfWriter.getInstance(documento, salida);
+        // La salida la cierra quien la abrió (por ejemplo el contenedor)
+        writer.setCloseStream(false);
+        documento.open();
+
+        // Título centrado y una línea en blanco para separación visual
+        Paragraph titulo = new Paragraph("Factura de Compra", FUENTE_TITULO);
+        titulo.setAlignment(Element.ALIGN_CENTER);
+        documento.add(titulo);
+        documento.add(new Paragraph(" "));
+
+        // Tabla de productos con 5 columnas (ID, nombre, precio, cantidad, subtotal)
+        PdfPTable tabla = new PdfPTable(ENCABEZADOS.length);
+        tabla.setWidthPercentage(100);
+        tabla.setComplete(false);
+        for (PdfPCell celda : CELDAS_ENCABEZADO) {
+            tabla.addCell(celda);
+        }
+        tabla.setHeaderRows(1);
+
+        int filas = 0;
+        StringBuilder texto = new StringBuilder(16);
+        for (ItemCarro item : carro.getItem()) {
+            tabla.addCell(new Phrase(String.valueOf(item.getProducto().getId()), FUENTE_CELDA));
+            tabla.addCell(new Phrase(item.getProducto().getNombre(), FUENTE_CELDA));
+            tabla.addCell(new Phrase(formatearDinero(texto, item.getProducto().getPrecio()), FUENTE_CELDA));
+            tabla.addCell(new Phrase(String.valueOf(item.getCantidad()), FUENTE_CELDA));
+            tabla.addCell(new Phrase(formatearDinero(texto, item.getSubtotal()), FUENTE_CELDA));
+
+            // Cada bloque de filas se escribe y se libera de la tabla
+            if (++filas % FILAS_POR_BLOQUE == 0) {
+                documento.add(tabla);
+            }
+        }
+        tabla.setComplete(true);
+        documento.add(tabla);
+
+        // Sección de totales alineada a la derecha (Subtotal, IVA, Total)
+        Paragraph totales = new Paragraph();
+        totales.setAlignment(Element.ALIGN_RIGHT);
+        totales.setSpacingBefore(20);
+        totales.add(new Chunk("Subtotal: " + formatearDinero(texto, carro.getSubtotal()) + "\n"));
+        totales.add(new Chunk("IVA (15%): " + formatearDinero(texto, carro.getSubtotalIva()) + "\n"));
+        totales.add(new Chunk("Total a Pagar: " + formatearDinero(texto, carro.getTotal()), FUENTE_TOTAL));
+        documento.add(totales);
+
+        documento.close();
+    }
+
+    /**
+     * Formatea un monto como "$1234.56" (dos decimales, redondeo al centavo más cercano).
+     * Equivale a "$" + String.format("%.2f", monto) para los montos del carrito, pero sin
+     * analizar un patrón de formato en cada llamada.
+     */
+    public static String formatearDinero(double monto) {
+        return formatearDinero(new StringBuilder(16), monto);
+    }
+
+    /*
+     * Versión que reutiliza el StringBuilder recibido (se vacía antes de usarlo).
+     */
+    private static String formatearDinero(StringBuilder sb, double monto) {
+        sb.setLength(0);
+        long centavos = Math.round(monto * 100);
+        if (centavos < 0) {
+            sb.append('-');
+            centavos = -centavos;
+        }
+        long fraccion = centavos % 100;
+        sb.append('$').append(centavos / 100).append('.');
+        if (fraccion < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraccion).toString();
+    }
+}
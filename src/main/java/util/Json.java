@@ -0,0 +1,39 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Utilidades para escribir respuestas JSON a mano (la aplicación no usa una
+ * librería de JSON): convierte textos en cadenas JSON escapando los caracteres especiales.
+ * La usan ImportarProductosServlet (reporte de la importación) y BuscarProductosServlet.
+ * */
+public final class Json {
+
+    private Json() {
+    }
+
+    // Convierte un texto en una cadena JSON escapando comillas, barras y caracteres de control
+    public static String texto(String texto) {
+        if (texto == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(texto.length() + 2).append('"');
+        for (char c : texto.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
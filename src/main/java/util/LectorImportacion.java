@@ -0,0 +1,231 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Lector de filas para la importación masiva de productos. Lee el contenido
+ * línea por línea desde un BufferedReader (sin cargar el archivo completo en memoria) y
+ * retorna cada fila como un mapa (nombre del campo, valor en texto), el mismo formato que
+ * espera ProductoValidador.
+ *
+ * Formatos soportados:
+ * - CSV: la primera línea es la cabecera con los nombres de los campos, por ejemplo
+ *   nombre,categoria,stock,precio,descripcion,codigo,fecha_elaboracion,fecha_caducidad
+ *   Los valores pueden ir entre comillas dobles (para incluir comas) y una comilla dentro
+ *   de un valor se escribe doble (""). Cada fila debe ocupar una sola línea.
+ * - JSON-lines: un objeto JSON plano por línea, por ejemplo
+ *   {"nombre":"Arroz","categoria":1,"stock":10,"precio":1.25,...}
+ *   Solo se aceptan valores de texto, números, true/false o null (sin objetos anidados).
+ *
+ * Las líneas vacías se ignoran. Si una fila tiene un formato inválido se lanza
+ * IllegalArgumentException solo para esa fila; la lectura puede continuar con la siguiente.
+ * */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LectorImportacion {
+
+    public enum Formato { CSV, JSONL }
+
+    private final BufferedReader reader;
+    private final Formato formato;
+    // Nombres de las columnas (solo CSV), leídos de la cabecera
+    private List<String> cabecera;
+    // Número de la última línea leída (empieza en 1)
+    private int numeroLinea;
+
+    public LectorImportacion(BufferedReader reader, Formato formato) {
+        this.reader = reader;
+        this.formato = formato;
+    }
+
+    // Retorna el número de línea de la última fila leída, para el reporte de errores
+    public int getNumeroLinea() {
+        return numeroLinea;
+    }
+
+    /**
+     * Lee la siguiente fila.
+     * @return Mapa (campo, valor) de la fila, o null si ya no hay más filas.
+     * @throws IOException si ocurre un error al leer.
+     * @throws IllegalArgumentException si la fila tiene un formato inválido.
+     */
+    public Map<String, String> siguiente() throws IOException {
+        String linea;
+        do {
+            linea = reader.readLine();
+            if (linea == null) {
+                return null;
+            }
+            numeroLinea++;
+        } while (linea.isBlank());
+
+        if (formato == Formato.JSONL) {
+            return parsearJson(linea.trim());
+        }
+
+        if (cabecera == null) {
+            // La primera línea del CSV es la cabecera; el BOM de Excel se descarta
+            if (linea.startsWith("﻿")) {
+                linea = linea.substring(1);
+            }
+            cabecera = new ArrayList<>();
+            for (String columna : parsearCsv(linea)) {
+                cabecera.add(columna.trim().toLowerCase());
+            }
+            return siguiente();
+        }
+
+        List<String> valores = parsearCsv(linea);
+        if (valores.size() != cabecera.size()) {
+            throw new IllegalArgumentException("Se esperaban " + cabecera.size() + " columnas y se encontraron "
+                    + valores.size());
+        }
+        Map<String, String> fila = new HashMap<>();
+        for (int i = 0; i < valores.size(); i++) {
+            fila.put(cabecera.get(i), valores.get(i));
+        }
+        return fila;
+    }
+
+    /*
+     * Separa una línea CSV en valores, respetando las comillas dobles.
+     */
+    private static List<String> parsearCsv(String linea) {
+        List<String> valores = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                valores.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        valores.add(actual.toString());
+        return valores;
+    }
+
+    /*
+     * Convierte un objeto JSON plano de una línea en un mapa (campo, valor en texto).
+     * Se implementa a mano porque el contenedor no incluye una librería JSON y el formato
+     * de cada fila es muy simple.
+     */
+    private static Map<String, String> parsearJson(String linea) {
+        Map<String, String> fila = new HashMap<>();
+        int[] pos = {0};
+        esperar(linea, pos, '{');
+        saltarEspacios(linea, pos);
+        if (pos[0] < linea.length() && linea.charAt(pos[0]) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                saltarEspacios(linea, pos);
+                String campo = leerTexto(linea, pos);
+                esperar(linea, pos, ':');
+                saltarEspacios(linea, pos);
+                fila.put(campo.toLowerCase(), leerValor(linea, pos));
+                saltarEspacios(linea, pos);
+                if (pos[0] < linea.length() && linea.charAt(pos[0]) == ',') {
+                    pos[0]++;
+                } else {
+                    esperar(linea, pos, '}');
+                    break;
+                }
+            }
+        }
+        saltarEspacios(linea, pos);
+        if (pos[0] != linea.length()) {
+            throw new IllegalArgumentException("Contenido inesperado después del objeto JSON");
+        }
+        return fila;
+    }
+
+    private static String leerValor(String linea, int[] pos) {
+        if (pos[0] >= linea.length()) {
+            throw new IllegalArgumentException("Falta un valor en el objeto JSON");
+        }
+        if (linea.charAt(pos[0]) == '"') {
+            return leerTexto(linea, pos);
+        }
+        // Número, true, false o null: se lee hasta el siguiente separador
+        int inicio = pos[0];
+        while (pos[0] < linea.length() && ",} \t".indexOf(linea.charAt(pos[0])) < 0) {
+            pos[0]++;
+        }
+        String valor = linea.substring(inicio, pos[0]);
+        if (valor.isEmpty() || valor.charAt(0) == '{' || valor.charAt(0) == '[') {
+            throw new IllegalArgumentException("Valor JSON no soportado en la posición " + inicio);
+        }
+        return "null".equals(valor) ? null : valor;
+    }
+
+    private static String leerTexto(String linea, int[] pos) {
+        esperar(linea, pos, '"');
+        StringBuilder texto = new StringBuilder();
+        while (pos[0] < linea.length()) {
+            char c = linea.charAt(pos[0]++);
+            if (c == '"') {
+                return texto.toString();
+            }
+            if (c == '\\') {
+                if (pos[0] >= linea.length()) {
+                    break;
+                }
+                char escape = linea.charAt(pos[0]++);
+                switch (escape) {
+                    case 'n' -> texto.append('\n');
+                    case 't' -> texto.append('\t');
+                    case 'r' -> texto.append('\r');
+                    case 'b' -> texto.append('\b');
+                    case 'f' -> texto.append('\f');
+                    case 'u' -> {
+                        if (pos[0] + 4 > linea.length()) {
+                            throw new IllegalArgumentException("Secuencia \\u incompleta");
+                        }
+                        texto.append((char) Integer.parseInt(linea.substring(pos[0], pos[0] + 4), 16));
+                        pos[0] += 4;
+                    }
+                    default -> texto.append(escape);
+                }
+            } else {
+                texto.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Texto JSON sin cerrar");
+    }
+
+    private static void esperar(String linea, int[] pos, char esperado) {
+        saltarEspacios(linea, pos);
+        if (pos[0] >= linea.length() || linea.charAt(pos[0]) != esperado) {
+            throw new IllegalArgumentException("Se esperaba '" + esperado + "' en la posición " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static void saltarEspacios(String linea, int[] pos) {
+        while (pos[0] < linea.length() && Character.isWhitespace(linea.charAt(pos[0]))) {
+            pos[0]++;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Registro de métricas de la aplicación (contadores e histogramas de latencia),
+ * publicado en formato de texto de Prometheus por MetricasServlet (/metrics).
+ *
+ * - Contador: un LongAdder, que admite muchos hilos incrementando a la vez sin competir
+ *   por la misma variable.
+ * - Histograma: cubetas log-lineales de nanosegundos. Cada potencia de dos se divide en 16
+ *   cubetas iguales, así el error relativo de un percentil es como máximo 1/32 (~3 %) tanto
+ *   para 5 µs como para 5 s, con 672 cubetas fijas (hasta ~9 horas). Registrar un valor es
+ *   calcular el índice de la cubeta con operaciones de bits e incrementarla: no reserva
+ *   memoria ni usa candados.
+ * - Los percentiles (p50, p90, p99, p999) se calculan al publicar, con lo registrado en la
+ *   última ventana (entre una y dos ventanas de -Dsistemaventas.metricas.ventanaSeg=60
+ *   segundos), para que reflejen la carga actual y no todo el tiempo desde el arranque.
+ *   _sum y _count sí son acumulados, como espera Prometheus para calcular tasas.
+ *
+ * Las métricas se agrupan en familias (mismo nombre) con una etiqueta opcional, por
+ * ejemplo sistemaventas_repositorio_segundos{operacion="ProductoRepositoryJdbcImplement.porId"}.
+ * Quien mide guarda la referencia a la serie (Contador o Histograma) para no buscarla en
+ * cada registro; medir(...) hace lo mismo para cada metodo de una interfaz.
+ * */
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+public final class Metricas {
+
+    // Percentiles que se publican de cada histograma
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    // Duración de la ventana de los percentiles
+    private static final long VENTANA_NANOS =
+            TimeUnit.SECONDS.toNanos(Long.getLong("sistemaventas.metricas.ventanaSeg", 60L));
+
+    // Familias registradas, ordenadas por nombre para publicarlas siempre en el mismo orden
+    private static final ConcurrentSkipListMap<String, Familia<?>> FAMILIAS = new ConcurrentSkipListMap<>();
+
+    private Metricas() {
+    }
+
+    /**
+     * Serie de una familia: sabe escribirse en formato de texto de Prometheus.
+     */
+    interface Serie {
+        void escribir(StringBuilder out, String nombre, String etiqueta, String valor);
+    }
+
+    /**
+     * Grupo de series con el mismo nombre, tipo y ayuda, distinguidas por el valor de una
+     * etiqueta (o una sola serie sin etiqueta).
+     */
+    public static final class Familia<T extends Serie> {
+        private final String nombre;
+        private final String ayuda;
+        private final String tipo;
+        private final String etiqueta;
+        private final Function<String, T> fabrica;
+        private final ConcurrentHashMap<String, T> series = new ConcurrentHashMap<>();
+
+        private Familia(String nombre, String ayuda, String tipo, String etiqueta, Function<String, T> fabrica) {
+            this.nombre = nombre;
+            this.ayuda = ayuda;
+            this.tipo = tipo;
+            this.etiqueta = etiqueta;
+            this.fabrica = fabrica;
+        }
+
+        /**
+         * Retorna la serie con ese valor de la etiqueta, creándola la primera vez.
+         * Los valores deben ser pocos y conocidos (nombres de operaciones, no IDs).
+         */
+        public T de(String valor) {
+            T serie = series.get(valor);
+            return serie != null ? serie : series.computeIfAbsent(valor, fabrica);
+        }
+
+        private void escribir(StringBuilder out) {
+            out.append("# HELP ").append(nombre).append(' ').append(ayuda.replace("\\", "\\\\").replace("\n", "\\n"))
+                    .append('\n');
+            out.append("# TYPE ").append(nombre).append(' ').append(tipo).append('\n');
+            new TreeMap<>(series).forEach((valor, serie) ->
+                    serie.escribir(out, nombre, etiqueta, etiqueta != null ? escapar(valor) : null));
+        }
+    }
+
+    /**
+     * Contador que solo aumenta.
+     */
+    public static final class Contador implements Serie {
+        private final LongAdder valor = new LongAdder();
+
+        public void incrementar() {
+            valor.increment();
+        }
+
+        public void sumar(long cantidad) {
+            valor.add(cantidad);
+        }
+
+        public long valor() {
+            return valor.sum();
+        }
+
+        @Override
+        public void escribir(StringBuilder out, String nombre, String etiqueta, String valorEtiqueta) {
+            linea(out, nombre, etiqueta, valorEtiqueta, null, valor.sum());
+        }
+    }
+
+    /*
+     * Serie cuyo valor se lee de otra clase al publicar (tamaño del pool, aciertos de la caché).
+     */
+    private record Funcion(DoubleSupplier valor) implements Serie {
+        @Override
+        public void escribir(StringBuilder out, String nombre, String etiqueta, String valorEtiqueta) {
+            linea(out, nombre, etiqueta, valorEtiqueta, null, valor.getAsDouble());
+        }
+    }
+
+    /**
+     * Histograma log-lineal de duraciones en nanosegundos, publicado en segundos.
+     */
+    public static final class Histograma implements Serie {
+        // 16 cubetas por potencia de dos
+        private static final int BITS_SUB = 4;
+        private static final int SUB = 1 << BITS_SUB;
+        // Potencia de dos más alta con cubetas propias (2^45 ns son ~9,8 horas)
+        private static final int EXPONENTE_MAXIMO = 44;
+        private static final int CUBETAS = (EXPONENTE_MAXIMO - BITS_SUB + 2) * SUB;
+
+        private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+        private final LongAdder cuenta = new LongAdder();
+        private final LongAdder sumaNanos = new LongAdder();
+
+        // Copias de las cubetas al inicio de la ventana actual y de la anterior (solo al publicar)
+        private long[] baseAnterior = new long[CUBETAS];
+        private long[] baseActual = new long[CUBETAS];
+        private long inicioVentana = System.nanoTime();
+
+        /**
+         * Registra una duración en nanosegundos.
+         */
+        public void registrar(long nanos) {
+            long valor = Math.max(nanos, 0);
+            cubetas.incrementAndGet(indice(valor));
+            cuenta.increment();
+            sumaNanos.add(valor);
+        }
+
+        /**
+         * Registra el tiempo transcurrido desde "inicio" (un valor de System.nanoTime()).
+         */
+        public void registrarDesde(long inicio) {
+            registrar(System.nanoTime() - inicio);
+        }
+
+        public long cuenta() {
+            return cuenta.sum();
+        }
+
+        /*
+         * Valores menores a 16 tienen una cubeta cada uno; desde ahí cada potencia de dos
+         * [2^e, 2^(e+1)) se divide en 16 cubetas según los 4 bits que siguen al más alto.
+         */
+        static int indice(long valor) {
+            if (valor < SUB) {
+                return (int) valor;
+            }
+            int exponente = 63 - Long.numberOfLeadingZeros(valor);
+            if (exponente > EXPONENTE_MAXIMO) {
+                return CUBETAS - 1;
+            }
+            return (exponente - BITS_SUB + 1) * SUB + (int) ((valor >>> (exponente - BITS_SUB)) & (SUB - 1));
+        }
+
+        // Valor representativo (punto medio) de la cubeta
+        static double valorCubeta(int indice) {
+            if (indice < SUB) {
+                return indice;
+            }
+            int grupo = indice / SUB;
+            long inferior = (long) (SUB + indice % SUB) << (grupo - 1);
+            return inferior + (double) (1L << (grupo - 1)) / 2;
+        }
+
+        /*
+         * Calcula los percentiles con lo registrado desde el inicio de la ventana anterior.
+         * Al pasar una ventana completa, la actual pasa a ser la anterior.
+         */
+        private synchronized double[] percentilesVentana() {
+            long[] actual = new long[CUBETAS];
+            for (int i = 0; i < CUBETAS; i++) {
+                actual[i] = cubetas.get(i);
+            }
+            long ahora = System.nanoTime();
+            if (ahora - inicioVentana >= VENTANA_NANOS) {
+                baseAnterior = baseActual;
+                baseActual = actual;
+                inicioVentana = ahora;
+            }
+            long total = 0;
+            long[] ventana = new long[CUBETAS];
+            for (int i = 0; i < CUBETAS; i++) {
+                ventana[i] = actual[i] - baseAnterior[i];
+                total += ventana[i];
+            }
+
+            double[] resultado = new double[PERCENTILES.length];
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                if (total == 0) {
+                    resultado[p] = Double.NaN;
+                    continue;
+                }
+                long posicion = Math.max(1, (long) Math.ceil(PERCENTILES[p] * total));
+                long acumulado = 0;
+                for (int i = 0; i < CUBETAS; i++) {
+                    acumulado += ventana[i];
+                    if (acumulado >= posicion) {
+                        resultado[p] = valorCubeta(i);
+                        break;
+                    }
+                }
+            }
+            return resultado;
+        }
+
+        @Override
+        public void escribir(StringBuilder out, String nombre, String etiqueta, String valorEtiqueta) {
+            double[] valores = percentilesVentana();
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                linea(out, nombre, etiqueta, valorEtiqueta, "quantile=\"" + PERCENTILES[p] + "\"", valores[p] / 1e9);
+            }
+            linea(out, nombre + "_sum", etiqueta, valorEtiqueta, null, sumaNanos.sum() / 1e9);
+            linea(out, nombre + "_count", etiqueta, valorEtiqueta, null, cuenta.sum());
+        }
+    }
+
+    /**
+     * Familia de contadores con una etiqueta.
+     */
+    public static Familia<Contador> contadores(String nombre, String ayuda, String etiqueta) {
+        return familia(nombre, ayuda, "counter", etiqueta, valor -> new Contador());
+    }
+
+    /**
+     * Contador sin etiquetas.
+     */
+    public static Contador contador(String nombre, String ayuda) {
+        return contadores(nombre, ayuda, null).de("");
+    }
+
+    /**
+     * Familia de histogramas de duración con una etiqueta.
+     */
+    public static Familia<Histograma> histogramas(String nombre, String ayuda, String etiqueta) {
+        return familia(nombre, ayuda, "summary", etiqueta, valor -> new Histograma());
+    }
+
+    /**
+     * Histograma de duración sin etiquetas.
+     */
+    public static Histograma histograma(String nombre, String ayuda) {
+        return histogramas(nombre, ayuda, null).de("");
+    }
+
+    /**
+     * Publica como contador un total que ya lleva otra clase (solo aumenta).
+     * Si ya existía una métrica con ese nombre, se reemplaza.
+     */
+    public static void contador(String nombre, String ayuda, LongSupplier valor) {
+        registrarFuncion(nombre, ayuda, "counter", valor::getAsLong);
+    }
+
+    /**
+     * Publica un valor que sube y baja (tamaño del pool, elementos en caché), leído al publicar.
+     * Si ya existía una métrica con ese nombre, se reemplaza.
+     */
+    public static void indicador(String nombre, String ayuda, DoubleSupplier valor) {
+        registrarFuncion(nombre, ayuda, "gauge", valor);
+    }
+
+    /**
+     * Envuelve "objeto" con un proxy de la interfaz que mide la duración de cada metodo en la
+     * familia "nombre"_segundos (etiqueta operacion="ClaseDelObjeto.metodo") y cuenta las
+     * excepciones en "nombre"_errores_total. Los histogramas se buscan una sola vez, al crear
+     * el proxy.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T medir(Class<T> interfaz, T objeto, String nombre, String ayuda) {
+        Familia<Histograma> duraciones = histogramas(nombre + "_segundos", ayuda, "operacion");
+        Familia<Contador> errores = contadores(nombre + "_errores_total", "Excepciones de: " + ayuda, "operacion");
+        Map<Method, Histograma> porMetodo = new HashMap<>();
+        Map<Method, Contador> erroresPorMetodo = new HashMap<>();
+        for (Method metodo : interfaz.getMethods()) {
+            String operacion = objeto.getClass().getSimpleName() + "." + metodo.getName();
+            porMetodo.put(metodo, duraciones.de(operacion));
+            erroresPorMetodo.put(metodo, errores.de(operacion));
+        }
+
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            Histograma histograma = porMetodo.get(metodo);
+            if (histograma == null) {
+                // toString, equals, hashCode: sin medir
+                return invocar(objeto, metodo, args);
+            }
+            long inicio = System.nanoTime();
+            try {
+                return invocar(objeto, metodo, args);
+            } catch (Throwable e) {
+                erroresPorMetodo.get(metodo).incrementar();
+                throw e;
+            } finally {
+                histograma.registrarDesde(inicio);
+            }
+        };
+        return (T) Proxy.newProxyInstance(interfaz.getClassLoader(), new Class<?>[]{interfaz}, manejador);
+    }
+
+    /**
+     * Escribe todas las métricas en formato de texto de Prometheus (versión 0.0.4).
+     */
+    public static void escribir(StringBuilder out) {
+        for (Familia<?> familia : FAMILIAS.values()) {
+            familia.escribir(out);
+        }
+    }
+
+    private static Object invocar(Object objeto, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(objeto, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Serie> Familia<T> familia(String nombre, String ayuda, String tipo, String etiqueta,
+                                                       Function<String, T> fabrica) {
+        Familia<?> familia = FAMILIAS.computeIfAbsent(nombre, n -> new Familia<>(n, ayuda, tipo, etiqueta, fabrica));
+        if (!familia.tipo.equals(tipo) || !Objects.equals(familia.etiqueta, etiqueta)) {
+            throw new IllegalArgumentException("La métrica " + nombre + " ya existe con otro tipo o etiqueta");
+        }
+        return (Familia<T>) familia;
+    }
+
+    private static void registrarFuncion(String nombre, String ayuda, String tipo, DoubleSupplier valor) {
+        Familia<Funcion> familia = new Familia<>(nombre, ayuda, tipo, null, v -> new Funcion(valor));
+        familia.de("");
+        FAMILIAS.put(nombre, familia);
+    }
+
+    // Escribe una línea "nombre{etiquetas} valor"
+    private static void linea(StringBuilder out, String nombre, String etiqueta, String valorEtiqueta,
+                              String extra, double valor) {
+        out.append(nombre);
+        if (etiqueta != null || extra != null) {
+            out.append('{');
+            if (etiqueta != null) {
+                out.append(etiqueta).append("=\"").append(valorEtiqueta).append('"');
+                if (extra != null) {
+                    out.append(',');
+                }
+            }
+            if (extra != null) {
+                out.append(extra);
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (Double.isNaN(valor)) {
+            out.append("NaN");
+        } else if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            out.append((long) valor);
+        } else {
+            out.append(valor);
+        }
+        out.append('\n');
+    }
+
+    // Escapa el valor de una etiqueta (barra invertida, comillas y saltos de línea)
+    private static String escapar(String valor) {
+        return valor.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,390 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.1
+ * Descripción: Pool de conexiones acotado que implementa javax.sql.DataSource.
+ * Mantiene un número mínimo de conexiones físicas abiertas hacia MySQL y nunca supera
+ * un máximo, de esta manera cada petición HTTP reutiliza una conexión ya autenticada
+ * en lugar de pagar el handshake TCP + autenticación de DriverManager.getConnection().
+ *
+ * Funcionalidades:
+ * - Tamaño mínimo y máximo del pool.
+ * - Espera acotada al pedir una conexión cuando el pool está agotado (SQLTimeoutException).
+ * - Validación de la conexión al momento de prestarla (Connection.isValid).
+ * - Desalojo de conexiones ociosas que superan el tiempo máximo de inactividad.
+ * - Detección de fugas: avisa cuando una conexión prestada no se devuelve a tiempo.
+ * Versión 1.1: cada conexión física puede envolverse al abrirla (por ejemplo con
+ * SqlInstrumentado para medir las consultas); la envoltura se crea una sola vez por conexión.
+ * */
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class PoolConexiones implements DataSource, AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(PoolConexiones.class.getName());
+
+    // Datos de conexión hacia la base de datos
+    private final String url;
+    private final String username;
+    private final String password;
+
+    // Parámetros de configuración del pool
+    private final int minimo;
+    private final int maximo;
+    private final long esperaMaximaMs;
+    private final long inactividadMaximaMs;
+    private final long umbralFugaMs;
+    private final int timeoutValidacionSeg;
+
+    /*
+     * El semáforo limita el número de conexiones prestadas al mismo tiempo (máximo),
+     * mientras que la cola guarda las conexiones físicas libres. Se usa una cola doble
+     * (LIFO) para que se reutilice primero la conexión más reciente y las más antiguas
+     * queden ociosas y puedan ser desalojadas.
+     */
+    private final Semaphore permisos;
+    private final LinkedBlockingDeque<ConexionFisica> libres = new LinkedBlockingDeque<>();
+    // Conexiones que están prestadas en este momento (para la detección de fugas)
+    private final Set<ConexionPrestada> prestadas = ConcurrentHashMap.newKeySet();
+    // Total de conexiones físicas abiertas (libres + prestadas)
+    private final AtomicInteger totalFisicas = new AtomicInteger();
+
+    // Envoltura aplicada a cada conexión física nueva
+    private final UnaryOperator<Connection> envoltura;
+
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado;
+    private volatile PrintWriter logWriter;
+
+    public PoolConexiones(String url, String username, String password,
+                          int minimo, int maximo, long esperaMaximaMs,
+                          long inactividadMaximaMs, long umbralFugaMs) {
+        this(url, username, password, minimo, maximo, esperaMaximaMs, inactividadMaximaMs, umbralFugaMs,
+                UnaryOperator.identity());
+    }
+
+    /**
+     * @param envoltura Función que recibe cada conexión física recién abierta y retorna la
+     *                  conexión que usará el pool (la misma o un proxy que la envuelve).
+     */
+    public PoolConexiones(String url, String username, String password,
+                          int minimo, int maximo, long esperaMaximaMs,
+                          long inactividadMaximaMs, long umbralFugaMs, UnaryOperator<Connection> envoltura) {
+        if (minimo < 0 || maximo < 1 || minimo > maximo) {
+            throw new IllegalArgumentException("Tamaño de pool inválido: minimo=" + minimo + ", maximo=" + maximo);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.inactividadMaximaMs = inactividadMaximaMs;
+        this.umbralFugaMs = umbralFugaMs;
+        this.timeoutValidacionSeg = 2;
+        this.envoltura = envoltura;
+        this.permisos = new Semaphore(maximo, true);
+
+        // Hilo demonio que desaloja conexiones ociosas, rellena el mínimo y revisa fugas
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-conexiones-mantenimiento");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodo = Math.max(1000L, Math.min(inactividadMaximaMs, umbralFugaMs) / 2);
+        this.mantenimiento.scheduleWithFixedDelay(this::mantener, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presta una conexión del pool. Si no hay conexiones libres y ya se alcanzó el máximo,
+     * espera como máximo esperaMaximaMs antes de lanzar SQLTimeoutException.
+     * La conexión devuelta regresa al pool al invocar close().
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+        try {
+            if (!permisos.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("No hay conexiones disponibles después de esperar "
+                        + esperaMaximaMs + " ms (máximo=" + maximo + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido mientras se esperaba una conexión", e);
+        }
+
+        try {
+            ConexionFisica fisica = tomarValida();
+            ConexionPrestada prestada = new ConexionPrestada(fisica);
+            prestadas.add(prestada);
+            return prestada.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("El pool usa credenciales fijas");
+    }
+
+    /*
+     * Toma una conexión libre validándola antes de prestarla (validation-on-borrow).
+     * Las conexiones que no responden se descartan y si no quedan libres se abre una nueva.
+     */
+    private ConexionFisica tomarValida() throws SQLException {
+        ConexionFisica fisica;
+        while ((fisica = libres.pollFirst()) != null) {
+            if (fisica.esValida(timeoutValidacionSeg)) {
+                return fisica;
+            }
+            descartar(fisica);
+        }
+        return abrir();
+    }
+
+    private ConexionFisica abrir() throws SQLException {
+        Connection conn = envoltura.apply(DriverManager.getConnection(url, username, password));
+        totalFisicas.incrementAndGet();
+        return new ConexionFisica(conn);
+    }
+
+    private void descartar(ConexionFisica fisica) {
+        totalFisicas.decrementAndGet();
+        try {
+            fisica.conn.close();
+        } catch (SQLException e) {
+            LOG.log(Level.FINE, "Error al cerrar una conexión descartada", e);
+        }
+    }
+
+    /*
+     * Devuelve la conexión física al pool. Antes de dejarla libre se deshace cualquier
+     * transacción pendiente y se restablece el estado por defecto, para que la siguiente
+     * petición no herede cambios de la anterior.
+     */
+    private void devolver(ConexionPrestada prestada) {
+        prestadas.remove(prestada);
+        ConexionFisica fisica = prestada.fisica;
+        try {
+            if (cerrado || fisica.conn.isClosed()) {
+                descartar(fisica);
+                return;
+            }
+            if (!fisica.conn.getAutoCommit()) {
+                fisica.conn.rollback();
+                fisica.conn.setAutoCommit(true);
+            }
+            if (fisica.conn.isReadOnly()) {
+                fisica.conn.setReadOnly(false);
+            }
+            fisica.ultimoUso = System.currentTimeMillis();
+            libres.offerFirst(fisica);
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Conexión descartada al devolverla al pool", e);
+            descartar(fisica);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    /*
+     * Tarea periódica de mantenimiento:
+     * 1. Desaloja conexiones ociosas por más de inactividadMaximaMs mientras se supere el mínimo.
+     * 2. Rellena el pool hasta el mínimo configurado.
+     * 3. Reporta las conexiones prestadas que superan el umbral de fuga.
+     */
+    private void mantener() {
+        try {
+            long ahora = System.currentTimeMillis();
+            for (ConexionFisica fisica : libres) {
+                if (totalFisicas.get() <= minimo) {
+                    break;
+                }
+                if (ahora - fisica.ultimoUso > inactividadMaximaMs && libres.removeFirstOccurrence(fisica)) {
+                    descartar(fisica);
+                }
+            }
+            while (!cerrado && totalFisicas.get() < minimo) {
+                libres.offerLast(abrir());
+            }
+            for (ConexionPrestada prestada : prestadas) {
+                if (!prestada.fugaReportada && ahora - prestada.desde > umbralFugaMs) {
+                    prestada.fugaReportada = true;
+                    LOG.log(Level.WARNING, "Posible fuga de conexión: prestada hace "
+                            + (ahora - prestada.desde) + " ms y no devuelta", prestada.origen);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Error en el mantenimiento del pool de conexiones", e);
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres y detiene el mantenimiento.
+     * Las conexiones prestadas se cierran cuando sus dueños las devuelvan.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        ConexionFisica fisica;
+        while ((fisica = libres.pollFirst()) != null) {
+            descartar(fisica);
+        }
+    }
+
+    // Métodos de consulta del estado del pool
+    public int getTotalConexiones() {
+        return totalFisicas.get();
+    }
+
+    public int getConexionesLibres() {
+        return libres.size();
+    }
+
+    public int getConexionesPrestadas() {
+        return prestadas.size();
+    }
+
+    public int getMaximo() {
+        return maximo;
+    }
+
+    // Métodos requeridos por javax.sql.DataSource / CommonDataSource
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return LOG;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("No es un envoltorio de " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /*
+     * Conexión física abierta hacia MySQL junto con el instante de su último uso.
+     */
+    private static final class ConexionFisica {
+        final Connection conn;
+        volatile long ultimoUso = System.currentTimeMillis();
+
+        ConexionFisica(Connection conn) {
+            this.conn = conn;
+        }
+
+        boolean esValida(int timeoutSeg) {
+            try {
+                return conn.isValid(timeoutSeg);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+
+    /*
+     * Préstamo de una conexión física. El proxy delega todos los métodos a la conexión
+     * real excepto close(), que la devuelve al pool en lugar de cerrarla.
+     * Se guarda una excepción con la pila de llamadas del que pidió la conexión
+     * para poder indicar el origen en caso de fuga.
+     */
+    private final class ConexionPrestada implements InvocationHandler {
+        final ConexionFisica fisica;
+        final Connection proxy;
+        final long desde = System.currentTimeMillis();
+        final Throwable origen = new Throwable("Conexión prestada desde aquí");
+        volatile boolean fugaReportada;
+        private final AtomicBoolean devuelta = new AtomicBoolean();
+
+        ConexionPrestada(ConexionFisica fisica) {
+            this.fisica = fisica;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (devuelta.compareAndSet(false, true)) {
+                        devolver(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta.get() || fisica.conn.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionPrestada[" + fisica.conn + "]";
+                case "unwrap":
+                case "isWrapperFor":
+                    break;
+                default:
+                    if (devuelta.get()) {
+                        throw new SQLException("La conexión ya fue devuelta al pool");
+                    }
+            }
+            try {
+                return method.invoke(fisica.conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.1
+ * Descripción: Clase principal que compara los dos modos de atender las peticiones con
+ * 5000 usuarios concurrentes:
+ * - PLATAFORMA: un pool fijo de hilos de plataforma (como el pool de Tomcat, maxThreads=200)
+ *   atiende las peticiones.
+ * - VIRTUAL: cada petición se atiende en su propio hilo virtual (como el conector de Tomcat
+ *   con useVirtualThreads="true").
+ * En los dos modos cada petición hace sus dos consultas una después de otra, como los servlets
+ * de la aplicación. El modo de la aplicación no se elige en el código: es configuración del
+ * contenedor (server.xml, ver ConexionFilter, que cuenta las peticiones en hilos virtuales).
+ *
+ * Es una simulación: no ejecuta el código de la aplicación. Cada consulta JDBC se reemplaza
+ * por una espera bloqueante de "latenciaMs" (Thread.sleep, el tiempo de ida y vuelta a MySQL),
+ * así la prueba mide solo cómo se reparten los hilos y no depende de la base de datos ni del
+ * tamaño del pool de conexiones (con JDBC real, el pool limita las consultas a la vez en los
+ * dos modos). Cada usuario envía una petición, espera la respuesta y envía la siguiente. Se
+ * reporta la latencia (p50, p99, máxima) medida desde que el usuario envía la petición
+ * (incluye la espera en la cola del pool), las peticiones por segundo, el pico de hilos de
+ * plataforma de la JVM y el pico de peticiones atendidas a la vez.
+ *
+ * Versión 1.1: las consultas de cada petición ya no se ejecutan en paralelo (se quitó
+ * TareasParalelas); solo cambia el tipo de hilo que atiende la petición.
+ *
+ * Uso: java -cp ... util.PruebaCargaHilosVirtuales [usuarios] [peticionesPorUsuario] [latenciaMs] [hilosPlataforma]
+ * */
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PruebaCargaHilosVirtuales {
+
+    private enum Modo {PLATAFORMA, VIRTUAL}
+
+    public static void main(String[] args) throws Exception {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int peticiones = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long latenciaMs = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        int hilosPlataforma = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        System.out.println("==============================================");
+        System.out.println("Prueba de carga: " + usuarios + " usuarios x " + peticiones
+                + " peticiones, 2 consultas de " + latenciaMs + " ms por petición");
+        System.out.println("==============================================\n");
+
+        for (Modo modo : Modo.values()) {
+            ejecutar(modo, usuarios, peticiones, latenciaMs, hilosPlataforma);
+        }
+    }
+
+    private static void ejecutar(Modo modo, int usuarios, int peticiones, long latenciaMs, int hilosPlataforma)
+            throws InterruptedException {
+        ExecutorService servidor = modo == Modo.PLATAFORMA
+                ? Executors.newFixedThreadPool(hilosPlataforma, hilosConNombre())
+                : Executors.newVirtualThreadPerTaskExecutor();
+        ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+        hilos.resetPeakThreadCount();
+
+        long[] latencias = new long[usuarios * peticiones];
+        AtomicInteger registradas = new AtomicInteger();
+        AtomicInteger enCurso = new AtomicInteger();
+        AtomicInteger maximoEnCurso = new AtomicInteger();
+        CountDownLatch inicio = new CountDownLatch(1);
+
+        long comienzo;
+        // Los usuarios son hilos virtuales en ambos modos, para no sumar hilos de plataforma
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < usuarios; u++) {
+                clientes.submit(() -> {
+                    inicio.await();
+                    for (int p = 0; p < peticiones; p++) {
+                        long enviada = System.nanoTime();
+                        servidor.submit(() -> {
+                            maximoEnCurso.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+                            try {
+                                atender(latenciaMs);
+                            } finally {
+                                enCurso.decrementAndGet();
+                            }
+                            return null;
+                        }).get();
+                        latencias[registradas.getAndIncrement()] = System.nanoTime() - enviada;
+                    }
+                    return null;
+                });
+            }
+            comienzo = System.nanoTime();
+            inicio.countDown();
+        }
+        double segundos = (System.nanoTime() - comienzo) / 1e9;
+        servidor.shutdown();
+        servidor.awaitTermination(1, TimeUnit.MINUTES);
+
+        long[] medidas = Arrays.copyOf(latencias, registradas.get());
+        Arrays.sort(medidas);
+        System.out.printf("%-10s p50 %8.1f ms  p99 %8.1f ms  máx %8.1f ms  %9.0f pet/s  "
+                        + "hilos de plataforma (pico) %5d  peticiones a la vez (pico) %5d%n",
+                modo, percentil(medidas, 50), percentil(medidas, 99), medidas[medidas.length - 1] / 1e6,
+                medidas.length / segundos, hilos.getPeakThreadCount(), maximoEnCurso.get());
+    }
+
+    /*
+     * Petición simulada: dos consultas, una después de otra.
+     */
+    private static void atender(long latenciaMs) throws InterruptedException {
+        consultar(latenciaMs);
+        consultar(latenciaMs);
+    }
+
+    // Espera bloqueante equivalente a un viaje de ida y vuelta a MySQL
+    private static void consultar(long latenciaMs) throws InterruptedException {
+        Thread.sleep(latenciaMs);
+    }
+
+    private static double percentil(long[] ordenadas, int percentil) {
+        int posicion = (int) Math.ceil(percentil / 100.0 * ordenadas.length) - 1;
+        return ordenadas[Math.max(posicion, 0)] / 1e6;
+    }
+
+    private static ThreadFactory hilosConNombre() {
+        AtomicInteger numero = new AtomicInteger();
+        return r -> new Thread(r, "servidor-" + numero.incrementAndGet());
+    }
+}
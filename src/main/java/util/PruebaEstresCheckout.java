@@ -0,0 +1,124 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Clase principal que somete al checkout (OrdenRepositoryJdbcImplement) a compras
+ * concurrentes de los mismos productos "populares", para comprobar que no hay sobreventa
+ * ni bloqueos mutuos (deadlocks).
+ *
+ * Cada hilo compra una unidad del producto A y una del producto B; la mitad de los hilos arma
+ * el carrito en orden A-B y la otra mitad en orden B-A (el repositorio debe ordenarlos).
+ * Al terminar se verifica que:
+ * - el stock final de cada producto = stock inicial - compras confirmadas (nunca negativo),
+ * - no se produjo ningún deadlock ni otro error distinto de "sin stock".
+ *
+ * ATENCIÓN: descuenta stock real y crea órdenes; usar solo en una base de datos de pruebas.
+ * Uso: java -cp ... util.PruebaEstresCheckout [productoA] [productoB] [hilos] [comprasPorHilo]
+ * */
+import models.DetalleCarro;
+import models.ItemCarro;
+import models.Producto;
+import repositorio.OrdenRepositoryJdbcImplement;
+import repositorio.ProductoRepositoryJdbcImplement;
+import repositorio.SinStockException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PruebaEstresCheckout {
+
+    public static void main(String[] args) throws Exception {
+        long idA = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        long idB = args.length > 1 ? Long.parseLong(args[1]) : 2;
+        int hilos = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int comprasPorHilo = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        Producto productoA = leer(idA);
+        Producto productoB = leer(idB);
+        System.out.println("Stock inicial: A=" + productoA.getStock() + " B=" + productoB.getStock());
+
+        OrdenRepositoryJdbcImplement repository = new OrdenRepositoryJdbcImplement();
+        LongAdder confirmadas = new LongAdder();
+        LongAdder sinStock = new LongAdder();
+        List<Throwable> errores = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch salida = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        long inicio = System.nanoTime();
+        for (int h = 0; h < hilos; h++) {
+            boolean invertido = h % 2 == 1;
+            executor.submit(() -> {
+                salida.await();
+                for (int i = 0; i < comprasPorHilo; i++) {
+                    DetalleCarro carro = new DetalleCarro();
+                    carro.addItemCarro(new ItemCarro(1, invertido ? productoB : productoA));
+                    carro.addItemCarro(new ItemCarro(1, invertido ? productoA : productoB));
+                    try (Connection conn = ConexionBDD.getConnection()) {
+                        conn.setAutoCommit(false);
+                        ConexionContexto.asociar(conn);
+                        try {
+                            repository.guardar("prueba", carro);
+                            conn.commit();
+                            confirmadas.increment();
+                        } catch (SinStockException e) {
+                            conn.rollback();
+                            sinStock.increment();
+                        } catch (SQLException e) {
+                            conn.rollback();
+                            errores.add(e);
+                        }
+                    } finally {
+                        ConexionContexto.desasociar();
+                    }
+                }
+                return null;
+            });
+        }
+        salida.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        Producto finalA = leer(idA);
+        Producto finalB = leer(idB);
+        long esperadoA = productoA.getStock() - confirmadas.sum();
+        long esperadoB = productoB.getStock() - confirmadas.sum();
+
+        System.out.printf("Compras: %d confirmadas, %d sin stock, %d errores en %.2f s%n",
+                confirmadas.sum(), sinStock.sum(), errores.size(), segundos);
+        System.out.println("Stock final: A=" + finalA.getStock() + " (esperado " + esperadoA + ")"
+                + " B=" + finalB.getStock() + " (esperado " + esperadoB + ")");
+        errores.stream().limit(5).forEach(e -> System.out.println("  error: " + e.getMessage()));
+
+        boolean correcto = errores.isEmpty()
+                && finalA.getStock() == esperadoA && finalB.getStock() == esperadoB
+                && finalA.getStock() >= 0 && finalB.getStock() >= 0;
+        System.out.println(correcto ? "RESULTADO: correcto" : "RESULTADO: INCORRECTO");
+        ConexionBDD.cerrar();
+        if (!correcto) {
+            System.exit(1);
+        }
+    }
+
+    private static Producto leer(long id) throws SQLException {
+        try (Connection conn = ConexionBDD.getConnection()) {
+            ConexionContexto.asociar(conn);
+            Producto producto = new ProductoRepositoryJdbcImplement().porId(id);
+            if (producto == null) {
+                throw new IllegalArgumentException("No existe el producto " + id);
+            }
+            return producto;
+        } finally {
+            ConexionContexto.desasociar();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Nombres versionados (con huella) de los recursos estáticos.
+ * Al empaquetar el WAR (mvn package, ver maven-antrun-plugin en pom.xml) cada recurso estático
+ * se copia con la huella MD5 de su contenido en el nombre, por ejemplo
+ * css/estilos.css -> css/estilos.3f2a...c1.css, junto con su versión comprimida (.gz).
+ * La correspondencia se guarda en WEB-INF/recursos-estaticos.properties.
+ *
+ * Como el nombre cambia cada vez que cambia el contenido, el navegador puede guardar el
+ * archivo por un año sin volver a preguntar (Cache-Control: immutable, ver RecursoEstaticoFilter)
+ * y aun así recibe la versión nueva después de un despliegue.
+ * Sin el archivo de correspondencias (por ejemplo al ejecutar desde el IDE) se usan los
+ * nombres originales.
+ * */
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class RecursosEstaticos {
+
+    private static final String ARCHIVO = "/WEB-INF/recursos-estaticos.properties";
+
+    // Ruta original -> ruta versionada (sin "/" inicial)
+    private static volatile Map<String, String> versionados = Map.of();
+    // Rutas versionadas, con "/" inicial como las de la petición
+    private static volatile Set<String> rutasVersionadas = Set.of();
+
+    private RecursosEstaticos() {
+    }
+
+    /**
+     * Carga las correspondencias generadas en el empaquetado. Se invoca al iniciar la aplicación.
+     */
+    public static void cargar(ServletContext context) throws IOException {
+        Properties propiedades = new Properties();
+        try (InputStream entrada = context.getResourceAsStream(ARCHIVO)) {
+            if (entrada == null) {
+                context.log("No existe " + ARCHIVO + ": los recursos estáticos se usan sin versionar");
+                return;
+            }
+            propiedades.load(entrada);
+        }
+        Map<String, String> mapa = new ConcurrentHashMap<>();
+        Set<String> rutas = new HashSet<>();
+        for (String original : propiedades.stringPropertyNames()) {
+            String versionado = propiedades.getProperty(original);
+            mapa.put(original, versionado);
+            rutas.add("/" + versionado);
+        }
+        versionados = mapa;
+        rutasVersionadas = Set.copyOf(rutas);
+    }
+
+    /**
+     * Retorna la URL de un recurso estático, con su nombre versionado si existe.
+     * @param ruta Ruta dentro de la aplicación, sin "/" inicial (ej: css/estilos.css).
+     */
+    public static String url(HttpServletRequest req, String ruta) {
+        return req.getContextPath() + "/" + versionados.getOrDefault(ruta, ruta);
+    }
+
+    /**
+     * Indica si la ruta (ej: /css/estilos.3f2a...c1.css) es un nombre versionado.
+     */
+    public static boolean esVersionado(String ruta) {
+        return rutasVersionadas.contains(ruta);
+    }
+}
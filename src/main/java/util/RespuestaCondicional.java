@@ -0,0 +1,62 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Métodos para las peticiones condicionales de HTTP (If-None-Match e
+ * If-Modified-Since). Si el cliente ya tiene la versión actual de un recurso se le responde
+ * 304 Not Modified, sin cuerpo, y vuelve a usar la copia que tiene guardada.
+ * */
+import jakarta.servlet.http.HttpServletRequest;
+
+public final class RespuestaCondicional {
+
+    private RespuestaCondicional() {
+    }
+
+    /**
+     * Indica si el cliente ya tiene la versión actual del recurso.
+     * If-None-Match tiene prioridad: si el cliente lo envía, If-Modified-Since se ignora.
+     * @param etag ETag actual del recurso.
+     * @param modificado Instante (epoch ms) de la última modificación, o -1 si no se conoce.
+     * @return true si se debe responder 304.
+     */
+    public static boolean noModificado(HttpServletRequest req, String etag, long modificado) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return coincideEtag(ifNoneMatch, etag);
+        }
+        if (modificado < 0) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = req.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            // Fecha con formato inválido: se ignora la cabecera
+            return false;
+        }
+        // Las fechas HTTP tienen precisión de segundos
+        return ifModifiedSince >= 0 && modificado / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Indica si la cabecera If-None-Match contiene el ETag (o "*").
+     * Se usa la comparación débil: W/"x" coincide con "x".
+     */
+    public static boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String valor : ifNoneMatch.split(",")) {
+            valor = valor.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag) || valor.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,436 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.0
+ * Descripción: Instrumentación opcional de JDBC para encontrar las consultas lentas en
+ * producción sin activar el "general log" de MySQL. Se activa con
+ * -Dsistemaventas.sql.instrumentar=true (ver ConexionBDD): cada conexión física del pool se
+ * envuelve con proxies de Connection, Statement/PreparedStatement y ResultSet que miden:
+ * - el tiempo de ejecución (execute*) más el tiempo dentro de ResultSet.next(), es decir, el
+ *   tiempo de la base de datos y del driver, sin contar lo que la aplicación hace con cada fila;
+ * - las filas leídas (o modificadas, en INSERT/UPDATE/DELETE y lotes);
+ * - los parámetros (set*) de la sentencia preparada.
+ *
+ * Una consulta se registra cuando se cierra su ResultSet (o la sentencia, o se vuelve a
+ * ejecutar). Con los datos se mantiene:
+ * - Un agregado por texto SQL (ejecuciones, tiempo total, máximo, filas y errores), publicado
+ *   en /metrics/sql ordenado por tiempo total: las sentencias son constantes (ver
+ *   ProductoRepositoryJdbcImplement), así hay pocas entradas. Se guardan como máximo
+ *   MAXIMO_SENTENCIAS textos distintos; el resto se suma en "(otras)".
+ * - Un log de consultas lentas: las que superan -Dsistemaventas.sql.lentaMs=100 se escriben
+ *   con sus parámetros en el logger util.SqlInstrumentado mediante una BitacoraAsincrona de
+ *   -Dsistemaventas.sql.bufferLentas=1024 eventos, así escribir el log nunca retrasa la
+ *   petición. Con -Dsistemaventas.sql.registrarParametros=false no se escriben los parámetros.
+ * */
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class SqlInstrumentado {
+
+    private static final Logger LOG = Logger.getLogger(SqlInstrumentado.class.getName());
+
+    // Umbral de consulta lenta
+    private static final long UMBRAL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("sistemaventas.sql.lentaMs", 100L));
+    private static final boolean REGISTRAR_PARAMETROS =
+            Boolean.parseBoolean(System.getProperty("sistemaventas.sql.registrarParametros", "true"));
+    // Textos SQL distintos con agregado propio
+    private static final int MAXIMO_SENTENCIAS = 500;
+    private static final String OTRAS = "(otras)";
+    // Largo máximo de un parámetro de texto en el log
+    private static final int LARGO_MAXIMO_PARAMETRO = 100;
+
+    // Metodos de ejecución con sus filas afectadas como resultado (no devuelven un ResultSet)
+    private static final Set<String> EJECUCIONES = Set.of("execute", "executeUpdate", "executeLargeUpdate",
+            "executeBatch", "executeLargeBatch");
+
+    private static final ConcurrentHashMap<String, Agregado> AGREGADOS = new ConcurrentHashMap<>();
+    private static final LongAdder LENTAS = new LongAdder();
+    private static final BitacoraAsincrona BITACORA = new BitacoraAsincrona("sql-lentas", LOG, Level.WARNING,
+            Integer.getInteger("sistemaventas.sql.bufferLentas", 1024));
+
+    static {
+        Metricas.contador("sistemaventas_sql_lentas_total", "Consultas SQL sobre el umbral de consulta lenta",
+                LENTAS::sum);
+        Metricas.contador("sistemaventas_sql_lentas_descartadas_total",
+                "Consultas lentas no escritas en el log porque el búfer estaba lleno", BITACORA::getDescartados);
+    }
+
+    private SqlInstrumentado() {
+    }
+
+    /**
+     * Totales de un texto SQL.
+     */
+    public static final class Agregado {
+        private final String sql;
+        private final LongAdder ejecuciones = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maximoNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder filas = new LongAdder();
+        private final LongAdder errores = new LongAdder();
+
+        private Agregado(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getEjecuciones() {
+            return ejecuciones.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaximoNanos() {
+            return maximoNanos.get();
+        }
+
+        public long getFilas() {
+            return filas.sum();
+        }
+
+        public long getErrores() {
+            return errores.sum();
+        }
+    }
+
+    /*
+     * Consulta lenta; se convierte a texto en el hilo de la bitácora.
+     */
+    private record ConsultaLenta(String sql, Object[] parametros, long nanos, long filas) {
+        @Override
+        public String toString() {
+            StringBuilder texto = new StringBuilder("Consulta lenta (")
+                    .append(String.format("%.1f", nanos / 1e6)).append(" ms, ")
+                    .append(filas).append(" filas): ").append(sql);
+            if (parametros != null && parametros.length > 0) {
+                texto.append(" parámetros=[");
+                for (int i = 0; i < parametros.length; i++) {
+                    if (i > 0) {
+                        texto.append(", ");
+                    }
+                    texto.append(parametro(parametros[i]));
+                }
+                texto.append(']');
+            }
+            return texto.toString();
+        }
+
+        private static String parametro(Object valor) {
+            if (valor == null) {
+                return "NULL";
+            }
+            if (valor instanceof CharSequence) {
+                String s = valor.toString();
+                return "'" + (s.length() > LARGO_MAXIMO_PARAMETRO ? s.substring(0, LARGO_MAXIMO_PARAMETRO) + "…" : s) + "'";
+            }
+            if (valor instanceof byte[] bytes) {
+                return "<" + bytes.length + " bytes>";
+            }
+            return valor.toString();
+        }
+    }
+
+    /**
+     * Envuelve una conexión real para medir todas las sentencias que se ejecuten con ella.
+     */
+    public static Connection envolver(Connection real) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConexionMedida(real));
+    }
+
+    /**
+     * Retorna los agregados ordenados por tiempo total, de mayor a menor.
+     */
+    public static List<Agregado> agregados() {
+        List<Agregado> lista = new ArrayList<>(AGREGADOS.values());
+        lista.sort(Comparator.comparingLong(Agregado::getTotalNanos).reversed());
+        return lista;
+    }
+
+    /**
+     * Escribe como texto las "maximo" sentencias con más tiempo total.
+     */
+    public static void escribirResumen(StringBuilder out, int maximo) {
+        out.append(String.format("%-10s %12s %10s %10s %12s %8s  %s%n", "ejecuciones", "total_ms", "prom_ms",
+                "max_ms", "filas", "errores", "sql"));
+        List<Agregado> lista = agregados();
+        for (Agregado a : lista.subList(0, Math.min(maximo, lista.size()))) {
+            long ejecuciones = Math.max(a.getEjecuciones(), 1);
+            out.append(String.format("%-10d %12.1f %10.3f %10.1f %12d %8d  %s%n", a.getEjecuciones(),
+                    a.getTotalNanos() / 1e6, a.getTotalNanos() / 1e6 / ejecuciones, a.getMaximoNanos() / 1e6,
+                    a.getFilas(), a.getErrores(), a.getSql()));
+        }
+    }
+
+    /**
+     * Escribe los eventos pendientes del log de consultas lentas y detiene su hilo.
+     */
+    public static void cerrar() {
+        BITACORA.close();
+    }
+
+    /*
+     * Suma una ejecución al agregado de su SQL y, si superó el umbral, la deja en la bitácora.
+     */
+    private static void registrar(String sql, Object[] parametros, int cantidadParametros, long nanos, long filas,
+                                  boolean error) {
+        String clave = sql != null ? sql : OTRAS;
+        Agregado agregado = AGREGADOS.get(clave);
+        if (agregado == null) {
+            if (AGREGADOS.size() >= MAXIMO_SENTENCIAS) {
+                clave = OTRAS;
+            }
+            agregado = AGREGADOS.computeIfAbsent(clave, Agregado::new);
+        }
+        agregado.ejecuciones.increment();
+        agregado.totalNanos.add(nanos);
+        agregado.maximoNanos.accumulate(nanos);
+        agregado.filas.add(filas);
+        if (error) {
+            agregado.errores.increment();
+        }
+
+        if (nanos >= UMBRAL_NANOS) {
+            LENTAS.increment();
+            Object[] copia = REGISTRAR_PARAMETROS && parametros != null
+                    ? Arrays.copyOf(parametros, cantidadParametros) : null;
+            BITACORA.registrar(new ConsultaLenta(sql, copia, nanos, filas));
+        }
+    }
+
+    private static Object invocar(Object objeto, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(objeto, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /*
+     * Proxy de Connection: envuelve las sentencias que crea, el resto se delega.
+     */
+    private static final class ConexionMedida implements InvocationHandler {
+        private final Connection real;
+
+        private ConexionMedida(Connection real) {
+            this.real = real;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            Object resultado = invocar(real, metodo, args);
+            if (resultado instanceof Statement sentencia) {
+                String sql = metodo.getName().startsWith("prepare") ? (String) args[0] : null;
+                Class<?> tipo = metodo.getReturnType();
+                return Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo},
+                        new SentenciaMedida(sentencia, sql));
+            }
+            return resultado;
+        }
+    }
+
+    /*
+     * Proxy de Statement / PreparedStatement: guarda los parámetros y mide cada ejecución.
+     * Una sentencia JDBC la usa un solo hilo a la vez, por eso el estado no se sincroniza.
+     */
+    private static final class SentenciaMedida implements InvocationHandler {
+        private final Statement real;
+        private final String sql;
+        private Object[] parametros;
+        private int cantidadParametros;
+
+        // Consulta cuyo ResultSet sigue abierto
+        private boolean enCurso;
+        private String sqlEnCurso;
+        private long nanosEnCurso;
+        private long filasEnCurso;
+
+        private SentenciaMedida(Statement real, String sql) {
+            this.real = real;
+            this.sql = sql;
+            this.parametros = sql != null ? new Object[8] : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            String nombre = metodo.getName();
+            if (parametros != null && nombre.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer indice && real instanceof PreparedStatement) {
+                guardarParametro(indice, nombre.equals("setNull") ? null : args[1]);
+            } else if (nombre.equals("clearParameters") && parametros != null) {
+                Arrays.fill(parametros, null);
+                cantidadParametros = 0;
+            }
+
+            switch (nombre) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    terminar();
+                    return invocar(real, metodo, args);
+                case "executeQuery":
+                    return ejecutarConsulta(metodo, args);
+                default:
+                    if (EJECUCIONES.contains(nombre)) {
+                        return ejecutar(metodo, args);
+                    }
+                    return invocar(real, metodo, args);
+            }
+        }
+
+        private void guardarParametro(int indice, Object valor) {
+            if (indice < 1 || indice > 65_535) {
+                return;
+            }
+            if (indice > parametros.length) {
+                parametros = Arrays.copyOf(parametros, Math.max(indice, parametros.length * 2));
+            }
+            parametros[indice - 1] = valor;
+            cantidadParametros = Math.max(cantidadParametros, indice);
+        }
+
+        private String sqlDe(Object[] args) {
+            return args != null && args.length > 0 && args[0] instanceof String texto ? texto : sql;
+        }
+
+        // SELECT: se registra al cerrar el ResultSet, con las filas leídas
+        private Object ejecutarConsulta(Method metodo, Object[] args) throws Throwable {
+            terminar();
+            String texto = sqlDe(args);
+            long inicio = System.nanoTime();
+            ResultSet rs;
+            try {
+                rs = (ResultSet) invocar(real, metodo, args);
+            } catch (Throwable e) {
+                registrar(texto, parametros, cantidadParametros, System.nanoTime() - inicio, 0, true);
+                throw e;
+            }
+            enCurso = true;
+            sqlEnCurso = texto;
+            nanosEnCurso = System.nanoTime() - inicio;
+            filasEnCurso = 0;
+            return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    new ResultadoMedido(rs, this));
+        }
+
+        // INSERT/UPDATE/DELETE, lotes y execute(): se registra de inmediato con las filas afectadas
+        private Object ejecutar(Method metodo, Object[] args) throws Throwable {
+            terminar();
+            String texto = sqlDe(args);
+            long inicio = System.nanoTime();
+            Object resultado;
+            try {
+                resultado = invocar(real, metodo, args);
+            } catch (Throwable e) {
+                registrar(texto, parametros, cantidadParametros, System.nanoTime() - inicio, 0, true);
+                throw e;
+            }
+            registrar(texto, parametros, cantidadParametros, System.nanoTime() - inicio, filasAfectadas(resultado),
+                    false);
+            return resultado;
+        }
+
+        private static long filasAfectadas(Object resultado) {
+            if (resultado instanceof Number numero) {
+                return Math.max(numero.longValue(), 0);
+            }
+            long total = 0;
+            if (resultado instanceof int[] filas) {
+                for (int f : filas) {
+                    total += Math.max(f, 0);
+                }
+            } else if (resultado instanceof long[] filas) {
+                for (long f : filas) {
+                    total += Math.max(f, 0);
+                }
+            }
+            return total;
+        }
+
+        // Registra la consulta en curso (si su ResultSet seguía abierto)
+        void terminar() {
+            if (enCurso) {
+                enCurso = false;
+                registrar(sqlEnCurso, parametros, cantidadParametros, nanosEnCurso, filasEnCurso, false);
+            }
+        }
+
+        void leyoFila(long nanos, boolean hayFila) {
+            nanosEnCurso += nanos;
+            if (hayFila) {
+                filasEnCurso++;
+            }
+        }
+    }
+
+    /*
+     * Proxy de ResultSet: cuenta las filas y el tiempo dentro de next().
+     */
+    private static final class ResultadoMedido implements InvocationHandler {
+        private final ResultSet real;
+        private final SentenciaMedida sentencia;
+
+        private ResultadoMedido(ResultSet real, SentenciaMedida sentencia) {
+            this.real = real;
+            this.sentencia = sentencia;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "next": {
+                    long inicio = System.nanoTime();
+                    boolean hayFila = real.next();
+                    sentencia.leyoFila(System.nanoTime() - inicio, hayFila);
+                    return hayFila;
+                }
+                case "close":
+                    try {
+                        real.close();
+                    } finally {
+                        sentencia.terminar();
+                    }
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return invocar(real, metodo, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package util;
+/*
+ * Autor: Byron Melo
+ * Fecha: 17/10/2026
+ * Versión: 1.3
+ * Descripción: Unidad de trabajo (unit of work) de la capa de servicio. Cada metodo de
+ * servicio ejecuta su acceso a datos dentro de UnidadTrabajo.ejecutar(...): al terminar
+ * la operación se confirma la transacción (commit) y la conexión real se devuelve al pool
+ * de inmediato, ANTES de que el servlet haga el forward al JSP o escriba la respuesta.
+ * Así una conexión del pool solo queda ocupada mientras se ejecuta SQL, y no mientras se
+ * genera el HTML, el PDF o se envían bytes a un cliente lento.
+ *
+ * - Si la petición tiene una conexión perezosa asociada (ConexionFilter), se usa esa:
+ *   el proxy pide una conexión real al pool solo si la operación ejecuta SQL y al
+ *   terminar se libera; si más adelante otra operación ejecuta SQL, se pide de nuevo.
+ * - Si el hilo no tiene conexión asociada (por ejemplo una ruta excluida del filtro),
+ *   se pide una conexión al pool solo para esta operación.
+ * - Si el hilo tiene asociada una conexión normal (por ejemplo AplicacionListener o
+ *   una clase de prueba), quien la asoció maneja la transacción y aquí solo se ejecuta.
+ * - Las unidades anidadas (un servicio que llama a otro) forman parte de la unidad externa.
+ *
+ * Si la operación lanza una excepción se deshace la transacción (rollback) y la conexión
+ * también se devuelve al pool.
+ *
+ * Versión 1.1: alTerminar(...) registra acciones que se ejecutan cuando termina la unidad
+ * de trabajo, después del commit (o rollback) y de liberar la conexión. Se usa para avisar
+ * cambios que solo deben verse cuando ya están confirmados (ver VersionCatalogo).
+ * Versión 1.2: alConfirmar(...) registra acciones que se ejecutan solo si la transacción se
+ * confirmó; si se deshace se descartan. Se usa para copiar a memoria datos que solo existen
+ * después del commit (ver ProductoRepositoryIndiceImplement).
+ * Versión 1.3: las acciones de alConfirmar y alTerminar pueden abrir su propia unidad de
+ * trabajo (ver CategoriaRepositoryJdbcImplement): las dos listas se retiran del hilo antes de
+ * ejecutar cualquier acción.
+ * */
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class UnidadTrabajo {
+
+    /**
+     * Operación de acceso a datos que se ejecuta dentro de una unidad de trabajo.
+     */
+    @FunctionalInterface
+    public interface Operacion<T> {
+        T ejecutar() throws SQLException;
+    }
+
+    // Indica si el hilo actual ya está dentro de una unidad de trabajo
+    private static final ThreadLocal<Boolean> ACTIVA = new ThreadLocal<>();
+    // Acciones pendientes para cuando termine la unidad de trabajo del hilo actual
+    private static final ThreadLocal<List<Runnable>> AL_TERMINAR = new ThreadLocal<>();
+    // Acciones pendientes para cuando se confirme la transacción del hilo actual
+    private static final ThreadLocal<List<Runnable>> AL_CONFIRMAR = new ThreadLocal<>();
+
+    private UnidadTrabajo() {
+    }
+
+    /**
+     * Ejecuta la operación en una transacción, la confirma y libera la conexión.
+     * @param operacion Acceso a datos a ejecutar (normalmente llamadas a repositorios).
+     * @return El resultado de la operación.
+     * @throws SQLException Si ocurre un error; en ese caso la transacción se deshace.
+     */
+    public static <T> T ejecutar(Operacion<T> operacion) throws SQLException {
+        if (ACTIVA.get() != null) {
+            return operacion.ejecutar();
+        }
+
+        Connection actual = ConexionContexto.getActual();
+        if (actual == null) {
+            return ejecutarConConexionPropia(operacion);
+        }
+
+        ConexionPerezosa perezosa = ConexionPerezosa.de(actual);
+        if (perezosa == null) {
+            return operacion.ejecutar();
+        }
+
+        ACTIVA.set(Boolean.TRUE);
+        AL_TERMINAR.set(new ArrayList<>());
+        AL_CONFIRMAR.set(new ArrayList<>());
+        long inicio = System.nanoTime();
+        boolean confirmada = false;
+        try {
+            T resultado = operacion.ejecutar();
+            perezosa.commit();
+            confirmada = true;
+            return resultado;
+        } catch (SQLException | RuntimeException e) {
+            perezosa.rollback();
+            throw e;
+        } finally {
+            ACTIVA.remove();
+            perezosa.registrarOperacion(System.nanoTime() - inicio);
+            perezosa.liberar();
+            List<Runnable> confirmacion = AL_CONFIRMAR.get();
+            List<Runnable> acciones = AL_TERMINAR.get();
+            AL_CONFIRMAR.remove();
+            AL_TERMINAR.remove();
+            if (confirmada) {
+                confirmacion.forEach(Runnable::run);
+            }
+            acciones.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Ejecuta la acción cuando termine la unidad de trabajo actual. Si el hilo no está
+     * dentro de una unidad de trabajo se ejecuta de inmediato.
+     */
+    public static void alTerminar(Runnable accion) {
+        List<Runnable> acciones = AL_TERMINAR.get();
+        if (acciones == null) {
+            accion.run();
+        } else {
+            acciones.add(accion);
+        }
+    }
+
+    /**
+     * Ejecuta la acción cuando se confirme (commit) la unidad de trabajo actual, antes de las
+     * acciones de alTerminar. Si la transacción se deshace la acción no se ejecuta. Si el hilo
+     * no está dentro de una unidad de trabajo se ejecuta de inmediato.
+     */
+    public static void alConfirmar(Runnable accion) {
+        List<Runnable> acciones = AL_CONFIRMAR.get();
+        if (acciones == null) {
+            accion.run();
+        } else {
+            acciones.add(accion);
+        }
+    }
+
+    /*
+     * Pide una conexión al pool solo para esta operación y la asocia al hilo mientras dura.
+     */
+    private static <T> T ejecutarConConexionPropia(Operacion<T> operacion) throws SQLException {
+        ConexionPerezosa perezosa = new ConexionPerezosa(ConexionBDD.getDataSource());
+        ConexionContexto.asociar(perezosa.getConexion());
+        try {
+            return ejecutar(operacion);
+        } finally {
+            ConexionContexto.desasociar();
+        }
+    }
+}
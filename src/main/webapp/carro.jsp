@@ -21,6 +21,7 @@ dentro del código Java del JSP.
 -->
 <%@ page import="models.ItemCarro" %>
 <%@ page import="models.DetalleCarro" %>
+<%@ page import="util.RecursosEstaticos" %>
 
 
 <%
@@ -43,12 +44,29 @@ un objeto de tipo DetalleCarro y este objeto almacena:
       Se genera dinámicamente la ruta absoluta hacia el archivo CSS,
       utilizando el contextPath del proyecto (ej: /miApp).
     -->
-    <link rel="stylesheet" href="<%= request.getContextPath() %>/css/estilos.css">
+    <link rel="stylesheet" href="<%= RecursosEstaticos.url(request, "css/estilos.css") %>">
 </head>
 
 <body>
 <h1>Carro de Compras</h1>
 
+<%
+    /*
+        Mensajes del checkout (CheckoutServlet):
+        - orden: ID de la orden confirmada.
+        - sinStock: ID del producto que no tiene stock suficiente.
+    */
+    if (request.getParameter("orden") != null) {
+%>
+<p>Su compra fue registrada con la orden N° <%= request.getParameter("orden").replaceAll("[^0-9]", "") %>.</p>
+<%
+    } else if (request.getParameter("sinStock") != null) {
+%>
+<p>No hay stock suficiente del producto con ID <%= request.getParameter("sinStock").replaceAll("[^0-9]", "") %>, la compra no fue registrada.</p>
+<%
+    }
+%>
+
 <%
     /*
         SCRIPTLET condicional:
@@ -69,8 +87,10 @@ un objeto de tipo DetalleCarro y este objeto almacena:
 %>
 
 <!--
+    Formulario que envía las nuevas cantidades y los productos a eliminar a ActualizarCarroServlet.
     Inicia la tabla HTML donde se mostrarán los productos agregados.
 -->
+<form action="<%=request.getContextPath()%>/actualizar-carro" method="post">
 <table>
     <tr>
         <!-- Encabezados de la tabla -->
@@ -79,6 +99,7 @@ un objeto de tipo DetalleCarro y este objeto almacena:
         <th>PRECIO</th>
         <th>CANTIDAD</th>
         <th>VALOR</th>
+        <th>ELIMINAR</th>
     </tr>
 
     <%
@@ -98,8 +119,10 @@ un objeto de tipo DetalleCarro y este objeto almacena:
         <td><%= item.getProducto().getId() %></td>
         <td><%= item.getProducto().getNombre() %></td>
         <td><%= item.getProducto().getPrecio() %></td>
-        <td><%= item.getCantidad() %></td>
+        <td><input type="number" min="0" name="cantidad_<%= item.getProducto().getId() %>"
+                   value="<%= item.getCantidad() %>"></td>
         <td><%= item.getSubtotal() %></td>
+        <td><input type="checkbox" name="eliminar" value="<%= item.getProducto().getId() %>"></td>
     </tr>
 
     <% } %>
@@ -126,6 +149,13 @@ un objeto de tipo DetalleCarro y este objeto almacena:
     </tr>
 
 </table>
+<input type="submit" value="Actualizar Carro">
+</form>
+
+<!-- Formulario que confirma la compra: guarda la orden y descuenta el stock (CheckoutServlet) -->
+<form action="<%=request.getContextPath()%>/checkout" method="post">
+    <input type="submit" value="Confirmar Compra">
+</form>
 
 <%
     } // Fin del bloque else, aunque solo sea una llave sigue siendo código java, por eso usamos scriptles
@@ -7,7 +7,7 @@
 --%>
 <%-- Directivas JSP: Define el tipo de contenido, el lenguaje y las importaciones de clases Java necesarias --%>
 <%@ page contentType="text/html;charset=UTF-8" language="java"
-         import="java.util.*, java.time.format.*, models.*"%>
+         import="java.util.*, java.time.format.*, models.*, util.RecursosEstaticos"%>
 <%
     // Bloque Scriptlet: Código Java que se ejecuta al procesar la página JSP.
 
@@ -31,7 +31,7 @@
 <html>
 <head>
     <title>Formulario Productos</title>
-    <link rel="stylesheet" href="<%= request.getContextPath() %>/css/estilos.css">
+    <link rel="stylesheet" href="<%= RecursosEstaticos.url(request, "css/estilos.css") %>">
     <link rel='stylesheet' href='https://cdnjs.cloudflare.com/ajax/libs/font-awesome/6.4.2/css/all.min.css'>
 </head>
 <body>
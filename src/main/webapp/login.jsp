@@ -6,10 +6,11 @@
   el envío del formulario utiliza el metodo post y la llave del LoginServlet que es login
 --%>
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
+<%@ page import="util.RecursosEstaticos" %>
 <html>
 <head>
     <title>Inicio de Sesión</title>
-    <link rel="stylesheet" href="<%= request.getContextPath() %>/css/estilos.css">
+    <link rel="stylesheet" href="<%= RecursosEstaticos.url(request, "css/estilos.css") %>">
 </head>
 <body>
 <h1>Inicio de Sesión</h1>
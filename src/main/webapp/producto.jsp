@@ -11,7 +11,7 @@
  */
 --%>
 <%@ page contentType="text/html;charset=UTF-8" language="java"
-         import="java.util.*, models.*" %>
+         import="java.util.*, models.*, util.RecursosEstaticos" %>
 <%----%>
 
 <%
@@ -20,12 +20,16 @@
     // Recupera el nombre de usuario (si existe) también del objeto request.
     // Se usa Optional<String> para manejar la posible ausencia de un usuario logueado.
     Optional<String> username = (Optional<String>) request.getAttribute("username");
+    // Datos de paginación: ID inicial de esta página, ID para pedir la siguiente y tamaño de página.
+    Long despuesDe = (Long) request.getAttribute("despuesDe");
+    Long siguiente = (Long) request.getAttribute("siguiente");
+    Integer tamanio = (Integer) request.getAttribute("tamanio");
 %>
 
 <html>
 <head>
     <title>Listado Productos</title>
-    <link rel="stylesheet" href="<%= request.getContextPath() %>/css/estilos.css">
+    <link rel="stylesheet" href="<%= RecursosEstaticos.url(request, "css/estilos.css") %>">
     <link rel='stylesheet' href='https://cdnjs.cloudflare.com/ajax/libs/font-awesome/6.4.2/css/all.min.css'>
 </head>
 <body>
@@ -103,5 +107,15 @@
     <%}%>
 </table>
 
+<%-- Enlaces de paginación: la primera página no tiene "after" y la siguiente continúa desde el último ID mostrado --%>
+<p>
+    <% if (despuesDe != null && despuesDe > 0) { %>
+    <a href="<%=request.getContextPath()%>/productos?size=<%=tamanio%>">Primera página</a>
+    <% } %>
+    <% if (siguiente != null) { %>
+    <a href="<%=request.getContextPath()%>/productos?after=<%=siguiente%>&size=<%=tamanio%>">Página siguiente</a>
+    <% } %>
+</p>
+
 </body>
 </html>
\ No newline at end of file